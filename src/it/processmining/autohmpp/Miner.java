@@ -1,27 +1,84 @@
 package it.processmining.autohmpp;
 
-import it.processmining.autohmpp.search.AutoHMPP;
+import it.processmining.autohmpp.matrix.MatrixBuffers;
+import it.processmining.autohmpp.miner.AutoHMPP;
+import it.processmining.autohmpp.miner.LogShard;
+import it.processmining.autohmpp.miner.StatisticsSnapshot;
+import it.processmining.autohmpp.miner.notifier.PrintStreamNotifier;
 import it.processmining.autohmpp.utils.Utils;
-import it.processmining.hmpp.models.HMPPParameters;
 
-import org.processmining.framework.log.LogFile;
-import org.processmining.framework.log.LogReader;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
 
 public class Miner {
-
+	
 	public static void main(String[] args) {
 		System.out.println("Running...");
-
-		String file = args[0];
+		
+		/* the options come before the files */
+		int first = 0;
+		while (first < args.length && args[first].startsWith("-")) {
+			if (args[first].equals("-offheap")) {
+				/* keep the counts of large logs out of the garbage collected
+				 * heap */
+				MatrixBuffers.setOffHeap(true);
+			} else {
+				System.out.println("Unknown option: " + args[first]);
+				return;
+			}
+			first++;
+		}
+		String[] files = Arrays.copyOfRange(args, first, args.length);
+		if (files.length == 0) {
+			System.out.println("Usage: Miner [-offheap] <log file> [<snapshot file>]");
+			return;
+		}
+		
+		String file = files[0];
 		Integer maxPlateauStep = 2;
 		Integer threadNumber = 1;
 		
-		LogReader log = Utils.loadLog(file);
-		
-		AutoHMPP plugin = new AutoHMPP();
+		AutoHMPP plugin = new AutoHMPP(new PrintStreamNotifier(System.out));
 		plugin.setMaxPlateauStep(maxPlateauStep);
 		plugin.setNumberOfSearchThread(threadNumber);
-		plugin.mine(log);
+		
+		if (file.endsWith(StatisticsSnapshot.EXTENSION)) {
+			/* the snapshots of several logs are summed and mined as one log */
+			StatisticsSnapshot snapshot = Utils.loadSnapshots(files);
+			if (snapshot == null) {
+				System.out.println("Cannot load the snapshots: " + file);
+				return;
+			}
+			plugin.mine(snapshot);
+			System.out.println("Complete");
+			return;
+		}
+		
+		LogShard log;
+		if (file.endsWith(".zip")) {
+			/* each entry of the archive is a shard of the log */
+			log = Utils.loadLogShards(file, Runtime.getRuntime().availableProcessors());
+		} else {
+			log = Utils.loadLogShard(file);
+		}
+		if (log == null) {
+			System.out.println("Cannot load the log: " + file);
+			return;
+		}
+		
+		if (files.length > 1) {
+			/* the log is only counted, and its snapshot stored to be merged
+			 * with the ones of other logs */
+			try {
+				StatisticsSnapshot.fromShard(log).store(new File(files[1]));
+			} catch (IOException e) {
+				System.out.println("Cannot write the snapshot file: " + files[1]);
+				return;
+			}
+		} else {
+			plugin.mine(log);
+		}
 		
 		System.out.println("Complete");
 	}
@@ -0,0 +1,364 @@
+package it.processmining.autohmpp.fitness;
+
+import it.processmining.autohmpp.log.EncodedLog;
+import it.processmining.autohmpp.log.TraceVariants;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.processmining.framework.models.heuristics.HNSet;
+import org.processmining.framework.models.heuristics.HNSubSet;
+import org.processmining.framework.models.heuristics.HeuristicsNet;
+
+/**
+ * This class calculates the continuous semantics fitness of a heuristics net
+ * with respect to an encoded log. The replay follows the one of the genetic
+ * miner: each input subset of an element is a place, the firing of an element
+ * consumes one token from each of its places (creating the missing ones) and
+ * produces one token in each place of its successors that contains the
+ * element. The fitness is:
+ *
+ *   (parsed - (missing / (traces - tracesMissing + 1) +
+ *              remaining / (traces - tracesRemaining + 1))) / events
+ *
+ * where <tt>parsed</tt> is the number of events fired without missing tokens.
+ * The replay of a trace depends only on its sequence of events, so each
+ * variant of the log is replayed once and weighted by its multiplicity.
+ *
+ * The replay of each variant on the last net replayed from scratch is kept: a
+ * close net, with only a few changed elements, can then be replayed just on
+ * the variants which involve them (see
+ * {@link #calculate(HeuristicsNet, BitSet)}).
+ *
+ * Each instance keeps its own marking, so it must not be shared among threads.
+ *
+ * @author Andrea Burattin
+ * @version 0.1
+ */
+public class ContinuousSemanticsFitness {
+	
+	private TraceVariants variants;
+	
+	/* places of the net, the places of element e are the ones in the range
+	 * [placesOffset[e], placesOffset[e+1]) */
+	private int[] placesOffset;
+	/* for each element, the places to mark when it fires */
+	private int[][] outputPlaces;
+	private int[] marking;
+	private boolean[] isStartTask;
+	private boolean[] isEndTask;
+	
+	/* replay of each variant on the last net replayed from scratch, with its
+	 * start and end tasks */
+	private int[][] referenceReplay = null;
+	private boolean[] referenceStartTask;
+	private boolean[] referenceEndTask;
+	/* variants with each element, the variants of element e are the ones in
+	 * the range [variantsOffset[e], variantsOffset[e+1]) */
+	private int[] variantsOffset = null;
+	private int[] variantsOfElement;
+	
+	
+	/**
+	 * Class constructor
+	 *
+	 * @param log the log to replay
+	 */
+	public ContinuousSemanticsFitness(EncodedLog log) {
+		this(TraceVariants.fromLog(log));
+	}
+	
+	
+	/**
+	 * Class constructor
+	 *
+	 * @param variants the variants of the log to replay
+	 */
+	public ContinuousSemanticsFitness(TraceVariants variants) {
+		this.variants = variants;
+	}
+	
+	
+	/**
+	 * This method returns the variants replayed
+	 *
+	 * @return the variants of the log
+	 */
+	public TraceVariants getVariants() {
+		return variants;
+	}
+	
+	
+	/**
+	 * This method calculates the fitness of the given net, and stores it into
+	 * the net itself
+	 *
+	 * @param net the net to replay
+	 * @return the fitness value
+	 */
+	public double calculate(HeuristicsNet net) {
+		prepareNet(net);
+		
+		EncodedLog log = variants.getVariants();
+		IntBuffer events = log.getEvents();
+		int[][] replays = new int[variants.getNumberOfVariants()][];
+		for (int v = 0; v < variants.getNumberOfVariants(); v++) {
+			replays[v] = replayTrace(events, log.getTraceStart(v), log.getTraceEnd(v));
+		}
+		
+		referenceReplay = replays;
+		referenceStartTask = isStartTask;
+		referenceEndTask = isEndTask;
+		return calculate(net, replays);
+	}
+	
+	
+	/**
+	 * This method calculates the fitness of the given net, and stores it into
+	 * the net itself, replaying just the variants which involve the changed
+	 * elements, or the elements producing tokens for them. The replay of the
+	 * other variants is the one on the last net replayed from scratch (see
+	 * {@link #calculate(HeuristicsNet)}), which is kept.
+	 *
+	 * @param net the net to replay
+	 * @param changed the elements whose input or output set differs from the
+	 * last net replayed from scratch (if null, the net is replayed from
+	 * scratch)
+	 * @return the fitness value
+	 */
+	public double calculate(HeuristicsNet net, BitSet changed) {
+		if (changed == null || referenceReplay == null || net.size() != referenceStartTask.length) {
+			return calculate(net);
+		}
+		prepareNet(net);
+		
+		BitSet replayed = new BitSet(variants.getNumberOfVariants());
+		if (!Arrays.equals(isStartTask, referenceStartTask) ||
+			!Arrays.equals(isEndTask, referenceEndTask)) {
+			replayed.set(0, variants.getNumberOfVariants());
+		} else {
+			if (variantsOffset == null) {
+				indexVariants(net.size());
+			}
+			for (int e = 0; e < net.size(); e++) {
+				boolean affected = changed.get(e);
+				HNSubSet successors = net.getAllElementsOutputSet(e);
+				for (int i = 0; !affected && i < successors.size(); i++) {
+					affected = changed.get(successors.get(i));
+				}
+				if (affected) {
+					for (int k = variantsOffset[e]; k < variantsOffset[e + 1]; k++) {
+						replayed.set(variantsOfElement[k]);
+					}
+				}
+			}
+		}
+		
+		EncodedLog log = variants.getVariants();
+		IntBuffer events = log.getEvents();
+		int[][] replays = new int[variants.getNumberOfVariants()][];
+		for (int v = 0; v < variants.getNumberOfVariants(); v++) {
+			if (replayed.get(v)) {
+				replays[v] = replayTrace(events, log.getTraceStart(v), log.getTraceEnd(v));
+			} else {
+				replays[v] = referenceReplay[v];
+			}
+		}
+		return calculate(net, replays);
+	}
+	
+	
+	/**
+	 * This method sums the replays of the variants into the fitness, and
+	 * stores it into the net
+	 *
+	 * @param net the replayed net
+	 * @param replays the replay of each variant (see
+	 * {@link #replayTrace(IntBuffer, int, int)})
+	 * @return the fitness value
+	 */
+	private double calculate(HeuristicsNet net, int[][] replays) {
+		double parsedEvents = 0;
+		double missingTokens = 0;
+		double tracesMissingTokens = 0;
+		double remainingTokens = 0;
+		double tracesRemainingTokens = 0;
+		
+		for (int v = 0; v < variants.getNumberOfVariants(); v++) {
+			int[] replay = replays[v];
+			int multiplicity = variants.getMultiplicity(v);
+			parsedEvents += (double) multiplicity * replay[0];
+			missingTokens += (double) multiplicity * replay[1];
+			remainingTokens += (double) multiplicity * replay[2];
+			if (replay[1] > 0) {
+				tracesMissingTokens += multiplicity;
+			}
+			if (replay[2] > 0) {
+				tracesRemainingTokens += multiplicity;
+			}
+		}
+		
+		double traces = variants.getNumberOfTraces();
+		double fitness = (parsedEvents -
+				((missingTokens / (traces - tracesMissingTokens + 1)) +
+				 (remainingTokens / (traces - tracesRemainingTokens + 1)))) /
+				variants.getNumberOfEvents();
+		net.setFitness(fitness);
+		return fitness;
+	}
+	
+	
+	/**
+	 * This method replays a single trace on the prepared net
+	 *
+	 * @param events the event indexes
+	 * @param from the position of the first event
+	 * @param to the position after the last event
+	 * @return an array with the number of parsed events, the number of missing
+	 * tokens and the number of tokens left behind
+	 */
+	private int[] replayTrace(IntBuffer events, int from, int to) {
+		int parsed = 0;
+		int missing = 0;
+		int remaining = 0;
+		
+		for (int i = 0; i < marking.length; i++) {
+			marking[i] = 0;
+		}
+		int startPlace = 1;
+		int endPlace = 0;
+		
+		for (int pos = from; pos < to; pos++) {
+			int element = events.get(pos);
+			int missingNow = 0;
+			/* consume */
+			if (isStartTask[element]) {
+				if (startPlace > 0) {
+					startPlace--;
+				} else {
+					missingNow++;
+				}
+			}
+			for (int p = placesOffset[element]; p < placesOffset[element + 1]; p++) {
+				if (marking[p] > 0) {
+					marking[p]--;
+				} else {
+					missingNow++;
+				}
+			}
+			/* produce */
+			int[] out = outputPlaces[element];
+			for (int p = 0; p < out.length; p++) {
+				marking[out[p]]++;
+			}
+			if (isEndTask[element]) {
+				endPlace++;
+			}
+			
+			if (missingNow == 0) {
+				parsed++;
+			}
+			missing += missingNow;
+		}
+		
+		/* the trace must terminate with a token in the end place */
+		if (endPlace > 0) {
+			endPlace--;
+		} else {
+			missing++;
+		}
+		remaining = startPlace + endPlace;
+		for (int i = 0; i < marking.length; i++) {
+			remaining += marking[i];
+		}
+		
+		return new int[] {parsed, missing, remaining};
+	}
+	
+	
+	/**
+	 * This method builds, for each element, the list of the variants with
+	 * the element
+	 *
+	 * @param size the number of elements
+	 */
+	private void indexVariants(int size) {
+		EncodedLog log = variants.getVariants();
+		int[] lastVariant = new int[size];
+		Arrays.fill(lastVariant, -1);
+		
+		variantsOffset = new int[size + 1];
+		for (int v = 0; v < variants.getNumberOfVariants(); v++) {
+			for (int pos = log.getTraceStart(v); pos < log.getTraceEnd(v); pos++) {
+				int element = log.getEvent(pos);
+				if (lastVariant[element] != v) {
+					lastVariant[element] = v;
+					variantsOffset[element + 1]++;
+				}
+			}
+		}
+		for (int e = 0; e < size; e++) {
+			variantsOffset[e + 1] += variantsOffset[e];
+		}
+		
+		variantsOfElement = new int[variantsOffset[size]];
+		int[] next = new int[size];
+		System.arraycopy(variantsOffset, 0, next, 0, size);
+		Arrays.fill(lastVariant, -1);
+		for (int v = 0; v < variants.getNumberOfVariants(); v++) {
+			for (int pos = log.getTraceStart(v); pos < log.getTraceEnd(v); pos++) {
+				int element = log.getEvent(pos);
+				if (lastVariant[element] != v) {
+					lastVariant[element] = v;
+					variantsOfElement[next[element]++] = v;
+				}
+			}
+		}
+	}
+	
+	
+	/**
+	 * This method builds the places of the given net
+	 *
+	 * @param net the net to prepare
+	 */
+	private void prepareNet(HeuristicsNet net) {
+		int size = net.size();
+		
+		placesOffset = new int[size + 1];
+		for (int e = 0; e < size; e++) {
+			placesOffset[e + 1] = placesOffset[e] + net.getInputSet(e).size();
+		}
+		marking = new int[placesOffset[size]];
+		
+		outputPlaces = new int[size][];
+		int[] buffer = new int[placesOffset[size]];
+		for (int e = 0; e < size; e++) {
+			int count = 0;
+			HNSubSet successors = net.getAllElementsOutputSet(e);
+			for (int i = 0; i < successors.size(); i++) {
+				int successor = successors.get(i);
+				HNSet inputSet = net.getInputSet(successor);
+				for (int k = 0; k < inputSet.size(); k++) {
+					if (inputSet.get(k).contains(e)) {
+						buffer[count++] = placesOffset[successor] + k;
+					}
+				}
+			}
+			outputPlaces[e] = new int[count];
+			System.arraycopy(buffer, 0, outputPlaces[e], 0, count);
+		}
+		
+		isStartTask = new boolean[size];
+		isEndTask = new boolean[size];
+		HNSubSet tasks = net.getStartTasks();
+		for (int i = 0; tasks != null && i < tasks.size(); i++) {
+			isStartTask[tasks.get(i)] = true;
+		}
+		tasks = net.getEndTasks();
+		for (int i = 0; tasks != null && i < tasks.size(); i++) {
+			isEndTask[tasks.get(i)] = true;
+		}
+	}
+}
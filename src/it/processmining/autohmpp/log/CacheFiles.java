@@ -0,0 +1,226 @@
+package it.processmining.autohmpp.log;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * This class collects the helpers shared by the binary caches stored next to
+ * a log file. Each cache starts with a fingerprint of the source file (its
+ * path, size and last modification time), so that a stale cache is never
+ * used, and it is written into a temporary file which is then renamed, so
+ * that concurrent processes never see a partial cache. Strings are stored as
+ * an int with the number of bytes followed by their UTF-8 encoding.
+ *
+ * @author Andrea Burattin
+ * @version 0.1
+ */
+public class CacheFiles {
+	
+	/**
+	 * This method writes the header of a cache: its magic number, its format
+	 * version and the fingerprint of the source file
+	 *
+	 * @param out the cache stream
+	 * @param magic the magic number of the cache type
+	 * @param version the format version
+	 * @param source the log file
+	 * @throws IOException
+	 */
+	public static void writeHeader(DataOutputStream out, int magic, int version, File source) throws IOException {
+		out.writeInt(magic);
+		out.writeInt(version);
+		out.writeLong(source.length());
+		out.writeLong(source.lastModified());
+		writeString(out, source.getCanonicalPath());
+	}
+	
+	
+	/**
+	 * This method reads the header of a cache and checks it against the
+	 * expected type and the current state of the source file
+	 *
+	 * @param in the cache buffer, positioned at the beginning
+	 * @param magic the magic number of the cache type
+	 * @param version the format version
+	 * @param source the log file
+	 * @return true if the cache is valid for the source file
+	 * @throws IOException
+	 */
+	public static boolean checkHeader(ByteBuffer in, int magic, int version, File source) throws IOException {
+		if (in.getInt() != magic || in.getInt() != version) {
+			return false;
+		}
+		return in.getLong() == source.length() &&
+				in.getLong() == source.lastModified() &&
+				readString(in).equals(source.getCanonicalPath());
+	}
+	
+	
+	/**
+	 * This method writes the activities and the events of a dictionary
+	 *
+	 * @param out the cache stream
+	 * @param dictionary the dictionary to write
+	 * @throws IOException
+	 */
+	public static void writeDictionary(DataOutputStream out, EventDictionary dictionary) throws IOException {
+		out.writeInt(dictionary.getTransitionsSize());
+		for (int i = 0; i < dictionary.getTransitionsSize(); i++) {
+			writeString(out, dictionary.getTransitionName(i));
+		}
+		out.writeInt(dictionary.getEventsSize());
+		for (int i = 0; i < dictionary.getEventsSize(); i++) {
+			writeString(out, dictionary.getEventName(i));
+			writeString(out, dictionary.getEventType(i));
+		}
+	}
+	
+	
+	/**
+	 * This method reads a dictionary written with
+	 * {@link #writeDictionary(DataOutputStream, EventDictionary)}
+	 *
+	 * @param in the cache buffer
+	 * @return the dictionary
+	 * @throws IOException
+	 */
+	public static EventDictionary readDictionary(ByteBuffer in) throws IOException {
+		String[] transitionNames = new String[in.getInt()];
+		for (int i = 0; i < transitionNames.length; i++) {
+			transitionNames[i] = readString(in);
+		}
+		int eventsSize = in.getInt();
+		String[] eventNames = new String[eventsSize];
+		String[] eventTypes = new String[eventsSize];
+		for (int i = 0; i < eventsSize; i++) {
+			eventNames[i] = readString(in);
+			eventTypes[i] = readString(in);
+		}
+		return new EventDictionary(transitionNames, eventNames, eventTypes);
+	}
+	
+	
+	/**
+	 * This method creates the temporary file for a cache, in the same
+	 * directory of the cache (so that it can be renamed)
+	 *
+	 * @param cache the cache file
+	 * @return the temporary file
+	 * @throws IOException
+	 */
+	public static File createTempFile(File cache) throws IOException {
+		return File.createTempFile(cache.getName(), ".tmp", cache.getAbsoluteFile().getParentFile());
+	}
+	
+	
+	/**
+	 * This method renames the temporary file of a cache into the cache file
+	 *
+	 * @param temp the complete temporary file
+	 * @param cache the cache file
+	 * @throws IOException
+	 */
+	public static void replace(File temp, File cache) throws IOException {
+		if (!temp.renameTo(cache)) {
+			/* on some platforms the rename does not replace the target */
+			cache.delete();
+			if (!temp.renameTo(cache)) {
+				temp.delete();
+				throw new IOException("Cannot create the cache file " + cache);
+			}
+		}
+	}
+	
+	
+	/**
+	 * This method discards the temporary file of a cache which could not be
+	 * written. The stream is closed ignoring its errors, so that the one
+	 * which interrupted the writing is the one reported
+	 *
+	 * @param out the cache stream, possibly null
+	 * @param temp the temporary file
+	 */
+	public static void discard(CacheOutputStream out, File temp) {
+		if (out != null) {
+			try {
+				out.close();
+			} catch (IOException e) {
+				/* the writing failed already */
+			}
+		}
+		temp.delete();
+	}
+	
+	
+	/**
+	 * This method maps (read only) a region of a cache file
+	 *
+	 * @param channel the channel of the cache file
+	 * @param position the first byte of the region
+	 * @param size the number of bytes of the region
+	 * @return the mapped region
+	 * @throws IOException
+	 */
+	public static ByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+		checkRegion(size);
+		return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+	}
+	
+	
+	/**
+	 * This method checks that a region of a cache file can be mapped: a
+	 * buffer holds at most 2GB, so a larger region cannot be read. The
+	 * regions are checked before a cache is written, so that a cache which
+	 * could never be loaded is not written at all
+	 *
+	 * @param size the number of bytes of the region
+	 * @throws IOException if the region is too large
+	 */
+	public static void checkRegion(long size) throws IOException {
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("Cache region too large to be mapped (" + size + " bytes)");
+		}
+	}
+	
+	
+	/**
+	 * This method returns the first multiple of 8 not smaller than the given
+	 * position
+	 *
+	 * @param position a position in the file
+	 * @return the aligned position
+	 */
+	public static long align(long position) {
+		return (position + 7) & ~7L;
+	}
+	
+	
+	/**
+	 * This method pads the stream to a multiple of 8 bytes
+	 *
+	 * @param out the cache stream, written from the beginning of the file
+	 * @throws IOException
+	 */
+	public static void pad(CacheOutputStream out) throws IOException {
+		while (out.position() % 8 != 0) {
+			out.writeByte(0);
+		}
+	}
+	
+	
+	public static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] bytes = s.getBytes("UTF-8");
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+	
+	
+	public static String readString(ByteBuffer in) throws IOException {
+		byte[] bytes = new byte[in.getInt()];
+		in.get(bytes);
+		return new String(bytes, "UTF-8");
+	}
+}
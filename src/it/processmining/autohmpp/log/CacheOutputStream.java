@@ -0,0 +1,70 @@
+package it.processmining.autohmpp.log;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * This class is the buffered stream used to write a cache file. It keeps the
+ * number of bytes written as a long: the count of {@link DataOutputStream}
+ * stops at 2GB, while the regions of a cache are aligned on its position in
+ * the file (see {@link CacheFiles#pad(CacheOutputStream)}).
+ *
+ * @author Andrea Burattin
+ * @version 0.1
+ */
+public class CacheOutputStream extends DataOutputStream {
+	
+	/**
+	 * Class constructor
+	 *
+	 * @param file the file to write, from its beginning
+	 * @throws FileNotFoundException if the file cannot be opened
+	 */
+	public CacheOutputStream(File file) throws FileNotFoundException {
+		super(new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16)));
+	}
+	
+	
+	/**
+	 * This method returns the number of bytes written so far
+	 *
+	 * @return the position in the file
+	 */
+	public long position() {
+		return ((CountingOutputStream) out).count;
+	}
+	
+	
+	/**
+	 * This class counts the bytes going through a stream
+	 */
+	private static class CountingOutputStream extends FilterOutputStream {
+		
+		private long count = 0;
+		
+		
+		public CountingOutputStream(OutputStream out) {
+			super(out);
+		}
+		
+		
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+		
+		
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+	}
+}
@@ -0,0 +1,398 @@
+package it.processmining.autohmpp.log;
+
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+
+import org.processmining.framework.log.AuditTrailEntry;
+import org.processmining.framework.log.AuditTrailEntryList;
+import org.processmining.framework.log.LogReader;
+import org.processmining.framework.log.ProcessInstance;
+
+/**
+ * This class is a compact, columnar, representation of a log. All the events
+ * of all the traces are stored one after the other: the event indexes (as
+ * defined by the {@link EventDictionary}) in a buffer of integers and the
+ * timestamps (in milliseconds) in a buffer of longs. The events of the trace
+ * <tt>t</tt> are the ones in the positions from <tt>getTraceStart(t)</tt>
+ * (included) to <tt>getTraceEnd(t)</tt> (excluded).
+ *
+ * The buffers wrap plain arrays when the log is built in memory, or a read
+ * only memory mapped file when the log is loaded from a cache (see
+ * {@link EncodedLogCache}). In the latter case, the first append copies the
+ * data into memory.
+ *
+ * @author Andrea Burattin
+ * @version 0.2
+ */
+public class EncodedLog {
+	
+	private EventDictionary dictionary;
+	/* trace t spans the positions [traceOffsets[t], traceOffsets[t+1]) */
+	private IntBuffer traceOffsets;
+	private IntBuffer events;
+	private LongBuffer timestamps;
+	private int numberOfTraces;
+	private int numberOfEvents;
+	
+	/* backing arrays, available only if the log is not memory mapped */
+	private int[] traceOffsetsArray = null;
+	private int[] eventsArray = null;
+	private long[] timestampsArray = null;
+	
+	
+	/**
+	 * Class constructor, for an empty log
+	 *
+	 * @param dictionary the dictionary used to encode the events
+	 */
+	public EncodedLog(EventDictionary dictionary) {
+		this.dictionary = dictionary;
+		this.numberOfTraces = 0;
+		this.numberOfEvents = 0;
+		setArrays(new int[1024], new int[4096], new long[4096]);
+	}
+	
+	
+	/**
+	 * Class constructor, wrapping already encoded buffers
+	 *
+	 * @param dictionary the dictionary used to encode the events
+	 * @param traceOffsets the traces offsets (one more than the traces)
+	 * @param events the event indexes
+	 * @param timestamps the event timestamps
+	 */
+	public EncodedLog(EventDictionary dictionary, IntBuffer traceOffsets, IntBuffer events, LongBuffer timestamps) {
+		this.dictionary = dictionary;
+		this.traceOffsets = traceOffsets;
+		this.events = events;
+		this.timestamps = timestamps;
+		this.numberOfTraces = traceOffsets.limit() - 1;
+		this.numberOfEvents = traceOffsets.get(numberOfTraces);
+	}
+	
+	
+	/**
+	 * This method encodes all the process instances of the given log
+	 *
+	 * @param log the log to encode
+	 * @return the encoded log
+	 */
+	@SuppressWarnings("unchecked")
+	public static EncodedLog fromLogReader(LogReader log) {
+		EventDictionary dictionary = EventDictionary.fromLogSummary(log.getLogSummary());
+		return fromTraces(dictionary, (Iterator<ProcessInstance>) log.instanceIterator());
+	}
+	
+	
+	/**
+	 * This method encodes all the process instances pulled from the given
+	 * iterator. No reference to the process instances is kept.
+	 *
+	 * @param dictionary the dictionary used to encode the events
+	 * @param traces the process instances source
+	 * @return the encoded log
+	 */
+	public static EncodedLog fromTraces(EventDictionary dictionary, Iterator<ProcessInstance> traces) {
+		EncodedLog encoded = new EncodedLog(dictionary);
+		while (traces.hasNext()) {
+			encoded.addTrace(traces.next());
+		}
+		return encoded;
+	}
+	
+	
+	/**
+	 * This method builds a log with all the traces of the given logs, one
+	 * after the other. The events are re-encoded with the given dictionary,
+	 * which must contain all the events of the logs
+	 *
+	 * @param dictionary the dictionary of the new log
+	 * @param logs the logs to concatenate
+	 * @return the concatenated log
+	 */
+	public static EncodedLog concatenate(EventDictionary dictionary, EncodedLog... logs) {
+		int numberOfTraces = 0;
+		int numberOfEvents = 0;
+		for (EncodedLog log : logs) {
+			numberOfTraces += log.numberOfTraces;
+			numberOfEvents += log.numberOfEvents;
+		}
+		
+		int[] offsets = new int[numberOfTraces + 1];
+		int[] eventIndexes = new int[numberOfEvents];
+		long[] times = new long[numberOfEvents];
+		int trace = 0;
+		int position = 0;
+		for (EncodedLog log : logs) {
+			int[] mapping = log.dictionary.getEventsMapping(dictionary);
+			for (int t = 0; t < log.numberOfTraces; t++) {
+				offsets[trace++] = position + log.getTraceStart(t);
+			}
+			for (int i = 0; i < log.numberOfEvents; i++) {
+				eventIndexes[position + i] = mapping[log.getEvent(i)];
+				times[position + i] = log.getTimestamp(i);
+			}
+			position += log.numberOfEvents;
+		}
+		offsets[numberOfTraces] = numberOfEvents;
+		
+		return new EncodedLog(dictionary, IntBuffer.wrap(offsets), IntBuffer.wrap(eventIndexes), LongBuffer.wrap(times));
+	}
+	
+	
+	/**
+	 * This method appends all the traces of the given log to this log. The
+	 * events of the given log are re-encoded with the dictionary of this log,
+	 * which must contain all of them
+	 *
+	 * @param log the log with the traces to append
+	 */
+	public void append(EncodedLog log) {
+		int[] mapping = log.dictionary.getEventsMapping(dictionary);
+		/* check all the events first, so that a failure leaves this log as it
+		 * was */
+		for (int i = 0; i < log.numberOfEvents; i++) {
+			int event = log.getEvent(i);
+			if (mapping[event] < 0) {
+				throw new IllegalArgumentException("Event " + log.dictionary.getEventName(event) +
+						" (" + log.dictionary.getEventType(event) + ") is not in the dictionary");
+			}
+		}
+		for (int t = 0; t < log.numberOfTraces; t++) {
+			for (int i = log.getTraceStart(t); i < log.getTraceEnd(t); i++) {
+				addEvent(mapping[log.getEvent(i)], log.getTimestamp(i));
+			}
+			closeTrace();
+		}
+	}
+	
+	
+	/**
+	 * This method appends a new trace to the log
+	 *
+	 * @param pi the process instance to append
+	 */
+	@SuppressWarnings("unchecked")
+	public void addTrace(ProcessInstance pi) {
+		AuditTrailEntryList atel = pi.getAuditTrailEntryList();
+		Iterator<AuditTrailEntry> it = atel.iterator();
+		while (it.hasNext()) {
+			AuditTrailEntry ate = it.next();
+			int event = dictionary.getEventIndex(ate.getElement(), ate.getType());
+			if (event < 0) {
+				throw new IllegalArgumentException("Event " + ate.getElement() +
+						" (" + ate.getType() + ") is not in the dictionary");
+			}
+			Date timestamp = ate.getTimestamp();
+			addEvent(event, (timestamp == null)? 0L : timestamp.getTime());
+		}
+		closeTrace();
+	}
+	
+	
+	/**
+	 * This method appends an event to the trace currently under construction
+	 *
+	 * @param event the event index
+	 * @param timestamp the event timestamp
+	 */
+	public void addEvent(int event, long timestamp) {
+		ensureArrays();
+		if (numberOfEvents == eventsArray.length) {
+			int newLength = Math.max(16, numberOfEvents * 2);
+			setArrays(traceOffsetsArray,
+					Arrays.copyOf(eventsArray, newLength),
+					Arrays.copyOf(timestampsArray, newLength));
+		}
+		eventsArray[numberOfEvents] = event;
+		timestampsArray[numberOfEvents] = timestamp;
+		numberOfEvents++;
+	}
+	
+	
+	/**
+	 * This method closes the trace currently under construction: all the
+	 * events added from the previous call belong to the same trace
+	 */
+	public void closeTrace() {
+		ensureArrays();
+		if (numberOfTraces + 1 == traceOffsetsArray.length) {
+			setArrays(Arrays.copyOf(traceOffsetsArray, traceOffsetsArray.length * 2),
+					eventsArray, timestampsArray);
+		}
+		numberOfTraces++;
+		traceOffsetsArray[numberOfTraces] = numberOfEvents;
+	}
+	
+	
+	/**
+	 * This method removes the oldest traces of the log
+	 *
+	 * @param traces the number of traces to remove
+	 */
+	public void removeFirstTraces(int traces) {
+		ensureArrays();
+		int removedEvents = traceOffsetsArray[traces];
+		System.arraycopy(eventsArray, removedEvents, eventsArray, 0, numberOfEvents - removedEvents);
+		System.arraycopy(timestampsArray, removedEvents, timestampsArray, 0, numberOfEvents - removedEvents);
+		for (int t = traces; t <= numberOfTraces; t++) {
+			traceOffsetsArray[t - traces] = traceOffsetsArray[t] - removedEvents;
+		}
+		numberOfTraces -= traces;
+		numberOfEvents -= removedEvents;
+	}
+	
+	
+	/**
+	 * This method returns the position of the first event of the trace
+	 *
+	 * @param trace the trace index
+	 * @return the position of the first event
+	 */
+	public int getTraceStart(int trace) {
+		return traceOffsets.get(trace);
+	}
+	
+	
+	/**
+	 * This method returns the position after the last event of the trace
+	 *
+	 * @param trace the trace index
+	 * @return the position after the last event
+	 */
+	public int getTraceEnd(int trace) {
+		return traceOffsets.get(trace + 1);
+	}
+	
+	
+	/**
+	 * This method returns the event index in the given position
+	 *
+	 * @param position the position in the log
+	 * @return the event index
+	 */
+	public int getEvent(int position) {
+		return events.get(position);
+	}
+	
+	
+	/**
+	 * This method returns the timestamp of the event in the given position
+	 *
+	 * @param position the position in the log
+	 * @return the timestamp, in milliseconds
+	 */
+	public long getTimestamp(int position) {
+		return timestamps.get(position);
+	}
+	
+	
+	/**
+	 * This method returns the buffer with the traces offsets: the entry
+	 * <tt>t</tt> is the position of the first event of the trace <tt>t</tt>,
+	 * the last entry is the number of events
+	 *
+	 * @return the traces offsets (a read only view)
+	 */
+	public IntBuffer getTraceOffsets() {
+		IntBuffer view = traceOffsets.asReadOnlyBuffer();
+		view.limit(numberOfTraces + 1);
+		return view;
+	}
+	
+	
+	/**
+	 * This method returns the buffer with all the event indexes
+	 *
+	 * @return the event indexes (a read only view)
+	 */
+	public IntBuffer getEvents() {
+		IntBuffer view = events.asReadOnlyBuffer();
+		view.limit(numberOfEvents);
+		return view;
+	}
+	
+	
+	/**
+	 * This method returns the buffer with all the timestamps
+	 *
+	 * @return the timestamps (a read only view)
+	 */
+	public LongBuffer getTimestamps() {
+		LongBuffer view = timestamps.asReadOnlyBuffer();
+		view.limit(numberOfEvents);
+		return view;
+	}
+	
+	
+	/**
+	 * This method returns the number of traces of the log
+	 *
+	 * @return the number of traces
+	 */
+	public int getNumberOfTraces() {
+		return numberOfTraces;
+	}
+	
+	
+	/**
+	 * This method returns the total number of events of the log
+	 *
+	 * @return the number of events
+	 */
+	public int getNumberOfEvents() {
+		return numberOfEvents;
+	}
+	
+	
+	/**
+	 * This method returns the dictionary used to encode the log
+	 *
+	 * @return the events dictionary
+	 */
+	public EventDictionary getDictionary() {
+		return dictionary;
+	}
+	
+	
+	/**
+	 * This method makes sure the log is backed by plain arrays, copying the
+	 * buffers if the log is memory mapped
+	 */
+	private void ensureArrays() {
+		if (eventsArray != null) {
+			return;
+		}
+		int[] offsets = new int[numberOfTraces + 1024];
+		int[] eventIndexes = new int[Math.max(16, numberOfEvents * 2)];
+		long[] times = new long[Math.max(16, numberOfEvents * 2)];
+		for (int i = 0; i <= numberOfTraces; i++) {
+			offsets[i] = traceOffsets.get(i);
+		}
+		for (int i = 0; i < numberOfEvents; i++) {
+			eventIndexes[i] = events.get(i);
+			times[i] = timestamps.get(i);
+		}
+		setArrays(offsets, eventIndexes, times);
+	}
+	
+	
+	/**
+	 * This method sets the backing arrays, wrapping them into the buffers
+	 *
+	 * @param offsets the traces offsets
+	 * @param eventIndexes the event indexes
+	 * @param times the timestamps
+	 */
+	private void setArrays(int[] offsets, int[] eventIndexes, long[] times) {
+		traceOffsetsArray = offsets;
+		eventsArray = eventIndexes;
+		timestampsArray = times;
+		traceOffsets = IntBuffer.wrap(offsets);
+		events = IntBuffer.wrap(eventIndexes);
+		timestamps = LongBuffer.wrap(times);
+	}
+}
@@ -0,0 +1,159 @@
+package it.processmining.autohmpp.log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * This class manages a binary cache of an encoded log. The cache file stores
+ * the events dictionary and the columns of the {@link EncodedLog}, together
+ * with a fingerprint of the source file (its path, size and last modification
+ * time), so that a stale cache is never used. When the cache is valid, the
+ * columns are memory mapped (read only) instead of being read: the loading is
+ * almost instantaneous and all the processes mining the same log share the
+ * same pages.
+ *
+ * The file layout is:
+ * <pre>
+ *   int     magic number
+ *   int     format version
+ *   long    source size
+ *   long    source last modification time
+ *   string  source canonical path
+ *   int     number of transitions, followed by their names
+ *   int     number of events, followed by their names and types
+ *   int     number of traces
+ *   int     number of events in the log
+ *   ...     padding to a multiple of 8 bytes
+ *   int[]   traces offsets (number of traces + 1 entries)
+ *   int[]   event indexes
+ *   ...     padding to a multiple of 8 bytes
+ *   long[]  timestamps
+ * </pre>
+ * where each string is stored as an int with the number of bytes followed by
+ * its UTF-8 encoding.
+ *
+ * @author Andrea Burattin
+ * @version 0.1
+ */
+public class EncodedLogCache {
+	
+	private static final int MAGIC = 0x41484d50;
+	private static final int VERSION = 1;
+	private static final String CACHE_EXTENSION = ".enc";
+	
+	
+	/**
+	 * This method returns the cache file associated to the given log file
+	 *
+	 * @param source the log file
+	 * @return the cache file
+	 */
+	public static File getCacheFile(File source) {
+		return new File(source.getPath() + CACHE_EXTENSION);
+	}
+	
+	
+	/**
+	 * This method loads the cached version of the given log file, if a valid
+	 * cache exists
+	 *
+	 * @param source the log file
+	 * @return the memory mapped encoded log, or null if there is no valid
+	 * cache for the source file
+	 * @throws IOException
+	 */
+	public static EncodedLog load(File source) throws IOException {
+		File cache = getCacheFile(source);
+		if (!cache.exists()) {
+			return null;
+		}
+		
+		RandomAccessFile file = new RandomAccessFile(cache, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			long headerSize = Math.min(channel.size(), Integer.MAX_VALUE);
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, headerSize);
+			
+			if (!CacheFiles.checkHeader(header, MAGIC, VERSION, source)) {
+				return null;
+			}
+			
+			EventDictionary dictionary = CacheFiles.readDictionary(header);
+			int numberOfTraces = header.getInt();
+			int numberOfEvents = header.getInt();
+			
+			long position = CacheFiles.align(header.position());
+			IntBuffer traceOffsets = CacheFiles.map(channel, position, 4L * (numberOfTraces + 1)).asIntBuffer();
+			position += 4L * (numberOfTraces + 1);
+			IntBuffer events = CacheFiles.map(channel, position, 4L * numberOfEvents).asIntBuffer();
+			position = CacheFiles.align(position + 4L * numberOfEvents);
+			LongBuffer timestamps = CacheFiles.map(channel, position, 8L * numberOfEvents).asLongBuffer();
+			
+			return new EncodedLog(dictionary, traceOffsets, events, timestamps);
+		} finally {
+			/* the mappings stay valid after the channel is closed */
+			file.close();
+		}
+	}
+	
+	
+	/**
+	 * This method writes the cache for the given log file. The cache is
+	 * written into a temporary file which is then renamed, so that concurrent
+	 * processes never see a partial cache.
+	 *
+	 * @param source the log file
+	 * @param log the encoded version of the log file
+	 * @throws IOException
+	 */
+	public static void store(File source, EncodedLog log) throws IOException {
+		/* the largest regions, the events and their timestamps */
+		CacheFiles.checkRegion(4L * (log.getNumberOfTraces() + 1));
+		CacheFiles.checkRegion(8L * log.getNumberOfEvents());
+		File cache = getCacheFile(source);
+		File temp = CacheFiles.createTempFile(cache);
+		EventDictionary dictionary = log.getDictionary();
+		
+		CacheOutputStream out = null;
+		boolean written = false;
+		try {
+			out = new CacheOutputStream(temp);
+			CacheFiles.writeHeader(out, MAGIC, VERSION, source);
+			CacheFiles.writeDictionary(out, dictionary);
+			out.writeInt(log.getNumberOfTraces());
+			out.writeInt(log.getNumberOfEvents());
+			
+			CacheFiles.pad(out);
+			IntBuffer traceOffsets = log.getTraceOffsets();
+			for (int t = 0; t <= log.getNumberOfTraces(); t++) {
+				out.writeInt(traceOffsets.get(t));
+			}
+			IntBuffer events = log.getEvents();
+			for (int i = 0; i < log.getNumberOfEvents(); i++) {
+				out.writeInt(events.get(i));
+			}
+			/* the header is aligned, so are the timestamps if the number of
+			 * integers written is even */
+			if ((log.getNumberOfTraces() + 1 + log.getNumberOfEvents()) % 2 != 0) {
+				out.writeInt(0);
+			}
+			LongBuffer timestamps = log.getTimestamps();
+			for (int i = 0; i < log.getNumberOfEvents(); i++) {
+				out.writeLong(timestamps.get(i));
+			}
+			out.close();
+			written = true;
+		} finally {
+			if (!written) {
+				CacheFiles.discard(out, temp);
+			}
+		}
+		
+		CacheFiles.replace(temp, cache);
+	}
+}
@@ -0,0 +1,356 @@
+package it.processmining.autohmpp.log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.processmining.framework.log.LogEvent;
+import org.processmining.framework.log.LogEvents;
+import org.processmining.framework.log.LogSummary;
+
+/**
+ * This class maps the events of a log (pairs of activity name and event type)
+ * and the activities (transitions) to dense integer identifiers. The event
+ * identifiers follow the order of the log summary events, the transition
+ * identifiers follow the order of the log summary model elements, so they can
+ * be used directly as matrices indexes.
+ * 
+ * @author Andrea Burattin
+ * @version 0.1
+ */
+public class EventDictionary {
+	
+	private static final String START_TYPE = "start";
+	private static final String COMPLETE_TYPE = "complete";
+	
+	private String[] transitionNames;
+	private String[] eventNames;
+	private String[] eventTypes;
+	
+	/* transition name -> transition index */
+	private HashMap<String, Integer> transitionIndexes;
+	/* event type -> type index */
+	private HashMap<String, Integer> typeIndexes;
+	/* [transition index][type index] -> event index (or -1) */
+	private int[][] eventIndexes;
+	/* event index -> transition index */
+	private int[] eventTransition;
+	/* event index -> type index */
+	private int[] eventType;
+	/* transition index -> index of its start and complete events (or -1) */
+	private int[] startEvents;
+	private int[] completeEvents;
+	
+	
+	/**
+	 * Class constructor
+	 * 
+	 * @param transitionNames the activity names
+	 * @param eventNames the activity name of each event
+	 * @param eventTypes the event type of each event
+	 */
+	public EventDictionary(String[] transitionNames, String[] eventNames, String[] eventTypes) {
+		this.transitionNames = transitionNames;
+		this.eventNames = eventNames;
+		this.eventTypes = eventTypes;
+		
+		transitionIndexes = new HashMap<String, Integer>();
+		for (int i = 0; i < transitionNames.length; i++) {
+			transitionIndexes.put(transitionNames[i], i);
+		}
+		typeIndexes = new HashMap<String, Integer>();
+		for (int i = 0; i < eventTypes.length; i++) {
+			if (!typeIndexes.containsKey(eventTypes[i])) {
+				typeIndexes.put(eventTypes[i], typeIndexes.size());
+			}
+		}
+		
+		eventIndexes = new int[transitionNames.length][typeIndexes.size()];
+		for (int i = 0; i < transitionNames.length; i++) {
+			for (int j = 0; j < typeIndexes.size(); j++) {
+				eventIndexes[i][j] = -1;
+			}
+		}
+		eventTransition = new int[eventNames.length];
+		eventType = new int[eventNames.length];
+		for (int i = 0; i < eventNames.length; i++) {
+			Integer transition = transitionIndexes.get(eventNames[i]);
+			if (transition == null) {
+				throw new IllegalArgumentException("Event " + eventNames[i] + 
+						" (" + eventTypes[i] + ") refers to an unknown activity");
+			}
+			eventTransition[i] = transition;
+			eventType[i] = typeIndexes.get(eventTypes[i]);
+			eventIndexes[transition][eventType[i]] = i;
+		}
+		
+		startEvents = new int[transitionNames.length];
+		completeEvents = new int[transitionNames.length];
+		for (int i = 0; i < transitionNames.length; i++) {
+			startEvents[i] = getEventIndex(i, START_TYPE);
+			completeEvents[i] = getEventIndex(i, COMPLETE_TYPE);
+		}
+	}
+	
+	
+	/**
+	 * This method builds the dictionary of the given log summary
+	 * 
+	 * @param summary the log summary
+	 * @return the dictionary of the log events
+	 */
+	public static EventDictionary fromLogSummary(LogSummary summary) {
+		LogEvents events = summary.getLogEvents();
+		String[] eventNames = new String[events.size()];
+		String[] eventTypes = new String[events.size()];
+		for (int i = 0; i < events.size(); i++) {
+			LogEvent le = events.get(i);
+			eventNames[i] = le.getModelElementName();
+			eventTypes[i] = le.getEventType();
+		}
+		return new EventDictionary(summary.getModelElements(), eventNames, eventTypes);
+	}
+	
+	
+	/**
+	 * This method builds a dictionary with all the activities and all the
+	 * events of the given dictionaries. Activities and events are ordered by
+	 * their first appearance, so the first dictionary is a prefix of the union
+	 * 
+	 * @param dictionaries the dictionaries to merge
+	 * @return the union dictionary
+	 */
+	public static EventDictionary union(EventDictionary... dictionaries) {
+		ArrayList<String> transitions = new ArrayList<String>();
+		ArrayList<String> names = new ArrayList<String>();
+		ArrayList<String> types = new ArrayList<String>();
+		HashMap<String, Integer> knownTransitions = new HashMap<String, Integer>();
+		HashMap<String, HashMap<String, Integer>> knownEvents = new HashMap<String, HashMap<String, Integer>>();
+		
+		for (EventDictionary d : dictionaries) {
+			for (int i = 0; i < d.getTransitionsSize(); i++) {
+				if (!knownTransitions.containsKey(d.transitionNames[i])) {
+					knownTransitions.put(d.transitionNames[i], transitions.size());
+					transitions.add(d.transitionNames[i]);
+				}
+			}
+			for (int i = 0; i < d.getEventsSize(); i++) {
+				HashMap<String, Integer> eventTypes = knownEvents.get(d.eventNames[i]);
+				if (eventTypes == null) {
+					eventTypes = new HashMap<String, Integer>();
+					knownEvents.put(d.eventNames[i], eventTypes);
+				}
+				if (!eventTypes.containsKey(d.eventTypes[i])) {
+					eventTypes.put(d.eventTypes[i], names.size());
+					names.add(d.eventNames[i]);
+					types.add(d.eventTypes[i]);
+				}
+			}
+		}
+		
+		return new EventDictionary(
+				transitions.toArray(new String[transitions.size()]),
+				names.toArray(new String[names.size()]),
+				types.toArray(new String[types.size()]));
+	}
+	
+	
+	/**
+	 * This method returns, for each event of this dictionary, the index of
+	 * the same event in the given dictionary
+	 * 
+	 * @param target the target dictionary
+	 * @return the event indexes in the target dictionary (-1 for the events
+	 * which are not in the target)
+	 */
+	public int[] getEventsMapping(EventDictionary target) {
+		int[] mapping = new int[eventNames.length];
+		for (int i = 0; i < eventNames.length; i++) {
+			mapping[i] = target.getEventIndex(eventNames[i], eventTypes[i]);
+		}
+		return mapping;
+	}
+	
+	
+	/**
+	 * This method returns, for each activity of this dictionary, the index of
+	 * the same activity in the given dictionary
+	 * 
+	 * @param target the target dictionary
+	 * @return the transition indexes in the target dictionary (-1 for the
+	 * activities which are not in the target)
+	 */
+	public int[] getTransitionsMapping(EventDictionary target) {
+		int[] mapping = new int[transitionNames.length];
+		for (int i = 0; i < transitionNames.length; i++) {
+			mapping[i] = target.getTransitionIndex(transitionNames[i]);
+		}
+		return mapping;
+	}
+	
+	
+	/**
+	 * This method returns the index of the given event
+	 * 
+	 * @param name the activity name
+	 * @param type the event type
+	 * @return the event index, or -1 if the event is unknown
+	 */
+	public int getEventIndex(String name, String type) {
+		Integer transition = transitionIndexes.get(name);
+		Integer typeIndex = typeIndexes.get(type);
+		if (transition == null || typeIndex == null) {
+			return -1;
+		}
+		return eventIndexes[transition][typeIndex];
+	}
+	
+	
+	/**
+	 * This method returns the index of the event of the given type for the
+	 * given transition
+	 * 
+	 * @param transition the transition index
+	 * @param type the event type
+	 * @return the event index, or -1 if the event is unknown
+	 */
+	public int getEventIndex(int transition, String type) {
+		Integer typeIndex = typeIndexes.get(type);
+		if (typeIndex == null) {
+			return -1;
+		}
+		return eventIndexes[transition][typeIndex];
+	}
+	
+	
+	/**
+	 * This method returns the index of the given activity
+	 * 
+	 * @param name the activity name
+	 * @return the transition index, or -1 if the activity is unknown
+	 */
+	public int getTransitionIndex(String name) {
+		Integer transition = transitionIndexes.get(name);
+		return (transition == null)? -1 : transition;
+	}
+	
+	
+	/**
+	 * This method returns the index of the activity of the given event
+	 * 
+	 * @param event the event index
+	 * @return the transition index
+	 */
+	public int getTransitionOfEvent(int event) {
+		return eventTransition[event];
+	}
+	
+	
+	/**
+	 * This method returns the index of the type of the given event: two
+	 * events have the same type if and only if they have the same type index
+	 * 
+	 * @param event the event index
+	 * @return the type index
+	 */
+	public int getTypeOfEvent(int event) {
+		return eventType[event];
+	}
+	
+	
+	/**
+	 * This method tells whether the given event is the start of its activity
+	 * 
+	 * @param event the event index
+	 * @return true if the event type is <tt>start</tt>
+	 */
+	public boolean isStartEvent(int event) {
+		return startEvents[eventTransition[event]] == event;
+	}
+	
+	
+	/**
+	 * This method tells whether the given event is the completion of its
+	 * activity
+	 * 
+	 * @param event the event index
+	 * @return true if the event type is <tt>complete</tt>
+	 */
+	public boolean isCompleteEvent(int event) {
+		return completeEvents[eventTransition[event]] == event;
+	}
+	
+	
+	/**
+	 * This method returns the start event of the given activity
+	 * 
+	 * @param transition the transition index
+	 * @return the event index, or -1 if the activity is never started
+	 */
+	public int getStartEvent(int transition) {
+		return startEvents[transition];
+	}
+	
+	
+	/**
+	 * This method returns the complete event of the given activity
+	 * 
+	 * @param transition the transition index
+	 * @return the event index, or -1 if the activity is never completed
+	 */
+	public int getCompleteEvent(int transition) {
+		return completeEvents[transition];
+	}
+	
+	
+	/**
+	 * This method returns the activity name of the given event
+	 * 
+	 * @param event the event index
+	 * @return the activity name
+	 */
+	public String getEventName(int event) {
+		return eventNames[event];
+	}
+	
+	
+	/**
+	 * This method returns the event type of the given event
+	 * 
+	 * @param event the event index
+	 * @return the event type
+	 */
+	public String getEventType(int event) {
+		return eventTypes[event];
+	}
+	
+	
+	/**
+	 * This method returns the name of the given activity
+	 * 
+	 * @param transition the transition index
+	 * @return the activity name
+	 */
+	public String getTransitionName(int transition) {
+		return transitionNames[transition];
+	}
+	
+	
+	/**
+	 * This method returns the number of events
+	 * 
+	 * @return the number of events
+	 */
+	public int getEventsSize() {
+		return eventNames.length;
+	}
+	
+	
+	/**
+	 * This method returns the number of activities
+	 * 
+	 * @return the number of activities
+	 */
+	public int getTransitionsSize() {
+		return transitionNames.length;
+	}
+}
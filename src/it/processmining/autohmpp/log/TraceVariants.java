@@ -0,0 +1,260 @@
+package it.processmining.autohmpp.log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * This class folds a log into its variants: the distinct sequences of events,
+ * each one with the number of traces following it. All the measures which do
+ * not depend on the timestamps can be computed once for each variant,
+ * weighted by its multiplicity, instead of once for each trace.
+ *
+ * The variants are stored as an {@link EncodedLog}, with one trace for each
+ * variant (the timestamps are the ones of the first trace of the variant, and
+ * are meaningless).
+ *
+ * @author Andrea Burattin
+ * @version 0.1
+ */
+public class TraceVariants {
+	
+	private EncodedLog variants;
+	private int[] multiplicity;
+	private int numberOfTraces;
+	private int numberOfEvents;
+	
+	
+	/**
+	 * Class constructor
+	 *
+	 * @param variants the log with one trace for each variant (the variants
+	 * must be distinct)
+	 * @param multiplicity the number of traces of each variant
+	 */
+	public TraceVariants(EncodedLog variants, int[] multiplicity) {
+		this.variants = variants;
+		this.multiplicity = multiplicity;
+		for (int v = 0; v < multiplicity.length; v++) {
+			numberOfTraces += multiplicity[v];
+			numberOfEvents += multiplicity[v] * (variants.getTraceEnd(v) - variants.getTraceStart(v));
+		}
+	}
+	
+	
+	/**
+	 * This method folds the given log into its variants. The variants are
+	 * sorted by their first occurrence in the log
+	 *
+	 * @param log the log to fold
+	 * @return the variants of the log
+	 */
+	public static TraceVariants fromLog(EncodedLog log) {
+		return fold(log, null);
+	}
+	
+	
+	/**
+	 * This method merges the given variants: the variants are re-encoded with
+	 * the given dictionary and the multiplicities of the same sequence of
+	 * events are summed
+	 *
+	 * @param dictionary the dictionary of the result, which must contain all
+	 * the events of the variants
+	 * @param variants the variants to merge
+	 * @return the merged variants
+	 */
+	public static TraceVariants merge(EventDictionary dictionary, TraceVariants... variants) {
+		EncodedLog[] logs = new EncodedLog[variants.length];
+		int numberOfVariants = 0;
+		for (int i = 0; i < variants.length; i++) {
+			logs[i] = variants[i].variants;
+			numberOfVariants += variants[i].multiplicity.length;
+		}
+		int[] weights = new int[numberOfVariants];
+		int position = 0;
+		for (int i = 0; i < variants.length; i++) {
+			System.arraycopy(variants[i].multiplicity, 0, weights, position, variants[i].multiplicity.length);
+			position += variants[i].multiplicity.length;
+		}
+		return fold(EncodedLog.concatenate(dictionary, logs), weights);
+	}
+	
+	
+	/**
+	 * This method folds the given log into its variants
+	 *
+	 * @param log the log to fold
+	 * @param weights the number of traces represented by each trace of the
+	 * log, or null if each trace is a single one
+	 * @return the variants of the log
+	 */
+	private static TraceVariants fold(EncodedLog log, int[] weights) {
+		EncodedLog variants = new EncodedLog(log.getDictionary());
+		int[] multiplicity = new int[16];
+		HashMap<Sequence, Integer> indexes = new HashMap<Sequence, Integer>();
+		
+		for (int t = 0; t < log.getNumberOfTraces(); t++) {
+			int from = log.getTraceStart(t);
+			int to = log.getTraceEnd(t);
+			int[] events = new int[to - from];
+			for (int i = from; i < to; i++) {
+				events[i - from] = log.getEvent(i);
+			}
+			Sequence sequence = new Sequence(events);
+			Integer variant = indexes.get(sequence);
+			if (variant == null) {
+				variant = variants.getNumberOfTraces();
+				indexes.put(sequence, variant);
+				for (int i = from; i < to; i++) {
+					variants.addEvent(log.getEvent(i), log.getTimestamp(i));
+				}
+				variants.closeTrace();
+				if (variant == multiplicity.length) {
+					multiplicity = Arrays.copyOf(multiplicity, multiplicity.length * 2);
+				}
+			}
+			multiplicity[variant] += (weights == null)? 1 : weights[t];
+		}
+		return new TraceVariants(variants, Arrays.copyOf(multiplicity, variants.getNumberOfTraces()));
+	}
+	
+	
+	/**
+	 * This method extracts a stratified sample of the variants, with at least
+	 * the given number of traces. The variants are grouped into strata by the
+	 * order of magnitude of their multiplicity (so that both the frequent and
+	 * the rare behaviour are represented) and from each stratum random
+	 * variants are taken, until the stratum contributes its share of traces.
+	 * The sampled variants keep their multiplicity.
+	 *
+	 * @param traces the minimum number of traces of the sample
+	 * @param random the random generator used to pick the variants
+	 * @return the sampled variants (this object, if the sample would contain
+	 * all the traces)
+	 */
+	public TraceVariants sample(int traces, Random random) {
+		if (traces >= numberOfTraces) {
+			return this;
+		}
+		
+		/* the stratum of a variant is the base 2 logarithm of its multiplicity */
+		ArrayList<ArrayList<Integer>> strata = new ArrayList<ArrayList<Integer>>();
+		ArrayList<Long> strataTraces = new ArrayList<Long>();
+		for (int v = 0; v < multiplicity.length; v++) {
+			int stratum = 31 - Integer.numberOfLeadingZeros(multiplicity[v]);
+			while (strata.size() <= stratum) {
+				strata.add(new ArrayList<Integer>());
+				strataTraces.add(0L);
+			}
+			strata.get(stratum).add(v);
+			strataTraces.set(stratum, strataTraces.get(stratum) + multiplicity[v]);
+		}
+		
+		boolean[] selected = new boolean[multiplicity.length];
+		int selectedVariants = 0;
+		for (int s = 0; s < strata.size(); s++) {
+			ArrayList<Integer> stratum = strata.get(s);
+			long quota = (long) Math.ceil((double) traces * strataTraces.get(s) / numberOfTraces);
+			Collections.shuffle(stratum, random);
+			long sampled = 0;
+			for (int i = 0; i < stratum.size() && sampled < quota; i++) {
+				selected[stratum.get(i)] = true;
+				sampled += multiplicity[stratum.get(i)];
+				selectedVariants++;
+			}
+		}
+		
+		EncodedLog sample = new EncodedLog(variants.getDictionary());
+		int[] sampleMultiplicity = new int[selectedVariants];
+		for (int v = 0; v < multiplicity.length; v++) {
+			if (selected[v]) {
+				for (int i = variants.getTraceStart(v); i < variants.getTraceEnd(v); i++) {
+					sample.addEvent(variants.getEvent(i), variants.getTimestamp(i));
+				}
+				sampleMultiplicity[sample.getNumberOfTraces()] = multiplicity[v];
+				sample.closeTrace();
+			}
+		}
+		return new TraceVariants(sample, sampleMultiplicity);
+	}
+	
+	
+	/**
+	 * This method returns the log with one trace for each variant: the variant
+	 * <tt>v</tt> is the trace <tt>v</tt> of this log
+	 *
+	 * @return the variants log
+	 */
+	public EncodedLog getVariants() {
+		return variants;
+	}
+	
+	
+	/**
+	 * This method returns the number of traces following the given variant
+	 *
+	 * @param variant the variant index
+	 * @return the multiplicity of the variant
+	 */
+	public int getMultiplicity(int variant) {
+		return multiplicity[variant];
+	}
+	
+	
+	/**
+	 * This method returns the number of distinct variants
+	 *
+	 * @return the number of variants
+	 */
+	public int getNumberOfVariants() {
+		return multiplicity.length;
+	}
+	
+	
+	/**
+	 * This method returns the number of traces of the folded log
+	 *
+	 * @return the number of traces
+	 */
+	public int getNumberOfTraces() {
+		return numberOfTraces;
+	}
+	
+	
+	/**
+	 * This method returns the number of events of the folded log
+	 *
+	 * @return the number of events
+	 */
+	public int getNumberOfEvents() {
+		return numberOfEvents;
+	}
+	
+	
+	/**
+	 * A sequence of event indexes, used as key of the variants map
+	 */
+	private static class Sequence {
+		
+		private int[] events;
+		private int hash;
+		
+		public Sequence(int[] events) {
+			this.events = events;
+			this.hash = Arrays.hashCode(events);
+		}
+		
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			return (o instanceof Sequence) && Arrays.equals(events, ((Sequence) o).events);
+		}
+	}
+}
@@ -0,0 +1,228 @@
+package it.processmining.autohmpp.matrix;
+
+import cern.colt.matrix.DoubleFactory1D;
+import cern.colt.matrix.DoubleFactory2D;
+import cern.colt.matrix.DoubleMatrix1D;
+import cern.colt.matrix.DoubleMatrix2D;
+import cern.colt.matrix.impl.AbstractMatrix2D;
+
+/**
+ * This class exposes a {@link Matrix} as a Colt matrix, for the APIs (such as
+ * the one of the heuristics net) requiring it. No cell is copied: reads and
+ * writes go straight to the wrapped matrix.
+ * 
+ * The views (rows, columns, parts, dices and selections) share the cells as
+ * well. As in the dense Colt matrices, a cell is addressed by its position
+ * <tt>row * columns + column</tt> in the wrapped matrix: a selection keeps
+ * the positions of its rows and columns, a plain view computes them from
+ * its strides.
+ * 
+ * @author Andrea Burattin
+ * @version 0.1
+ */
+public class ColtMatrixView extends DoubleMatrix2D {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private Matrix matrix;
+	private int[] rowOffsets;
+	private int[] columnOffsets;
+	
+	
+	/**
+	 * Class constructor
+	 * 
+	 * @param matrix the matrix to expose
+	 */
+	public ColtMatrixView(Matrix matrix) {
+		this.matrix = matrix;
+		setUp(matrix.rows(), matrix.columns());
+	}
+	
+	
+	/**
+	 * Class constructor, for a selection of the wrapped matrix
+	 * 
+	 * @param matrix the wrapped matrix
+	 * @param rowOffsets the positions of the selected rows
+	 * @param columnOffsets the positions of the selected columns
+	 */
+	private ColtMatrixView(Matrix matrix, int[] rowOffsets, int[] columnOffsets) {
+		this.matrix = matrix;
+		this.rowOffsets = rowOffsets;
+		this.columnOffsets = columnOffsets;
+		setUp(rowOffsets.length, columnOffsets.length, 0, 0, 1, 1);
+		this.isNoView = false;
+	}
+	
+	
+	@Override
+	public double getQuick(int row, int column) {
+		if (isNoView) {
+			return matrix.getAsDouble(row, column);
+		}
+		return getCell(matrix, index(row, column));
+	}
+	
+	
+	@Override
+	public void setQuick(int row, int column, double value) {
+		if (isNoView) {
+			matrix.setAsDouble(row, column, value);
+			return;
+		}
+		setCell(matrix, index(row, column), value);
+	}
+	
+	
+	@Override
+	protected int _rowOffset(int absRank) {
+		return (rowOffsets == null)? absRank : rowOffsets[absRank];
+	}
+	
+	
+	@Override
+	protected int _columnOffset(int absRank) {
+		return (columnOffsets == null)? absRank : columnOffsets[absRank];
+	}
+	
+	
+	@Override
+	protected AbstractMatrix2D vDice() {
+		super.vDice();
+		/* the selected rows become the selected columns, and vice versa */
+		int[] tmp = rowOffsets;
+		rowOffsets = columnOffsets;
+		columnOffsets = tmp;
+		return this;
+	}
+	
+	
+	@Override
+	public DoubleMatrix1D viewRow(int row) {
+		checkRow(row);
+		return new View1D(matrix, columns, columnZero, columnStride, columnOffsets, _rowOffset(_rowRank(row)));
+	}
+	
+	
+	@Override
+	public DoubleMatrix1D viewColumn(int column) {
+		checkColumn(column);
+		return new View1D(matrix, rows, rowZero, rowStride, rowOffsets, _columnOffset(_columnRank(column)));
+	}
+	
+	
+	@Override
+	public DoubleMatrix2D like(int rows, int columns) {
+		return DoubleFactory2D.dense.make(rows, columns);
+	}
+	
+	
+	@Override
+	public DoubleMatrix1D like1D(int size) {
+		return DoubleFactory1D.dense.make(size);
+	}
+	
+	
+	@Override
+	protected DoubleMatrix1D like1D(int size, int zero, int stride) {
+		return new View1D(matrix, size, zero, stride, null, 0);
+	}
+	
+	
+	@Override
+	protected DoubleMatrix2D viewSelectionLike(int[] rowOffsets, int[] columnOffsets) {
+		return new ColtMatrixView(matrix, rowOffsets, columnOffsets);
+	}
+	
+	
+	@Override
+	protected boolean haveSharedCellsRaw(DoubleMatrix2D other) {
+		return (other instanceof ColtMatrixView) && ((ColtMatrixView) other).matrix == matrix;
+	}
+	
+	
+	/**
+	 * This method returns the value of the cell at the given position
+	 */
+	private static double getCell(Matrix matrix, int position) {
+		int columns = matrix.columns();
+		return matrix.getAsDouble(position / columns, position % columns);
+	}
+	
+	
+	/**
+	 * This method sets the value of the cell at the given position
+	 */
+	private static void setCell(Matrix matrix, int position, double value) {
+		int columns = matrix.columns();
+		matrix.setAsDouble(position / columns, position % columns, value);
+	}
+	
+	
+	/**
+	 * This class is a row, a column or a selection of cells of the wrapped
+	 * matrix. The position of each cell is the one of its rank (from the
+	 * offsets, if any, or from the stride) plus the offset of the view.
+	 */
+	private static class View1D extends DoubleMatrix1D {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private Matrix matrix;
+		private int[] offsets;
+		private int offset;
+		
+		
+		public View1D(Matrix matrix, int size, int zero, int stride, int[] offsets, int offset) {
+			this.matrix = matrix;
+			this.offsets = offsets;
+			this.offset = offset;
+			setUp(size, zero, stride);
+			this.isNoView = false;
+		}
+		
+		
+		@Override
+		public double getQuick(int index) {
+			return getCell(matrix, index(index));
+		}
+		
+		
+		@Override
+		public void setQuick(int index, double value) {
+			setCell(matrix, index(index), value);
+		}
+		
+		
+		@Override
+		protected int _offset(int absRank) {
+			return offset + ((offsets == null)? absRank : offsets[absRank]);
+		}
+		
+		
+		@Override
+		public DoubleMatrix1D like(int size) {
+			return DoubleFactory1D.dense.make(size);
+		}
+		
+		
+		@Override
+		public DoubleMatrix2D like2D(int rows, int columns) {
+			return DoubleFactory2D.dense.make(rows, columns);
+		}
+		
+		
+		@Override
+		protected DoubleMatrix1D viewSelectionLike(int[] offsets) {
+			/* the offsets of a selection already include the one of the view */
+			return new View1D(matrix, offsets.length, 0, 1, offsets, 0);
+		}
+		
+		
+		@Override
+		protected boolean haveSharedCellsRaw(DoubleMatrix1D other) {
+			return (other instanceof View1D) && ((View1D) other).matrix == matrix;
+		}
+	}
+}
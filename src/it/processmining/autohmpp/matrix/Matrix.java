@@ -0,0 +1,50 @@
+package it.processmining.autohmpp.matrix;
+
+/**
+ * This interface describes a two dimensional matrix of numbers, independently
+ * of the primitive type it stores and of its layout. It is the common ground
+ * for the adapters (such as {@link ColtMatrixView}) and for the code which
+ * does not care about the specific storage; the hot paths should use the
+ * primitive accessors of the concrete classes.
+ * 
+ * @author Andrea Burattin
+ * @version 0.1
+ */
+public interface Matrix {
+	
+	/**
+	 * This method returns the number of rows of the matrix
+	 * 
+	 * @return the number of rows
+	 */
+	public int rows();
+	
+	
+	/**
+	 * This method returns the number of columns of the matrix
+	 * 
+	 * @return the number of columns
+	 */
+	public int columns();
+	
+	
+	/**
+	 * This method returns the value of a cell, as a double
+	 * 
+	 * @param row the row of the cell
+	 * @param column the column of the cell
+	 * @return the value of the cell
+	 */
+	public double getAsDouble(int row, int column);
+	
+	
+	/**
+	 * This method sets the value of a cell, converting it to the type stored
+	 * by the matrix
+	 * 
+	 * @param row the row of the cell
+	 * @param column the column of the cell
+	 * @param value the new value of the cell
+	 */
+	public void setAsDouble(int row, int column, double value);
+}
@@ -0,0 +1,114 @@
+package it.processmining.autohmpp.matrix;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * This class allocates the storage of the matrices. By default the values are
+ * kept in heap buffers; when the off heap storage is enabled, new matrices
+ * are backed by direct buffers instead, so that large logs do not put their
+ * counts under the control of the garbage collector. The setting is process
+ * wide and affects only the matrices allocated after the change.
+ *
+ * Matrices can also wrap buffers provided by the caller (for example, read
+ * only memory mapped regions of a file): such matrices are copied into a new
+ * buffer the first time they are updated.
+ *
+ * @author Andrea Burattin
+ * @version 0.1
+ */
+public class MatrixBuffers {
+	
+	private static volatile boolean offHeap = false;
+	
+	
+	/**
+	 * This method sets whether the new matrices are allocated off heap
+	 *
+	 * @param offHeap true to allocate direct buffers, false to allocate heap
+	 * buffers
+	 */
+	public static void setOffHeap(boolean offHeap) {
+		MatrixBuffers.offHeap = offHeap;
+	}
+	
+	
+	/**
+	 * This method tells whether the new matrices are allocated off heap
+	 *
+	 * @return true if direct buffers are allocated
+	 */
+	public static boolean isOffHeap() {
+		return offHeap;
+	}
+	
+	
+	/**
+	 * This method allocates a buffer of integers filled with zeros
+	 *
+	 * @param size the number of integers
+	 * @return the new buffer
+	 */
+	public static IntBuffer allocateInt(int size) {
+		if (offHeap) {
+			return allocateDirect(size, 4).asIntBuffer();
+		}
+		return IntBuffer.allocate(size);
+	}
+	
+	
+	/**
+	 * This method allocates a buffer of doubles filled with zeros
+	 *
+	 * @param size the number of doubles
+	 * @return the new buffer
+	 */
+	public static DoubleBuffer allocateDouble(int size) {
+		if (offHeap) {
+			return allocateDirect(size, 8).asDoubleBuffer();
+		}
+		return DoubleBuffer.allocate(size);
+	}
+	
+	
+	/**
+	 * This method copies the given buffer into a new writable one
+	 *
+	 * @param source the buffer to copy (from 0 to its limit)
+	 * @return the new buffer
+	 */
+	public static IntBuffer copy(IntBuffer source) {
+		IntBuffer copy = allocateInt(source.limit());
+		IntBuffer s = source.duplicate();
+		s.rewind();
+		copy.put(s);
+		copy.rewind();
+		return copy;
+	}
+	
+	
+	/**
+	 * This method copies the given buffer into a new writable one
+	 *
+	 * @param source the buffer to copy (from 0 to its limit)
+	 * @return the new buffer
+	 */
+	public static DoubleBuffer copy(DoubleBuffer source) {
+		DoubleBuffer copy = allocateDouble(source.limit());
+		DoubleBuffer s = source.duplicate();
+		s.rewind();
+		copy.put(s);
+		copy.rewind();
+		return copy;
+	}
+	
+	
+	private static ByteBuffer allocateDirect(int size, int bytes) {
+		if ((long) size * bytes > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Matrix too large to be allocated off heap (" + size + " cells)");
+		}
+		return ByteBuffer.allocateDirect(size * bytes).order(ByteOrder.nativeOrder());
+	}
+}
@@ -0,0 +1,165 @@
+package it.processmining.autohmpp.matrix;
+
+import java.util.Arrays;
+
+/**
+ * This class is a sparse matrix of doubles, meant for the matrices with just
+ * a few non zero cells (such as the accepted dependency measures). The cells
+ * are stored in an open addressing hash table with linear probing: the key of
+ * a cell is <tt>row * columns + column</tt>, kept in a primitive array
+ * together with the value, so there is no boxing and no entry object.
+ * 
+ * Cells set to zero are never added but, once added, they are not removed;
+ * the slots of the table can be iterated (see {@link #slots()}) to visit all
+ * the stored cells without scanning the whole matrix.
+ * 
+ * @author Andrea Burattin
+ * @version 0.1
+ */
+public class SparseDoubleMatrix implements Matrix {
+	
+	private static final long FREE = -1;
+	private static final int INITIAL_CAPACITY = 16;
+	
+	private int rows;
+	private int columns;
+	private long[] keys;
+	private double[] values;
+	private int size = 0;
+	
+	
+	/**
+	 * Class constructor, for a matrix filled with zeros
+	 * 
+	 * @param rows the number of rows
+	 * @param columns the number of columns
+	 */
+	public SparseDoubleMatrix(int rows, int columns) {
+		this.rows = rows;
+		this.columns = columns;
+		this.keys = new long[INITIAL_CAPACITY];
+		this.values = new double[INITIAL_CAPACITY];
+		Arrays.fill(keys, FREE);
+	}
+	
+	
+	/**
+	 * This method returns the slot of the given key: the one containing it, or
+	 * the free one where it should be inserted
+	 */
+	private int slotOf(long key) {
+		int mask = keys.length - 1;
+		/* mix the bits of the key, consecutive cells are spread apart */
+		long h = key * 0x9E3779B97F4A7C15L;
+		int slot = (int) (h ^ (h >>> 32)) & mask;
+		while (keys[slot] != FREE && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+	
+	
+	public double get(int row, int column) {
+		int slot = slotOf((long) row * columns + column);
+		return (keys[slot] == FREE)? 0.0 : values[slot];
+	}
+	
+	
+	public void set(int row, int column, double value) {
+		long key = (long) row * columns + column;
+		int slot = slotOf(key);
+		if (keys[slot] == FREE) {
+			if (value == 0.0) {
+				return;
+			}
+			keys[slot] = key;
+			values[slot] = value;
+			/* keep the load factor under 3/4 */
+			if (++size * 4 > keys.length * 3) {
+				rehash(keys.length * 2);
+			}
+			return;
+		}
+		values[slot] = value;
+	}
+	
+	
+	/**
+	 * This method moves all the cells into a table with the given capacity
+	 */
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		double[] oldValues = values;
+		keys = new long[capacity];
+		values = new double[capacity];
+		Arrays.fill(keys, FREE);
+		for (int s = 0; s < oldKeys.length; s++) {
+			if (oldKeys[s] != FREE) {
+				int slot = slotOf(oldKeys[s]);
+				keys[slot] = oldKeys[s];
+				values[slot] = oldValues[s];
+			}
+		}
+	}
+	
+	
+	/**
+	 * This method returns the number of slots of the table. Each slot is
+	 * either free or contains a cell (see {@link #isUsed(int)})
+	 * 
+	 * @return the number of slots
+	 */
+	public int slots() {
+		return keys.length;
+	}
+	
+	
+	public boolean isUsed(int slot) {
+		return keys[slot] != FREE;
+	}
+	
+	
+	public int rowAt(int slot) {
+		return (int) (keys[slot] / columns);
+	}
+	
+	
+	public int columnAt(int slot) {
+		return (int) (keys[slot] % columns);
+	}
+	
+	
+	public double valueAt(int slot) {
+		return values[slot];
+	}
+	
+	
+	/**
+	 * This method returns the number of stored cells
+	 * 
+	 * @return the number of cells
+	 */
+	public int size() {
+		return size;
+	}
+	
+	
+	public int rows() {
+		return rows;
+	}
+	
+	
+	public int columns() {
+		return columns;
+	}
+	
+	
+	public double getAsDouble(int row, int column) {
+		return get(row, column);
+	}
+	
+	
+	public void setAsDouble(int row, int column, double value) {
+		set(row, column, value);
+	}
+}
@@ -0,0 +1,396 @@
+package it.processmining.autohmpp.matrix;
+
+import java.nio.IntBuffer;
+
+/**
+ * This class is a sparse matrix of integers, meant for the counts which are
+ * non zero only for the pairs actually observed in the log (such as the
+ * successions between events). Each row is stored as in the compressed
+ * sparse row format: the columns of its non zero cells, in ascending order,
+ * and their values. Each row has its own arrays, so that the matrix can be
+ * updated while the log is counted; cells going back to zero are removed.
+ * 
+ * Once the counting is over, the matrix can be compressed: all the rows are
+ * moved into three buffers (the offset of each row, the columns and the
+ * values of the cells) allocated by {@link MatrixBuffers}, so that large
+ * matrices can live off heap. A compressed matrix can also wrap buffers
+ * provided by the caller, such as read only memory mapped regions of a file.
+ * The first update of a compressed matrix moves it back to the per row
+ * arrays.
+ * 
+ * A cell is found with a binary search on its row, while the non zero cells
+ * of a row are visited in column order with {@link #rowSize(int)},
+ * {@link #columnAt(int, int)} and {@link #valueAt(int, int)}.
+ * 
+ * @author Andrea Burattin
+ * @version 0.1
+ */
+public class SparseIntMatrix implements Matrix {
+	
+	private static final int[] EMPTY_ROW = new int[0];
+	
+	private int rows;
+	private int columns;
+	private int[][] rowColumns;
+	private int[][] rowValues;
+	private int[] rowSizes;
+	/* the compressed storage, the cells of row i are in the range
+	 * [offsets[i], offsets[i+1]) */
+	private IntBuffer offsets;
+	private IntBuffer compressedColumns;
+	private IntBuffer compressedValues;
+	
+	
+	/**
+	 * Class constructor, for a matrix filled with zeros
+	 * 
+	 * @param rows the number of rows
+	 * @param columns the number of columns
+	 */
+	public SparseIntMatrix(int rows, int columns) {
+		this.rows = rows;
+		this.columns = columns;
+		this.rowColumns = new int[rows][];
+		this.rowValues = new int[rows][];
+		this.rowSizes = new int[rows];
+		for (int i = 0; i < rows; i++) {
+			rowColumns[i] = EMPTY_ROW;
+			rowValues[i] = EMPTY_ROW;
+		}
+	}
+	
+	
+	/**
+	 * Class constructor, for a compressed matrix stored in the given buffers
+	 * (the buffers are not copied until the matrix is updated)
+	 * 
+	 * @param rows the number of rows
+	 * @param columns the number of columns
+	 * @param offsets the position of the first cell of each row, followed by
+	 * the number of non zero cells
+	 * @param compressedColumns the columns of the non zero cells, row by row
+	 * and in ascending order within each row
+	 * @param compressedValues the values of the non zero cells
+	 */
+	public SparseIntMatrix(int rows, int columns, IntBuffer offsets, IntBuffer compressedColumns, IntBuffer compressedValues) {
+		this.rows = rows;
+		this.columns = columns;
+		this.offsets = offsets;
+		this.compressedColumns = compressedColumns;
+		this.compressedValues = compressedValues;
+	}
+	
+	
+	/**
+	 * This method moves all the rows into the compressed buffers. Further
+	 * updates are possible, but each one moves the matrix back to the per row
+	 * arrays, so the matrix should be compressed only when the counting is
+	 * over
+	 */
+	public void compress() {
+		if (offsets != null) {
+			return;
+		}
+		IntBuffer o = MatrixBuffers.allocateInt(rows + 1);
+		int cells = 0;
+		for (int i = 0; i < rows; i++) {
+			o.put(i, cells);
+			cells += rowSizes[i];
+		}
+		o.put(rows, cells);
+		IntBuffer c = MatrixBuffers.allocateInt(cells);
+		IntBuffer v = MatrixBuffers.allocateInt(cells);
+		for (int i = 0; i < rows; i++) {
+			int offset = o.get(i);
+			for (int k = 0; k < rowSizes[i]; k++) {
+				c.put(offset + k, rowColumns[i][k]);
+				v.put(offset + k, rowValues[i][k]);
+			}
+		}
+		offsets = o;
+		compressedColumns = c;
+		compressedValues = v;
+		rowColumns = null;
+		rowValues = null;
+		rowSizes = null;
+	}
+	
+	
+	/**
+	 * This method tells whether the matrix is compressed
+	 * 
+	 * @return true if the cells are stored in the compressed buffers
+	 */
+	public boolean isCompressed() {
+		return offsets != null;
+	}
+	
+	
+	/**
+	 * This method moves a compressed matrix back to the per row arrays, so
+	 * that it can be updated
+	 */
+	private void ensureUpdatable() {
+		if (offsets == null) {
+			return;
+		}
+		int[][] c = new int[rows][];
+		int[][] v = new int[rows][];
+		int[] sizes = new int[rows];
+		for (int i = 0; i < rows; i++) {
+			int offset = offsets.get(i);
+			sizes[i] = offsets.get(i + 1) - offset;
+			if (sizes[i] == 0) {
+				c[i] = EMPTY_ROW;
+				v[i] = EMPTY_ROW;
+			} else {
+				c[i] = new int[sizes[i]];
+				v[i] = new int[sizes[i]];
+				for (int k = 0; k < sizes[i]; k++) {
+					c[i][k] = compressedColumns.get(offset + k);
+					v[i][k] = compressedValues.get(offset + k);
+				}
+			}
+		}
+		rowColumns = c;
+		rowValues = v;
+		rowSizes = sizes;
+		offsets = null;
+		compressedColumns = null;
+		compressedValues = null;
+	}
+	
+	
+	/**
+	 * This method returns the position of the given column in the row, or
+	 * <tt>-(insertion point) - 1</tt> if the cell is zero
+	 */
+	private int find(int row, int column) {
+		if (offsets != null) {
+			int offset = offsets.get(row);
+			int low = offset;
+			int high = offsets.get(row + 1) - 1;
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				int c = compressedColumns.get(mid);
+				if (c < column) {
+					low = mid + 1;
+				} else if (c > column) {
+					high = mid - 1;
+				} else {
+					return mid - offset;
+				}
+			}
+			return -(low - offset + 1);
+		}
+		int[] c = rowColumns[row];
+		int low = 0;
+		int high = rowSizes[row] - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (c[mid] < column) {
+				low = mid + 1;
+			} else if (c[mid] > column) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -(low + 1);
+	}
+	
+	
+	public int get(int row, int column) {
+		int k = find(row, column);
+		return (k < 0)? 0 : valueAt(row, k);
+	}
+	
+	
+	public void set(int row, int column, int value) {
+		ensureUpdatable();
+		int k = find(row, column);
+		if (k >= 0) {
+			if (value == 0) {
+				remove(row, k);
+			} else {
+				rowValues[row][k] = value;
+			}
+		} else if (value != 0) {
+			insert(row, -k - 1, column, value);
+		}
+	}
+	
+	
+	/**
+	 * This method adds the given amount to a cell
+	 * 
+	 * @param row the row of the cell
+	 * @param column the column of the cell
+	 * @param value the amount to add
+	 */
+	public void add(int row, int column, int value) {
+		ensureUpdatable();
+		int k = find(row, column);
+		if (k >= 0) {
+			rowValues[row][k] += value;
+			if (rowValues[row][k] == 0) {
+				remove(row, k);
+			}
+		} else if (value != 0) {
+			insert(row, -k - 1, column, value);
+		}
+	}
+	
+	
+	/**
+	 * This method adds all the cells of the given matrix to this one
+	 * 
+	 * @param other the matrix to add, with the same size
+	 */
+	public void add(SparseIntMatrix other) {
+		for (int i = 0; i < rows; i++) {
+			for (int k = 0; k < other.rowSize(i); k++) {
+				add(i, other.columnAt(i, k), other.valueAt(i, k));
+			}
+		}
+	}
+	
+	
+	private void insert(int row, int position, int column, int value) {
+		int size = rowSizes[row];
+		if (size == rowColumns[row].length) {
+			int capacity = Math.max(4, size * 2);
+			int[] c = new int[capacity];
+			int[] v = new int[capacity];
+			System.arraycopy(rowColumns[row], 0, c, 0, size);
+			System.arraycopy(rowValues[row], 0, v, 0, size);
+			rowColumns[row] = c;
+			rowValues[row] = v;
+		}
+		System.arraycopy(rowColumns[row], position, rowColumns[row], position + 1, size - position);
+		System.arraycopy(rowValues[row], position, rowValues[row], position + 1, size - position);
+		rowColumns[row][position] = column;
+		rowValues[row][position] = value;
+		rowSizes[row]++;
+	}
+	
+	
+	private void remove(int row, int position) {
+		int size = --rowSizes[row];
+		System.arraycopy(rowColumns[row], position + 1, rowColumns[row], position, size - position);
+		System.arraycopy(rowValues[row], position + 1, rowValues[row], position, size - position);
+	}
+	
+	
+	/**
+	 * This method returns the transposed matrix, with the same layout
+	 * 
+	 * @return the transposed matrix
+	 */
+	public SparseIntMatrix transpose() {
+		SparseIntMatrix t = new SparseIntMatrix(columns, rows);
+		int[] sizes = new int[columns];
+		for (int i = 0; i < rows; i++) {
+			for (int k = 0; k < rowSize(i); k++) {
+				sizes[columnAt(i, k)]++;
+			}
+		}
+		for (int j = 0; j < columns; j++) {
+			if (sizes[j] > 0) {
+				t.rowColumns[j] = new int[sizes[j]];
+				t.rowValues[j] = new int[sizes[j]];
+			}
+		}
+		/* the rows are visited in order, so the transposed rows are sorted */
+		for (int i = 0; i < rows; i++) {
+			for (int k = 0; k < rowSize(i); k++) {
+				int j = columnAt(i, k);
+				t.rowColumns[j][t.rowSizes[j]] = i;
+				t.rowValues[j][t.rowSizes[j]] = valueAt(i, k);
+				t.rowSizes[j]++;
+			}
+		}
+		return t;
+	}
+	
+	
+	/**
+	 * This method returns the number of non zero cells of a row
+	 * 
+	 * @param row the row
+	 * @return the number of non zero cells
+	 */
+	public int rowSize(int row) {
+		if (offsets != null) {
+			return offsets.get(row + 1) - offsets.get(row);
+		}
+		return rowSizes[row];
+	}
+	
+	
+	/**
+	 * This method returns the column of the given non zero cell of a row
+	 * 
+	 * @param row the row
+	 * @param k the position of the cell among the non zero cells of the row
+	 * @return the column of the cell
+	 */
+	public int columnAt(int row, int k) {
+		if (offsets != null) {
+			return compressedColumns.get(offsets.get(row) + k);
+		}
+		return rowColumns[row][k];
+	}
+	
+	
+	/**
+	 * This method returns the value of the given non zero cell of a row
+	 * 
+	 * @param row the row
+	 * @param k the position of the cell among the non zero cells of the row
+	 * @return the value of the cell
+	 */
+	public int valueAt(int row, int k) {
+		if (offsets != null) {
+			return compressedValues.get(offsets.get(row) + k);
+		}
+		return rowValues[row][k];
+	}
+	
+	
+	/**
+	 * This method returns the number of non zero cells of the matrix
+	 * 
+	 * @return the number of non zero cells
+	 */
+	public int size() {
+		if (offsets != null) {
+			return offsets.get(rows);
+		}
+		int size = 0;
+		for (int i = 0; i < rows; i++) {
+			size += rowSizes[i];
+		}
+		return size;
+	}
+	
+	
+	public int rows() {
+		return rows;
+	}
+	
+	
+	public int columns() {
+		return columns;
+	}
+	
+	
+	public double getAsDouble(int row, int column) {
+		return get(row, column);
+	}
+	
+	
+	public void setAsDouble(int row, int column, double value) {
+		set(row, column, (int) value);
+	}
+}
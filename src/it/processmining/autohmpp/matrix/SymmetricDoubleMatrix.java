@@ -0,0 +1,124 @@
+package it.processmining.autohmpp.matrix;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * This class is a square symmetric matrix of doubles. Only the lower
+ * triangle (diagonal included) is stored, packed row by row in a flat array:
+ * the cell <tt>(i, j)</tt> and the cell <tt>(j, i)</tt> are the same one, so
+ * a single update keeps the matrix symmetric and half of the memory is
+ * saved. The packed triangle is kept in a buffer allocated by
+ * {@link MatrixBuffers}, or in a buffer provided by the caller; a read only
+ * buffer is copied the first time the matrix is updated.
+ * 
+ * @author Andrea Burattin
+ * @version 0.1
+ */
+public class SymmetricDoubleMatrix implements Matrix {
+	
+	private int size;
+	private DoubleBuffer values;
+	
+	
+	/**
+	 * Class constructor, for a matrix filled with zeros
+	 * 
+	 * @param size the number of rows (and columns)
+	 */
+	public SymmetricDoubleMatrix(int size) {
+		this.size = size;
+		this.values = MatrixBuffers.allocateDouble(size * (size + 1) / 2);
+	}
+	
+	
+	/**
+	 * Class constructor, for a matrix stored in the given buffer
+	 * 
+	 * @param size the number of rows (and columns)
+	 * @param values the packed lower triangle, row by row (the buffer is not
+	 * copied until the matrix is updated)
+	 */
+	public SymmetricDoubleMatrix(int size, DoubleBuffer values) {
+		this.size = size;
+		this.values = values;
+	}
+	
+	
+	/**
+	 * This method copies the values into a writable buffer, if needed
+	 */
+	private void ensureWritable() {
+		if (values.isReadOnly()) {
+			values = MatrixBuffers.copy(values);
+		}
+	}
+	
+	
+	/**
+	 * This method returns the position of a cell in the packed triangle
+	 */
+	private static int index(int row, int column) {
+		if (row < column) {
+			return column * (column + 1) / 2 + row;
+		}
+		return row * (row + 1) / 2 + column;
+	}
+	
+	
+	public double get(int row, int column) {
+		return values.get(index(row, column));
+	}
+	
+	
+	public void set(int row, int column, double value) {
+		ensureWritable();
+		values.put(index(row, column), value);
+	}
+	
+	
+	/**
+	 * This method adds the given amount to a cell (and so to its symmetric)
+	 * 
+	 * @param row the row of the cell
+	 * @param column the column of the cell
+	 * @param value the amount to add
+	 */
+	public void add(int row, int column, double value) {
+		ensureWritable();
+		int i = index(row, column);
+		values.put(i, values.get(i) + value);
+	}
+	
+	
+	/**
+	 * This method adds all the cells of the given matrix to this one
+	 * 
+	 * @param other the matrix to add, with the same size
+	 */
+	public void add(SymmetricDoubleMatrix other) {
+		ensureWritable();
+		for (int i = 0; i < values.limit(); i++) {
+			values.put(i, values.get(i) + other.values.get(i));
+		}
+	}
+	
+	
+	public int rows() {
+		return size;
+	}
+	
+	
+	public int columns() {
+		return size;
+	}
+	
+	
+	public double getAsDouble(int row, int column) {
+		return get(row, column);
+	}
+	
+	
+	public void setAsDouble(int row, int column, double value) {
+		set(row, column, value);
+	}
+}
@@ -1,5 +1,13 @@
 package it.processmining.autohmpp.miner;
 
+import it.processmining.autohmpp.log.EncodedLog;
+import it.processmining.autohmpp.log.EventDictionary;
+import it.processmining.autohmpp.log.TraceVariants;
+import it.processmining.autohmpp.matrix.ColtMatrixView;
+import it.processmining.autohmpp.matrix.SparseDoubleMatrix;
+import it.processmining.autohmpp.matrix.SparseIntMatrix;
+import it.processmining.autohmpp.matrix.SymmetricDoubleMatrix;
+import it.processmining.autohmpp.matrix.SymmetricIntMatrix;
 import it.processmining.autohmpp.miner.notifier.Notifier;
 import it.processmining.autohmpp.utils.Utils;
 import it.processmining.hmpp.HMPP;
@@ -10,14 +18,13 @@ import it.processmining.hmpp.models.HMPPParameters;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Random;
 
 import javax.swing.JPanel;
 
-import org.processmining.framework.log.AuditTrailEntry;
-import org.processmining.framework.log.AuditTrailEntryList;
 import org.processmining.framework.log.LogEvent;
 import org.processmining.framework.log.LogEvents;
 import org.processmining.framework.log.LogReader;
@@ -29,11 +36,8 @@ import org.processmining.framework.util.PluginDocumentationLoader;
 import org.processmining.mining.MiningResult;
 
 import cern.colt.matrix.DoubleFactory1D;
-import cern.colt.matrix.DoubleFactory2D;
-import cern.colt.matrix.DoubleFactory3D;
 import cern.colt.matrix.DoubleMatrix1D;
 import cern.colt.matrix.DoubleMatrix2D;
-import cern.colt.matrix.DoubleMatrix3D;
 
 
 /**
@@ -47,22 +51,74 @@ public class AutoHMPP extends HMPP {
 	/* The plugin name... */
 	private final String PLUGIN_NAME = "HeuristicsMiner++ (with MDL)";
 	private HMPPParameters parameters;
-
+	
 	/** Maximum number of step while in a plateau */
 	private int maxPlateauSteps = 1;
 	private int numberOfSearchThread = 5;
-
-
+	/** Number of threads used to count the log */
+	private int numberOfCountingThread = 1;
+	/** Maximum movement (as a fraction of the discretization) of the current
+	 * parameters that does not require a new search when traces are appended */
+	private double driftTolerance = 0.1;
+	/** Maximum number of traces kept when traces are appended (0 means no
+	 * limit) */
+	private int windowSize = 0;
+	/** Maximum age, in milliseconds, of the traces kept when traces are
+	 * appended, with respect to the newest one (0 means no limit) */
+	private long windowDuration = 0;
+	/** Whether the parameters search scores the candidates on a sample of the
+	 * log */
+	private boolean sampling = false;
+	/** Cost difference between candidates to be resolved by the first
+	 * sample, with 95% confidence (the sample grows while the best candidates
+	 * cannot be told apart) */
+	private double samplingMargin = 0.01;
+	/** Number of best candidates scored again on the whole log */
+	private int rescoredCandidates = 3;
+	/** Seed of the random generator used to sample the log */
+	private long samplingSeed = 0;
+	/** Whether each fitness of the search is checked against a full replay
+	 * and, for the log read by ProM, against the replay of ProM */
+	private boolean fitnessCheck = false;
+	/** Maximum number of values of each discretized parameter (0 means no
+	 * limit) */
+	private int maxBreakpoints = 0;
+	
+	
 	/* The events log */
 	private LogEvents events;
 	private LogReader log;
+	/* The compact representation of the log, used by all the mining stages */
+	private EncodedLog encodedLog;
+	/* The distinct traces of the log, with their multiplicity (null if they
+	 * have to be extracted again from the log) */
+	private TraceVariants variants;
+	/* The variants replayed by the search threads (a sample of the variants
+	 * of the log, in sampling mode) */
+	private TraceVariants searchVariants;
 	/* An array list with all the observed events (just one entry for each
 	 * event, without considering the cardinality and the event type) */
 	private ArrayList<String> transitions;
 	/* The number of atomic events (for caching purpose) */
 	private int transitionsSize;
 	private int eventsSize;
-
+	/* Dense integer indexes for the events and the transitions */
+	private EventDictionary dictionary;
+	/* Per event metadata, so that the measures never compare strings: the
+	 * activity of each event, the index of its type, its type and the start
+	 * and complete events of its activity (or -1) */
+	private int[] transitionOf;
+	private int[] typeOf;
+	private boolean[] isStart;
+	private boolean[] isComplete;
+	private int[] startOf;
+	private int[] completeOf;
+	/* All the counts extracted from the log (the count matrices below are
+	 * the ones of this object) */
+	private LogStatistics statistics;
+	/* The number of occurrences of each event */
+	private int[] eventOccurrences;
+	
 	
 	/* The greatest network size */
 	private int greatestNetworkSize = -1;
@@ -72,41 +128,35 @@ public class AutoHMPP extends HMPP {
 	
 	/* ===================== DATA FROM HEURISTICS MINER ===================== */
 	/* Support matrices for the start and finish event detection */
-	private DoubleMatrix1D startCount;
-	private DoubleMatrix1D endCount;
+	private int[] startCount;
+	private int[] endCount;
 	/* Matrix with the direct dependency measures */
 //	private DoubleMatrix2D dependencyMeasures;	
-	private DoubleMatrix2D longRangeSuccessionCount;
+	private SparseIntMatrix longRangeSuccessionCount;
 //	private DoubleMatrix2D causalSuccession;
-	/* Information about the longrange dependecy relation */
-	private DoubleMatrix2D longRangeDependencyMeasures;
-	private DoubleMatrix2D dependencyMeasuresAccepted;
-	/* Counts the total wrong dependency observations in the log */
-	private DoubleMatrix2D noiseCounters;
-	
-	private DoubleMatrix1D L1LdependencyMeasuresAll;
-	private boolean[] L1Lrelation;
-	private DoubleMatrix2D L2LdependencyMeasuresAll;
-	private int[] L2Lrelation;
-	private DoubleMatrix2D ABdependencyMeasuresAll;
-	private boolean[] alwaysVisited;
-	
-	private DoubleMatrix3D allAndMeasures;
-	private DoubleMatrix2D andInMeasuresAll;
-	private DoubleMatrix2D andOutMeasuresAll;
-	
-	private DoubleMatrix2D directSuccessionCount;
-	private DoubleMatrix2D succession2Count;
-	private DoubleMatrix2D parallelCount;
-	
-	private DoubleMatrix1D totalActivityCounter;
-	private DoubleMatrix1D totalActivityTime;
-	private DoubleMatrix2D totalOverlappingTime;
+	/* The state of each evaluation of the heuristics relations is in its own
+	 * MiningContext */
+	
+	private SparseIntMatrix directSuccessionCount;
+	private SparseIntMatrix succession2Count;
+	private SymmetricIntMatrix parallelCount;
+	
+	private int[] totalActivityCounter;
+	private long[] totalActivityTime;
+	private SymmetricDoubleMatrix totalOverlappingTime;
 	
 	/* list of parameters cost */
 	private HashMap<String, ArrayList<Double>> parametersCosts;
-	private ArrayList<Double[]> discretizedParameters = null;
-	
+	/* the snapshot of the parameters discretization, shared by all the search
+	 * threads (null if it has to be computed again) */
+	private volatile DiscretizedParameters discretizedParameters = null;
+	/* the measures which do not depend on the thresholds, shared by all the
+	 * evaluations (null if they have to be computed again); they have their
+	 * own lock, since the discretization threads need them while the
+	 * discretization holds the lock of the miner */
+	private volatile HeuristicsMeasures measures = null;
+	private final Object measuresLock = new Object();
+
 //	double[] bestInputMeasure;
 //	double[] bestOutputMeasure;
 //	int[] bestInputEvent;
@@ -137,7 +187,7 @@ public class AutoHMPP extends HMPP {
 	public String getName() {
 		return PLUGIN_NAME;
 	}
-
+	
 	
 	@Override
 	public JPanel getOptionsPanel(LogSummary summary) {
@@ -167,17 +217,395 @@ public class AutoHMPP extends HMPP {
 	public MiningResult mine(LogReader log) {
 		dbgStart();
 		
-		/* ===================== SUPPORT DATA POPULATION ==================== */
 		// TODO: sistemare sta cosa
 //		int[] exc = {};
 //		this.log = log.clone(exc);
 		this.log = log;
-		this.discretizedParameters = null;
-		dataInitialization(log);
-		makeBasicRelations(log, 0.8);
+		mine(EncodedLog.fromLogReader(log));
+		
+		/* =========================== DATA OUTPUT ========================== */
+		MiningResult res = new HMPPResult(this, log, false, transitions);
+		
+		dbgEnd();
+		return res;
+	}
+	
+	
+	/**
+	 * This method mines the given encoded log, searching for the best
+	 * parameters configuration. This method does not require the original
+	 * log, so it can be used with a log loaded from a cache.
+	 * 
+	 * @param encodedLog the encoded log
+	 * @return the heuristics net mined with the best parameters found
+	 */
+	public HMPPHeuristicsNet mine(EncodedLog encodedLog) {
+		dbgStart();
+		
+		/* ===================== SUPPORT DATA POPULATION ==================== */
+		dataInitialization(encodedLog.getDictionary());
+		makeBasicRelations(encodedLog, 0.8);
+		
+		HMPPHeuristicsNet res = searchBestParameters();
+		
+		dbgEnd();
+		return res;
+	}
+	
+	
+	/**
+	 * This method mines the given, already counted, log shard (for example,
+	 * the result of the merge of several shards)
+	 * 
+	 * @param shard the log shard
+	 * @return the heuristics net mined with the best parameters found
+	 */
+	public HMPPHeuristicsNet mine(LogShard shard) {
+		dbgStart();
+		
+		/* ===================== SUPPORT DATA POPULATION ==================== */
+		dataInitialization(shard.getStatistics());
+		statistics.compress();
+		this.log = null;
+		this.encodedLog = shard.getLog();
+		this.variants = null;
+		
+		HMPPHeuristicsNet res = searchBestParameters();
+		
+		dbgEnd();
+		return res;
+	}
+	
+	
+	/**
+	 * This method mines the given snapshot (for example, the result of the
+	 * merge of the snapshots of several logs), going straight to the
+	 * discretization of the parameters and to the search. The traces of the
+	 * log are not available, so the counts and the variants of the traces
+	 * appended later on are merged into the ones of the snapshot (see
+	 * {@link #append(EncodedLog)}).
+	 * 
+	 * @param snapshot the counts and the variants of the log
+	 * @return the heuristics net mined with the best parameters found
+	 */
+	public HMPPHeuristicsNet mine(StatisticsSnapshot snapshot) {
+		dbgStart();
+		
+		/* ===================== SUPPORT DATA POPULATION ==================== */
+		dataInitialization(snapshot.getStatistics());
+		statistics.compress();
+		this.log = null;
+		this.encodedLog = null;
+		this.variants = snapshot.getVariants();
+		
+		HMPPHeuristicsNet res = searchBestParameters();
+		
+		dbgEnd();
+		return res;
+	}
+	
+	
+	/**
+	 * This method returns the snapshot of the counts and of the variants of
+	 * the log mined, which can be stored and merged with the ones of other
+	 * logs (see {@link StatisticsSnapshot})
+	 * 
+	 * @return the snapshot of the log
+	 */
+	public StatisticsSnapshot getSnapshot() {
+		return new StatisticsSnapshot(statistics, getTraceVariants());
+	}
+	
+	
+	/**
+	 * This method appends the traces of the given log to the log already
+	 * mined, updating the counts with the new traces only. If the new traces
+	 * introduce new events, or the current parameters moved (with respect to
+	 * the discretization of the parameters) more than the drift tolerance, a
+	 * new parameters search is performed; otherwise the net is mined again
+	 * with the current parameters.
+	 * 
+	 * If a window is set (see {@link #setWindowSize(int)} and
+	 * {@link #setWindowDuration(long)}), the traces leaving the window are
+	 * removed from the log and their counts are subtracted, so the net
+	 * describes only the recent behaviour.
+	 * 
+	 * @param newTraces the log with the traces to append
+	 * @return the heuristics net of the whole log
+	 */
+	public HMPPHeuristicsNet append(LogReader newTraces) {
+		return append(EncodedLog.fromLogReader(newTraces));
+	}
+	
+	
+	/**
+	 * This method appends the given traces to the log already mined (see
+	 * {@link #append(LogReader)}). If no log has been mined yet, the traces
+	 * are simply mined. If a snapshot has been mined, the counts and the
+	 * variants of the traces are merged into the ones of the snapshot; since
+	 * the traces of the snapshot are not available, no window can be set.
+	 * 
+	 * @param newTraces the encoded traces to append
+	 * @return the heuristics net of the whole log
+	 */
+	public HMPPHeuristicsNet append(EncodedLog newTraces) {
+		dbgStart();
+		
+		if (statistics == null || parameters == null) {
+			HMPPHeuristicsNet res = mine(newTraces);
+			dbgEnd();
+			return res;
+		}
+		if (encodedLog == null && (windowSize > 0 || windowDuration > 0)) {
+			dbgEnd();
+			throw new IllegalStateException("The traces of a mined snapshot are not available, so no window can be set");
+		}
+		/* the log read by ProM is not the mined one anymore */
+		this.log = null;
+		
+		HMPPHeuristicsNet res;
+		EventDictionary union = EventDictionary.union(dictionary, newTraces.getDictionary());
+		if (union.getEventsSize() != eventsSize) {
+			/* new events: all the matrices grow, so the counts are moved into
+			 * the new dictionary and the parameters are searched again */
+			if (encodedLog == null) {
+				StatisticsSnapshot merged = StatisticsSnapshot.merge(getSnapshot(), StatisticsSnapshot.fromShard(LogShard.count(newTraces)));
+				dataInitialization(merged.getStatistics());
+				this.variants = merged.getVariants();
+			} else {
+				LogShard merged = LogShard.merge(new LogShard(encodedLog, statistics), LogShard.count(newTraces));
+				dataInitialization(merged.getStatistics());
+				this.encodedLog = merged.getLog();
+				this.variants = null;
+				slideWindow();
+			}
+			statistics.compress();
+			dbg("new events appended, searching again");
+			res = searchBestParameters();
+		
+		} else {
+			/* same events: only the new traces are counted */
+			DiscretizedParameters previousDiscretization = getDiscretizedParameters();
+			if (encodedLog == null) {
+				StatisticsSnapshot added = StatisticsSnapshot.fromShard(LogShard.count(newTraces));
+				statistics.add(added.getStatistics().remap(dictionary));
+				this.variants = TraceVariants.merge(dictionary, variants, added.getVariants());
+			} else {
+				int firstNewTrace = encodedLog.getNumberOfTraces();
+				encodedLog.append(newTraces);
+				statistics.countTraces(encodedLog, firstNewTrace, encodedLog.getNumberOfTraces());
+				this.variants = null;
+				slideWindow();
+			}
+			statistics.compress();
+			discretizedParameters = null;
+			measures = null;
+			
+			if (isParametersDrifted(previousDiscretization, getDiscretizedParameters())) {
+				dbg("parameters drift detected, searching again");
+				res = searchBestParameters();
+			} else {
+				res = makeHeuristicsRelations(parameters);
+			}
+		}
+		
+		dbgEnd();
+		return res;
+	}
+	
+	
+	/**
+	 * This method returns the number of traces to sample, so that a fitness
+	 * estimated on the sample is within the sampling margin from the fitness
+	 * of the whole log with 95% confidence (worst case variance of a
+	 * proportion, with the finite population correction)
+	 * 
+	 * @param population the number of traces of the log
+	 * @return the sample size
+	 */
+	private int getSampleSize(int population) {
+		double n0 = (1.96 * 1.96 * 0.25) / (samplingMargin * samplingMargin);
+		return (int) Math.ceil(n0 / (1 + (n0 - 1) / population));
+	}
+	
+	
+	/**
+	 * This method returns the error, with 95% confidence, of a fitness
+	 * estimated on a sample of the given size (the inverse of
+	 * {@link #getSampleSize(int)})
+	 * 
+	 * @param sample the number of traces of the sample
+	 * @param population the number of traces of the log
+	 * @return the sampling error
+	 */
+	private double getSamplingError(int sample, int population) {
+		if (sample >= population) {
+			return 0;
+		}
+		return 1.96 * Math.sqrt(0.25 * (population - sample) / ((double) sample * (population - 1)));
+	}
+	
+	
+	/**
+	 * This method returns the best candidates found on the sample. The
+	 * candidates whose cost exceeds the best one by more than twice the
+	 * sampling error are discarded; while more than the rescored candidates
+	 * are left, the sample is doubled and the candidates left are scored
+	 * again on it. So, the closer the costs of the best candidates, the
+	 * larger the sample they are compared on.
+	 * 
+	 * @param candidates the search threads, with their costs on the sample
+	 * @param random the random generator used to grow the sample
+	 * @return the best candidates (at most the rescored ones), sorted by cost
+	 */
+	private ParameterSearchThread[] getBestCandidates(ParameterSearchThread[] candidates, Random random) {
+		Comparator<ParameterSearchThread> byCost = new Comparator<ParameterSearchThread>() {
+			public int compare(ParameterSearchThread a, ParameterSearchThread b) {
+				return a.getFinalCost().compareTo(b.getFinalCost());
+			}
+		};
+		ParameterSearchThread[] sorted = candidates.clone();
+		TraceVariants sample = searchVariants;
+		int population = getTraceVariants().getNumberOfTraces();
+		while (true) {
+			Arrays.sort(sorted, byCost);
+			double threshold = sorted[0].getFinalCost() + 2 * getSamplingError(sample.getNumberOfTraces(), population);
+			int close = 1;
+			while (close < sorted.length && sorted[close].getFinalCost() <= threshold) {
+				close++;
+			}
+			sorted = Arrays.copyOf(sorted, close);
+			if (close <= rescoredCandidates) {
+				break;
+			}
+			sample = getTraceVariants().sample(2 * sample.getNumberOfTraces(), random);
+			if (sample == getTraceVariants()) {
+				break;
+			}
+			dbg(close + " candidates too close, scoring them on a sample of " + sample.getNumberOfTraces() + " traces");
+			for (int i = 0; i < sorted.length; i++) {
+				sorted[i].rescore(sample);
+			}
+		}
+		return Arrays.copyOf(sorted, Math.min(rescoredCandidates, sorted.length));
+	}
+	
+	
+	/**
+	 * This method removes from the log, and from the counts, the oldest traces
+	 * which are outside the window. The time of a trace is the time of its
+	 * last event and the traces are assumed to be appended in time order.
+	 */
+	private void slideWindow() {
+		int traces = encodedLog.getNumberOfTraces();
+		int expired = 0;
+		if (windowSize > 0 && traces > windowSize) {
+			expired = traces - windowSize;
+		}
+		if (windowDuration > 0) {
+			long oldest = getTraceTime(traces - 1) - windowDuration;
+			while (expired < traces && getTraceTime(expired) < oldest) {
+				expired++;
+			}
+		}
+		if (expired > 0) {
+			statistics.removeTraces(encodedLog, 0, expired);
+			encodedLog.removeFirstTraces(expired);
+		}
+	}
+	
+	
+	/**
+	 * This method returns the time of the given trace, which is the time of
+	 * its last event (or the time of the last event of the previous traces,
+	 * for an empty trace)
+	 * 
+	 * @param trace the trace index
+	 * @return the time of the trace, in milliseconds
+	 */
+	private long getTraceTime(int trace) {
+		int end = encodedLog.getTraceEnd(trace);
+		return (end > 0)? encodedLog.getTimestamp(end - 1) : Long.MIN_VALUE;
+	}
+	
+	
+	/**
+	 * This method checks whether the current parameters moved, with respect
+	 * to their discretizations, more than the drift tolerance. The position of
+	 * a parameter value is the fraction of discretized values lower than it:
+	 * as the measures change, the same value falls in a different position
+	 * 
+	 * @param previous the discretization the current parameters come from
+	 * @param current the discretization of the updated counts
+	 * @return true if a new parameters search is required
+	 */
+	private boolean isParametersDrifted(DiscretizedParameters previous, DiscretizedParameters current) {
+		double[] values = new double[] {
+				parameters.getDependencyThreshold(),
+				parameters.getPositiveObservationsThreshold(),
+				parameters.getRelativeToBestThreshold(),
+				parameters.getAndThreshold(),
+				parameters.getL1lThreshold(),
+				parameters.getL2lThreshold(),
+				parameters.getLDThreshold()};
+		for (int i = 0; i < values.length; i++) {
+			double before = getDiscretizationPosition(previous.get(i), values[i]);
+			double after = getDiscretizationPosition(current.get(i), values[i]);
+			if (Math.abs(after - before) > driftTolerance) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	
+	/**
+	 * This method returns the fraction of the discretized values lower than
+	 * the given value
+	 * 
+	 * @param discretization the discretized values, in ascending order
+	 * @param value the value to locate
+	 * @return the position of the value, between 0 and 1
+	 */
+	private double getDiscretizationPosition(double[] discretization, double value) {
+		if (discretization.length == 0) {
+			return 0;
+		}
+		/* binary search of the first value not lower than the given one */
+		int lower = 0;
+		int upper = discretization.length;
+		while (lower < upper) {
+			int mid = (lower + upper) >>> 1;
+			if (discretization[mid] < value) {
+				lower = mid + 1;
+			} else {
+				upper = mid;
+			}
+		}
+		return (double) lower / discretization.length;
+	}
+	
+	
+	/**
+	 * This method searches for the best parameters configuration, using the
+	 * search threads, on the current log
+	 * 
+	 * @return the heuristics net mined with the best parameters found
+	 */
+	private HMPPHeuristicsNet searchBestParameters() {
+		dbgStart();
 		
 		/* ================= LEARNING BEST PARAMETERS' VALUE ================ */
-		calculateGreatestNetworkSize(log);
+		calculateGreatestNetworkSize();
+		searchVariants = getTraceVariants();
+		/* the discretization is a stage on its own: the search threads start
+		 * with the snapshot already published */
+		getDiscretizedParameters();
+		Random random = new Random(samplingSeed);
+		if (sampling) {
+			searchVariants = searchVariants.sample(getSampleSize(searchVariants.getNumberOfTraces()), random);
+			dbg("searching on a sample of " + searchVariants.getNumberOfTraces() + " traces");
+		}
 		
 		/* build and construct each thread */
 		ParameterSearchThread[] t = new ParameterSearchThread[numberOfSearchThread];
@@ -193,10 +621,18 @@ public class AutoHMPP extends HMPP {
 		} catch (InterruptedException e) {
 			e.printStackTrace();
 		}
+		/* with a sample, only the best candidates are considered, with their
+		 * costs on the whole log */
+		if (searchVariants != getTraceVariants()) {
+			t = getBestCandidates(t, random);
+			for(int i = 0; i < t.length; i++) {
+				t[i].rescore(getTraceVariants());
+			}
+		}
 		/* ok, we got a winner! find it out... :) */
 		Double bestCost = Double.MAX_VALUE;
-		for(int i = 0; i < numberOfSearchThread; i++) {
-			System.out.print("Thread " + i + " -- cost: " + t[i].getFinalCost());
+		for(int i = 0; i < t.length; i++) {
+			System.out.print("Thread " + t[i].getName() + " -- cost: " + t[i].getFinalCost());
 			if (t[i].getFinalCost() < bestCost) {
 				bestCost = t[i].getFinalCost();
 				parameters = t[i].getParameters();
@@ -221,7 +657,7 @@ public class AutoHMPP extends HMPP {
 		dbg(" use long distance dep = " + parameters.useLongDistanceDependency);
 		
 		/* =========================== DATA OUTPUT ========================== */
-		MiningResult res = new HMPPResult(this, log, false, transitions);
+		HMPPHeuristicsNet res = makeHeuristicsRelations(parameters);
 		
 		dbgEnd();
 		return res;
@@ -234,9 +670,13 @@ public class AutoHMPP extends HMPP {
 	 * @return the current activity time vector
 	 */
 	protected DoubleMatrix1D getActivityTime() {
-		return totalActivityTime;
+		DoubleMatrix1D time = DoubleFactory1D.dense.make(transitionsSize);
+		for (int i = 0; i < transitionsSize; i++) {
+			time.setQuick(i, totalActivityTime[i]);
+		}
+		return time;
 	}
-
+	
 	
 	/**
 	 * This method to get the current activity counter vector
@@ -244,9 +684,13 @@ public class AutoHMPP extends HMPP {
 	 * @return the current activity counter vector
 	 */
 	protected DoubleMatrix1D getActivityCounter() {
-		return totalActivityCounter;
+		DoubleMatrix1D counter = DoubleFactory1D.dense.make(transitionsSize);
+		for (int i = 0; i < transitionsSize; i++) {
+			counter.setQuick(i, totalActivityCounter[i]);
+		}
+		return counter;
 	}
-
+	
 	
 	/**
 	 * This method to get the current overlapping time matrix
@@ -254,9 +698,9 @@ public class AutoHMPP extends HMPP {
 	 * @return the current overlapping time matrix
 	 */
 	protected DoubleMatrix2D getOverlappingTime() {
-		return totalOverlappingTime;
+		return new ColtMatrixView(totalOverlappingTime);
 	}
-
+	
 	
 	/**
 	 * This method to get the current parallel count matrix
@@ -264,9 +708,9 @@ public class AutoHMPP extends HMPP {
 	 * @return the current parallel count matrix
 	 */
 	protected DoubleMatrix2D getParallelCount() {
-		return parallelCount;
+		return new ColtMatrixView(parallelCount);
 	}
-
+	
 	
 	/**
 	 * This method to get the current algorithm parameters object
@@ -276,8 +720,8 @@ public class AutoHMPP extends HMPP {
 	public HMPPParameters getParameters() {
 		return parameters;
 	}
-
-
+	
+	
 	/**
 	 * This method to set the current algorithm parameters object
 	 * 
@@ -291,56 +735,67 @@ public class AutoHMPP extends HMPP {
 	/**
 	 * This method builds the main object instances
 	 * 
-	 * @param log the log to analyse
+	 * @param dictionary the dictionary of the log to analyse
+	 */
+	private void dataInitialization(EventDictionary dictionary) {
+		dataInitialization(new LogStatistics(dictionary));
+	}
+	
+	
+	/**
+	 * This method builds the main object instances, using the given counts
+	 * 
+	 * @param statistics the counts of the log to analyse
 	 */
-	private void dataInitialization(LogReader log) {
+	private void dataInitialization(LogStatistics statistics) {
 		dbgStart();
 		
 		/* ====================== DATA INITIALIZATION ======================= */
 		/* Build the single events array */
 //		eventsFiltered = new LogEvents();
-		transitions = new ArrayList<String>(Arrays.asList(log.getLogSummary().getModelElements()));
-		transitionsSize = transitions.size();
-		events = log.getLogSummary().getLogEvents();
-		eventsSize = events.size();
-		
-		startCount = DoubleFactory1D.dense.make(eventsSize, 0.0);
-		endCount = DoubleFactory1D.dense.make(eventsSize, 0.0);
-		
-		longRangeSuccessionCount = DoubleFactory2D.dense.make(eventsSize, eventsSize, 0);
-		longRangeDependencyMeasures = DoubleFactory2D.dense.make(eventsSize, eventsSize, 0);
-//		causalSuccession = DoubleFactory2D.dense.make(logAtomicEventsSize, logAtomicEventsSize, 0);
-		longRangeSuccessionCount = DoubleFactory2D.dense.make(eventsSize, eventsSize, 0);
-		dependencyMeasuresAccepted = DoubleFactory2D.sparse.make(eventsSize, eventsSize, 0.0);
-		noiseCounters = DoubleFactory2D.sparse.make(events.size(), events.size(), 0);
-		
-		L1LdependencyMeasuresAll = DoubleFactory1D.sparse.make(eventsSize, 0);
-		L2LdependencyMeasuresAll = DoubleFactory2D.sparse.make(eventsSize, eventsSize, 0);
-		ABdependencyMeasuresAll = DoubleFactory2D.sparse.make(eventsSize, eventsSize, 0);
-		
-		allAndMeasures = DoubleFactory3D.sparse.make(eventsSize, eventsSize, eventsSize, 0);
-		andInMeasuresAll = DoubleFactory2D.sparse.make(eventsSize, eventsSize, 0);
-		andOutMeasuresAll = DoubleFactory2D.sparse.make(eventsSize, eventsSize, 0);
-		
-		directSuccessionCount = DoubleFactory2D.dense.make(eventsSize, eventsSize, 0);
-		succession2Count = DoubleFactory2D.dense.make(eventsSize, eventsSize, 0);
-		/* This matrix considers just the parallel relations between activity,
-		 * not between events (so between A and B instead of A-start, B-start,
-		 * A-finish, B-finish) */
-		parallelCount = DoubleFactory2D.dense.make(transitionsSize, transitionsSize, 0);
-		
-		totalActivityCounter = DoubleFactory1D.dense.make(transitionsSize, 0);
-		totalActivityTime = DoubleFactory1D.dense.make(transitionsSize, 0);
-		totalOverlappingTime = DoubleFactory2D.dense.make(transitionsSize, transitionsSize, 0);
-		
-		/* loop relations matrix */
-		L1Lrelation = new boolean[eventsSize];
-		L2Lrelation = new int[eventsSize];
+		this.dictionary = statistics.getDictionary();
+		transitionsSize = dictionary.getTransitionsSize();
+		transitions = new ArrayList<String>(transitionsSize);
+		for (int i = 0; i < transitionsSize; i++) {
+			transitions.add(dictionary.getTransitionName(i));
+		}
+		eventsSize = dictionary.getEventsSize();
+		events = new LogEvents();
+		for (int i = 0; i < eventsSize; i++) {
+			events.add(new LogEvent(dictionary.getEventName(i), dictionary.getEventType(i)));
+		}
+		transitionOf = new int[eventsSize];
+		typeOf = new int[eventsSize];
+		isStart = new boolean[eventsSize];
+		isComplete = new boolean[eventsSize];
+		startOf = new int[eventsSize];
+		completeOf = new int[eventsSize];
 		for (int i = 0; i < eventsSize; i++) {
-			L1Lrelation[i] = false;
-			L2Lrelation[i] = -10;
+			transitionOf[i] = dictionary.getTransitionOfEvent(i);
+			typeOf[i] = dictionary.getTypeOfEvent(i);
+			isStart[i] = dictionary.isStartEvent(i);
+			isComplete[i] = dictionary.isCompleteEvent(i);
+			startOf[i] = dictionary.getStartEvent(transitionOf[i]);
+			completeOf[i] = dictionary.getCompleteEvent(transitionOf[i]);
 		}
 		
+		/* The counts extracted from the log */
+		this.statistics = statistics;
+		discretizedParameters = null;
+		measures = null;
+		eventOccurrences = statistics.getEventOccurrences();
+		startCount = statistics.getStartCount();
+		endCount = statistics.getEndCount();
+		longRangeSuccessionCount = statistics.getLongRangeSuccessionCount();
+		directSuccessionCount = statistics.getDirectSuccessionCount();
+		succession2Count = statistics.getSuccession2Count();
+		parallelCount = statistics.getParallelCount();
+		totalActivityCounter = statistics.getActivityCounter();
+		totalActivityTime = statistics.getActivityTime();
+		totalOverlappingTime = statistics.getOverlappingTime();
+
+//		causalSuccession = DoubleFactory2D.dense.make(logAtomicEventsSize, logAtomicEventsSize, 0);
+		
 		dbgEnd();
 	}
 	
@@ -353,64 +808,57 @@ public class AutoHMPP extends HMPP {
 	 * @param log
 	 * @param causalityFall
 	 */
+	@SuppressWarnings("unchecked")
 	public void makeBasicRelations(LogReader log, double causalityFall) {
+		makeBasicRelations((Iterator<ProcessInstance>) log.instanceIterator(), causalityFall);
+	}
+	
+	
+	/**
+	 * This method builds all the basic relations pulling the process instances
+	 * from the given iterator, one at the time. The process instances are
+	 * encoded into a compact log (no reference to them is kept, so the source
+	 * is free to stream them) which is then used for all the mining stages.
+	 * 
+	 * @param traces the process instances source
+	 * @param causalityFall
+	 */
+	public void makeBasicRelations(Iterator<ProcessInstance> traces, double causalityFall) {
+		makeBasicRelations(EncodedLog.fromTraces(dictionary, traces), causalityFall);
+	}
+	
+	
+	/**
+	 * This method builds all the basic relations from the given encoded log.
+	 * The log is folded into its variants: everything but the activity and
+	 * overlapping times is counted once for each variant, weighted by its
+	 * multiplicity, while the times are counted for each trace. Traces are
+	 * independent, so when more than one counting thread is set, the variants
+	 * and the traces are partitioned among the threads, each one counting
+	 * into its own statistics, which are then merged by addition.
+	 * 
+	 * @param encodedLog the encoded log
+	 * @param causalityFall
+	 */
+	public void makeBasicRelations(EncodedLog encodedLog, double causalityFall) {
 		dbgStart();
 		
-		/* Iterate through all log events */
-		@SuppressWarnings("unchecked")
-		Iterator<ProcessInstance> it = log.instanceIterator();
-		while (it.hasNext()) {
-			/* Extract the current process and its activity list */
-			ProcessInstance pi = it.next();
-			AuditTrailEntryList atel = pi.getAuditTrailEntryList();
-			
-			/* Update the successors and parallels matrices */
-			calculateEventsFrequencies(atel);
-			
-			int i = 0;
-			boolean terminate = false;
-			while (!terminate) {
-				@SuppressWarnings("unchecked")
-				Iterator<AuditTrailEntry> it2 = atel.iterator();
-				/* Skip the first i entries of the trace */
-				for (int j = 0; j < i; j++) {
-					it2.next();
-				}
-				/* The starting element */
-				AuditTrailEntry begin = it2.next();
-				LogEvent beginEvent = new LogEvent(begin.getElement(), begin.getType());
-				/* Find the correct row of the matices */
-				int row = events.indexOf(beginEvent);
-				
-				int distance = 0;
-				boolean foundSelf = false;
-				HNSubSet done = new HNSubSet();
-				terminate = (!it2.hasNext());
-				while (it2.hasNext() && (!foundSelf)) {
-					/* The ending element */
-					AuditTrailEntry end = it2.next();
-					LogEvent endEvent = new LogEvent(end.getElement(), end.getType());
-					/* Find the correct column of the matrices */
-					int column = events.indexOf(endEvent);
-					/* Is it the same? */
-					foundSelf = (row == column);
-					distance++;
-					
-					if (done.contains(column)) {
-						continue;
-					}
-					done.add(column);
-					
-					/* Update long range matrix */
-					longRangeSuccessionCount.set(row, column, longRangeSuccessionCount.get(row, column) + 1);
-
-					/* Update causal matrix */
-//					causalSuccession.set(row, column, causalSuccession.get(row, column) + Math.pow(causalityFall, distance - 1));
-				}
-				i++;
-			}
+		this.encodedLog = encodedLog;
+		this.variants = TraceVariants.fromLog(encodedLog);
+		discretizedParameters = null;
+		measures = null;
+		
+		/* Count all the traces, partitioning them among the counting threads
+		 * if required */
+		if (numberOfCountingThread > 1) {
+			statistics.add(LogStatistics.count(encodedLog, variants, numberOfCountingThread));
+		} else {
+			statistics.countVariants(variants, 0, variants.getNumberOfVariants());
+			statistics.countTimes(encodedLog, 0, encodedLog.getNumberOfTraces());
 		}
-
+		/* the counts are now only read, by all the search threads */
+		statistics.compress();
+		
 		// calculate longRangeDependencyMeasures
 //		for (int i = 0; i < longRangeDependencyMeasures.rows(); i++) {
 //			for (int j = 0; j < longRangeDependencyMeasures.columns(); j++) {
@@ -426,85 +874,82 @@ public class AutoHMPP extends HMPP {
 	
 	
 	/**
-	 * This method returns a map to track the number of connection for each
-	 * possible positive observations threshold
+	 * This method returns an array to track the possible values for the
+	 * positive observations threshold
 	 * 
-	 * @return a hash map where the key is the possible threshold and the value
-	 * is the number of connection for that threshold (counting also all the 
-	 * lower values)
+	 * @return the distinct positive observations thresholds (for which there
+	 * are changes in the output), in ascending order
 	 */
-	public HashMap<Double, Integer> getDiscretizedPositiveObsThresholds() {
+	public double[] getDiscretizedPositiveObsThresholds() {
+		return ValueCollector.toSortedDistinct(collectPositiveObsThresholds());
+	}
+	
+	
+	/**
+	 * This method collects the candidate values of the positive observations
+	 * threshold: the count of each observed direct succession. A value is
+	 * collected once for each such candidate
+	 * 
+	 * @return the collected values
+	 */
+	private ValueCollector[] collectPositiveObsThresholds() {
 		dbgStart();
 		
-		HashMap<Double, Integer> toret = new HashMap<Double, Integer>();
-		Double key;
-		Integer val;
-		/* extracts the exact count for each threshold */
-		for (int i = 0; i < directSuccessionCount.columns(); i++) {
-			for (int j = 0; j < directSuccessionCount.rows(); j++) {
-				key = directSuccessionCount.get(i, j);
-				if (key > 0) {
-					val = toret.get(key);
-					if (val == null)
-						val = new Integer(0);
-					toret.put(key, val + 1);
+		ValueCollector temp = new ValueCollector();
+		/* just the observed successions have a positive count */
+		for (int i = 0; i < eventsSize; i++) {
+			for (int k = 0; k < directSuccessionCount.rowSize(i); k++) {
+				int count = directSuccessionCount.valueAt(i, k);
+				if (count > 0) {
+					temp.add(count);
 				}
 			}
 		}
 		
-		/* sums all bigger thresholds value */
-		Object[] keys = toret.keySet().toArray();
-		Arrays.sort(keys);
-		Integer curTot = 0;
-		for (int i = keys.length - 1; i >= 0; i--) {
-			curTot += toret.get(keys[i]);
-			toret.put((Double) keys[i], curTot);
-		}
-		
 		dbgEnd();
-		return toret;
+		return new ValueCollector[] { temp };
 	}
 	
 	
 	/**
-	 * This method returns a map to track the number of connection for each
-	 * possible dependency threshold 
+	 * This method returns an array to track the possible values for the
+	 * dependency threshold
+	 * 
+	 * @return the distinct dependency thresholds (for which there are changes
+	 * in the output), in ascending order
+	 */
+	public double[] getDiscretizedDependencyThresholds() {
+		return ValueCollector.toSortedDistinct(collectDependencyThresholds());
+	}
+	
+	
+	/**
+	 * This method collects the candidate values of the dependency threshold:
+	 * the measure of each observed direct succession between different
+	 * activities. A value is collected once for each such candidate
 	 * 
-	 * @return a hash map where the key is the possible threshold and the value
-	 * is the number of connection for that threshold (counting also all the 
-	 * lower values)
+	 * @return the collected values
 	 */
-	public HashMap<Double, Integer> getDiscretizedDependencyThresholds() {
+	private ValueCollector[] collectDependencyThresholds() {
 		dbgStart();
 		
-		HashMap<Double, Integer> toret = new HashMap<Double, Integer>();
-		Double key;
-		Integer val;
-		/* extracts the exact count for each threshold */
-		for (int i = 0; i < directSuccessionCount.columns(); i++) {
-			for (int j = 0; j < directSuccessionCount.rows(); j++) {
-				boolean sameEvent = events.get(i).getModelElementName().equals(events.get(j).getModelElementName());
-				key =  calculateDependencyMeasure(i, j);
-				if (key > 0 && !sameEvent) {
-					val = toret.get(key);
-					if (val == null)
-						val = new Integer(0);
-					toret.put(key, val + 1);
+		ValueCollector temp = new ValueCollector();
+		HeuristicsMeasures measures = getMeasures(parameters);
+		double measure;
+		/* just the observed successions between different activities have a
+		 * positive measure */
+		for (int i = 0; i < eventsSize; i++) {
+			for (int p = measures.getDependencyStart(i); p < measures.getDependencyEnd(i); p++) {
+				measure = measures.getDependencyMeasure(p);
+				if (measures.getDependencyObservations(p) != 0 && measure > 0 &&
+						transitionOf[i] != transitionOf[measures.getDependencyTarget(p)]) {
+					temp.add(measure);
 				}
 			}
 		}
 		
-		/* sums all bigger thresholds value */
-		Object[] keys = toret.keySet().toArray();
-		Arrays.sort(keys);
-		Integer curTot = 0;
-		for (int i = keys.length - 1; i >= 0; i--) {
-			curTot += toret.get(keys[i]);
-			toret.put((Double) keys[i], curTot);
-		}
-		
 		dbgEnd();
-		return toret;
+		return new ValueCollector[] { temp };
 	}
 	
 	
@@ -515,29 +960,36 @@ public class AutoHMPP extends HMPP {
 	 * @return a set with a discretization of all possible relative to best
 	 * values (for which there are changes in the output)
 	 */
-	public Double[] getDiscretizedRelativeToBests() {
+	public double[] getDiscretizedRelativeToBests() {
+		return ValueCollector.toSortedDistinct(collectRelativeToBests());
+	}
+	
+	
+	/**
+	 * This method collects the candidate values of the relative to best
+	 * parameter: the distance of each candidate dependency from the best output
+	 * of its event. A value is collected once for each such candidate
+	 * 
+	 * @return the collected values
+	 */
+	private ValueCollector[] collectRelativeToBests() {
 		dbgStart();
 		
-		HashSet<Double> temp = new HashSet<Double>();
+		ValueCollector temp = new ValueCollector();
 		
-		double[] bestInputMeasure = new double[eventsSize];
-		double[] bestOutputMeasure = new double[eventsSize];
-		int[] bestInputEvent = new int[eventsSize];
-		int[] bestOutputEvent = new int[eventsSize];
-		calculateBestRelations(bestInputMeasure, bestOutputMeasure, bestInputEvent, bestOutputEvent);
-		double measure;
+		HeuristicsMeasures measures = getMeasures(parameters);
+		double[] bestOutputMeasure = measures.getBestOutputMeasure();
 		for (int i = 0; i < eventsSize; i++) {
-			for (int j = 0; j < eventsSize; j++) {
-				measure = calculateDependencyMeasure(i, j);
-				temp.add(bestOutputMeasure[i] - measure);
+			/* the measure of the event with itself, as the one of all the
+			 * pairs which are not candidates, is 0 */
+			temp.add(bestOutputMeasure[i] - 0.0);
+			for (int p = measures.getDependencyStart(i); p < measures.getDependencyEnd(i); p++) {
+				temp.add(bestOutputMeasure[i] - measures.getDependencyMeasure(p));
 			}
 		}
 		
-		Double[] a = (Double[]) temp.toArray(new Double[temp.size()]);
-		Arrays.sort(a);
-		
 		dbgEnd();
-		return a;
+		return new ValueCollector[] { temp };
 	}
 	
 	
@@ -548,24 +1000,33 @@ public class AutoHMPP extends HMPP {
 	 * @return a set with a discretization of all possible length one loops
 	 * values (for which there are changes in the output)
 	 */
-	public Double[] getDiscretizedLength1Loop() {
+	public double[] getDiscretizedLength1Loop() {
+		return ValueCollector.toSortedDistinct(collectLength1Loop());
+	}
+	
+	
+	/**
+	 * This method collects the candidate values of the loops of length one: the
+	 * measure of each event. A value is collected once for each such candidate
+	 * 
+	 * @return the collected values
+	 */
+	private ValueCollector[] collectLength1Loop() {
 		dbgStart();
 		
-		HashSet<Double> temp = new HashSet<Double>();
+		ValueCollector temp = new ValueCollector();
 //		calculateBestRelations();
+		HeuristicsMeasures measures = getMeasures(parameters);
 		double measure;
 		for (int i = 0; i < eventsSize; i++) {
-			measure = calculateL1LDependencyMeasure(i);
+			measure = measures.getL1LDependencyMeasure(i);
 			if (measure <= 1.0) {
 				temp.add(measure);
 			}
 		}
 		
-		Double[] a = (Double[]) temp.toArray(new Double[temp.size()]);
-		Arrays.sort(a);
-		
 		dbgEnd();
-		return a;
+		return new ValueCollector[] { temp };
 	}
 	
 	
@@ -576,26 +1037,42 @@ public class AutoHMPP extends HMPP {
 	 * @return a set with a discretization of all possible length two loops
 	 * values (for which there are changes in the output)
 	 */
-	public Double[] getDiscretizedLength2Loop() {
+	public double[] getDiscretizedLength2Loop() {
+		return ValueCollector.toSortedDistinct(collectLength2Loop());
+	}
+	
+	
+	/**
+	 * This method collects the candidate values of the loops of length two: the
+	 * measure of each pair observed in a A &gt; B &gt; A pattern. A value is
+	 * collected once for each such candidate
+	 * 
+	 * @return the collected values
+	 */
+	private ValueCollector[] collectLength2Loop() {
 		dbgStart();
 		
-		HashSet<Double> temp = new HashSet<Double>();
+		ValueCollector temp = new ValueCollector();
 //		calculateBestRelations();
+		HeuristicsMeasures measures = getMeasures(parameters);
+		/* the measure of the pairs never observed in a A > B > A pattern (such
+		 * as the one of each event with itself) is 0, and so is the one of
+		 * the pairs cut by a length one loop */
+		if (eventsSize > 0) {
+			temp.add(0.0);
+		}
 		double measure;
 		for (int i = 0; i < eventsSize; i++) {
-			for (int j = 0; j < eventsSize; j++) {
-				measure = calculateL2LDependencyMeasure(i, j);
+			for (int p = measures.getL2LStart(i); p < measures.getL2LEnd(i); p++) {
+				measure = measures.getL2LDependencyMeasure(p);
 				if (measure <= 1.0) {
 					temp.add(measure);
 				}
 			}
 		}
 		
-		Double[] a = (Double[]) temp.toArray(new Double[temp.size()]);
-		Arrays.sort(a);
-		
 		dbgEnd();
-		return a;
+		return new ValueCollector[] { temp };
 	}
 	
 	
@@ -606,30 +1083,57 @@ public class AutoHMPP extends HMPP {
 	 * @return a set with a discretization of all possible long distance
 	 * thresholds (for which there are changes in the output)
 	 */
-	public Double[] getDiscretizedLongDistanceThreshold() {
+	public double[] getDiscretizedLongDistanceThreshold() {
+		return ValueCollector.toSortedDistinct(collectLongDistanceThreshold());
+	}
+	
+	
+	/**
+	 * This method collects the candidate values of the long distance parameter:
+	 * the measure of each pair observed at any distance (and of one unobserved
+	 * pair for each group of events). A value is collected once for each such
+	 * candidate
+	 * 
+	 * @return the collected values
+	 */
+	private ValueCollector[] collectLongDistanceThreshold() {
 		dbgStart();
 		
-		HashSet<Double> temp = new HashSet<Double>();
+		ValueCollector temp = new ValueCollector();
+		HeuristicsMeasures measures = getMeasures(parameters);
 		
+		/* The measure of a pair never observed depends only on the number of
+		 * occurrences of its events: just one unobserved pair for each group
+		 * of events with the same occurrences is considered */
+		int groups = measures.getOccurrenceGroups();
 		double measure;
-		for (int i = 0; i < longRangeDependencyMeasures.rows(); i++) {
-			for (int j = 0; j < longRangeDependencyMeasures.columns(); j++) {
-				if (events.getEvent(i).getOccurrenceCount() == 0) {
-					continue;
-				}
-				measure = calculateLongDistanceDependencyMeasure(i, j);
+		int[] observed = new int[groups];
+		for (int i = 0; i < eventsSize; i++) {
+			if (eventOccurrences[i] == 0) {
+				continue;
+			}
+			Arrays.fill(observed, 0);
+			for (int k = 0; k < longRangeSuccessionCount.rowSize(i); k++) {
+				int j = longRangeSuccessionCount.columnAt(i, k);
+				observed[measures.getOccurrenceGroup(j)]++;
+				measure = measures.getLongDistanceMeasure(i, j);
 				if (measure <= 1.0) {
 					temp.add(measure);
-					longRangeDependencyMeasures.set(i, j, measure);
+				}
+			}
+			for (int g = 0; g < groups; g++) {
+				/* the group has at least one event not observed after i */
+				if (observed[g] < measures.getOccurrenceGroupSize(g)) {
+					measure = measures.getUnobservedLongDistanceMeasure(i, g);
+					if (measure <= 1.0) {
+						temp.add(measure);
+					}
 				}
 			}
 		}
 		
-		Double[] a = (Double[]) temp.toArray(new Double[temp.size()]);
-		Arrays.sort(a);
-		
 		dbgEnd();
-		return a;
+		return new ValueCollector[] { temp };
 	}
 	
 	
@@ -640,291 +1144,257 @@ public class AutoHMPP extends HMPP {
 	 * @return a set with a discretization of all possible AND thresholds (for
 	 * which there are changes in the output)
 	 */
-	public Double[] getDiscretizedANDThreshold() {
+	public double[] getDiscretizedANDThreshold() {
+		return ValueCollector.toSortedDistinct(collectANDThreshold());
+	}
+	
+	
+	/**
+	 * This method collects the candidate values of the AND threshold
+	 * parameter. The AND threshold is compared only with the AND measures of
+	 * two events which are together in the input (or output) set of a third
+	 * one, so just the triples for which this can happen are considered (see
+	 * {@link #getAndCandidates(HeuristicsMeasures, SparseIntMatrix, SparseIntMatrix)}), and a
+	 * value is collected once for each of them. The owner events are
+	 * partitioned among the search threads (which are not running yet).
+	 * 
+	 * @return the collected values
+	 */
+	private ValueCollector[] collectANDThreshold() {
 		dbgStart();
 		
-		HashSet<Double> temp = new HashSet<Double>();
-		
-		double measure;
-		for(int i = 0; i < eventsSize; i++) {
-			for(int j = 0; j < eventsSize; j++) {
-				for(int k = 0; k < eventsSize; k++) {
-					if (i!=j && i!=k && j!=k)
-					{
-						measure = andInMeasureF(i, j, k);
-						if (measure <= 1.0) {
-							temp.add(measure);
-							allAndMeasures.set(i, j, k, measure);
+		final HeuristicsMeasures measures = getMeasures(parameters);
+		final SparseIntMatrix inputs = new SparseIntMatrix(eventsSize, eventsSize);
+		final SparseIntMatrix outputs = new SparseIntMatrix(eventsSize, eventsSize);
+		getAndCandidates(measures, inputs, outputs);
+		
+		final int threads = Math.max(1, Math.min(numberOfSearchThread, eventsSize));
+		final ValueCollector[] values = new ValueCollector[threads];
+		Thread[] t = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			final int index = i;
+			values[i] = new ValueCollector();
+			t[i] = new Thread("AND discretization " + i) {
+				@Override
+				public void run() {
+					/* the owners are interleaved, to balance the work */
+					for (int owner = index; owner < eventsSize; owner += threads) {
+						for (int a = 0; a < inputs.rowSize(owner); a++) {
+							for (int b = a + 1; b < inputs.rowSize(owner); b++) {
+								int j = inputs.columnAt(owner, a);
+								int k = inputs.columnAt(owner, b);
+								if (j != owner && k != owner) {
+									values[index].addIfNotGreater(measures.getAndInMeasure(owner, j, k), 1.0);
+								}
+							}
+						}
+						for (int a = 0; a < outputs.rowSize(owner); a++) {
+							for (int b = a + 1; b < outputs.rowSize(owner); b++) {
+								int j = outputs.columnAt(owner, a);
+								int k = outputs.columnAt(owner, b);
+								if (j != owner && k != owner) {
+									values[index].addIfNotGreater(measures.getAndOutMeasure(owner, j, k), 1.0);
+								}
+							}
 						}
 					}
 				}
+			};
+			t[i].start();
+		}
+		/* wait for each thread to finish */
+		try {
+			for (int i = 0; i < threads; i++) {
+				t[i].join();
 			}
+		} catch (InterruptedException e) {
+			e.printStackTrace();
 		}
 		
-		Double[] a = (Double[]) temp.toArray(new Double[temp.size()]);
-		Arrays.sort(a);
-		
 		dbgEnd();
-		return a;
+		return values;
 	}
 	
 	
 	/**
-	 * This method returns an ArrayList with all the discretized values for each
-	 * parameter. Each element is an array of Double containing the
-	 * possible values for the parameter. This is the map from the
-	 * index to the parameter discratization:
-	 * <ul>
-	 * 	<li>0. dependency threshold</li>
-	 *  <li>1. positive observations</li>
-	 *  <li>2. relative to best</li>
-	 *  <li>3. and threshold</li>
-	 *  <li>4. length one loop</li>
-	 *  <li>5. length two loop</li>
-	 *  <li>6. long distance dep</li>
-	 * </ul>
+	 * This method collects, for each event, the events which can be in its
+	 * input and output sets, whatever the thresholds: the observed direct
+	 * successions, the start and complete events of the same activity, the
+	 * events observed in a A > B > A pattern and the best input and output of
+	 * each event (even if its measure is 0)
 	 * 
-	 * @return the discretized parameters
+	 * @param measures the measures of the log
+	 * @param inputs the matrix where the cell (i, j) is set if j can be in the
+	 * input set of i
+	 * @param outputs the matrix where the cell (i, j) is set if j can be in the
+	 * output set of i
 	 */
-	public synchronized ArrayList<Double[]> getDiscretizedParameters() {
-		dbgStart();
+	private void getAndCandidates(HeuristicsMeasures measures, SparseIntMatrix inputs, SparseIntMatrix outputs) {
+		int[] bestInputEvent = measures.getBestInputEvent();
+		int[] bestOutputEvent = measures.getBestOutputEvent();
 		
-		notifier.stepStarts("NULL", Notifier.STEPS.PARAMETER_DISCRETIZATION);
-		
-		if (discretizedParameters == null) {
-			discretizedParameters = new ArrayList<Double[]>(7);
-			/* dependency thresholds */
-			discretizedParameters.add(0, getDiscretizedDependencyThresholds().keySet().toArray(new Double[0]));
-			/* positive observations */
-			discretizedParameters.add(1, getDiscretizedPositiveObsThresholds().keySet().toArray(new Double[0]));
-			/* relative to best */
-			discretizedParameters.add(2, getDiscretizedRelativeToBests());
-			/* AND threshold */
-			discretizedParameters.add(3, getDiscretizedANDThreshold());
-			/* length one/two loops */
-			discretizedParameters.add(4, getDiscretizedLength1Loop());
-			discretizedParameters.add(5, getDiscretizedLength2Loop());
-			/* long distance dep */
-			discretizedParameters.add(6, getDiscretizedLongDistanceThreshold());
+		for (int i = 0; i < eventsSize; i++) {
+			/* the observed direct successions and the complete event of the
+			 * same activity */
+			for (int p = measures.getDependencyStart(i); p < measures.getDependencyEnd(i); p++) {
+				int j = measures.getDependencyTarget(p);
+				outputs.set(i, j, 1);
+				inputs.set(j, i, 1);
+			}
+			for (int k = 0; k < succession2Count.rowSize(i); k++) {
+				int j = succession2Count.columnAt(i, k);
+				inputs.set(i, j, 1);
+				outputs.set(i, j, 1);
+				inputs.set(j, i, 1);
+				outputs.set(j, i, 1);
+			}
+			if (bestInputEvent[i] >= 0) {
+				inputs.set(i, bestInputEvent[i], 1);
+				outputs.set(bestInputEvent[i], i, 1);
+			}
+			if (bestOutputEvent[i] >= 0) {
+				outputs.set(i, bestOutputEvent[i], 1);
+				inputs.set(bestOutputEvent[i], i, 1);
+			}
 		}
-		
-		notifier.stepEnds("NULL", Notifier.STEPS.PARAMETER_DISCRETIZATION);
-		
-		dbgEnd();
-		return discretizedParameters;
 	}
 	
 	
-	private void calculateBestRelations(double[] bestInputMeasure, double[] bestOutputMeasure, int[] bestInputEvent, int[] bestOutputEvent) {
+	/**
+	 * This method returns the discretized values of each parameter (see
+	 * {@link DiscretizedParameters} for the map from the index to the
+	 * parameter). The discretization is computed only the first time, then
+	 * the same snapshot is returned until the counts change.
+	 * 
+	 * @return the discretized parameters
+	 */
+	public DiscretizedParameters getDiscretizedParameters() {
+		DiscretizedParameters d = discretizedParameters;
+		if (d == null) {
+			synchronized (this) {
+				d = discretizedParameters;
+				if (d == null) {
+					d = discretizeParameters();
+					discretizedParameters = d;
+				}
+			}
+		}
+		return d;
+	}
+	
+	
+	/**
+	 * This method discretizes all the parameters. The families are
+	 * independent (they only read the counts), so each one is discretized by
+	 * its own thread.
+	 * 
+	 * If a maximum number of breakpoints is set (see
+	 * {@link #setMaxBreakpoints(int)}), a family with more distinct values is
+	 * reduced to the quantiles of its candidates: since a value is collected
+	 * once for each edge switching at it, consecutive breakpoints are
+	 * separated by the same change in the number of edges. The nets between
+	 * two breakpoints are no longer reachable by the search, and their number
+	 * is reported by the snapshot.
+	 * 
+	 * @return the snapshot of the discretization
+	 */
+	private DiscretizedParameters discretizeParameters() {
 		dbgStart();
 		
-//		bestInputMeasure = new double[eventsSize];
-//		bestOutputMeasure = new double[eventsSize];
-//		bestInputEvent = new int[eventsSize];
-//		bestOutputEvent = new int[eventsSize];
-		double measure;
-		
-		for (int i = 0; i < eventsSize; i++) {
-			bestInputMeasure[i] = -10.0;
-			bestOutputMeasure[i] = -10.0;
-			bestInputEvent[i] = -1;
-			bestOutputEvent[i] = -1;
-		}
-		/* Search the beste ones */
-		for (int i = 0; i < eventsSize; i++) {
-			for (int j = 0; j < eventsSize; j++) {
-				if (i != j) {
-					measure = calculateDependencyMeasure(i, j);
-//					measure = dependencyMeasuresAccepted.get(i, j);
-//					dependencyMeasuresAccepted.set(i, j, measure);
-					ABdependencyMeasuresAll.set(i, j, measure);
-
-					if (measure > bestOutputMeasure[i]) {
-						bestOutputMeasure[i] = measure;
-						bestOutputEvent[i] = j;
-					}
-					if (measure > bestInputMeasure[j]) {
-						bestInputMeasure[j] = measure;
-						bestInputEvent[j] = i;
+		final int breakpoints = maxBreakpoints;
+		final double[][] values = new double[DiscretizedParameters.FAMILIES][];
+		final int[] distinct = new int[DiscretizedParameters.FAMILIES];
+		final long[] times = new long[DiscretizedParameters.FAMILIES];
+		Thread[] t = new Thread[DiscretizedParameters.FAMILIES];
+		for (int i = 0; i < DiscretizedParameters.FAMILIES; i++) {
+			final int family = i;
+			t[i] = new Thread("Discretization " + DiscretizedParameters.getName(i)) {
+				@Override
+				public void run() {
+					notifier.stepStarts(getName(), Notifier.STEPS.PARAMETER_DISCRETIZATION);
+					long start = System.currentTimeMillis();
+					double[] all = ValueCollector.toSorted(collect(family));
+					distinct[family] = ValueCollector.countDistinct(all);
+					if (breakpoints > 0 && distinct[family] > breakpoints) {
+						values[family] = ValueCollector.toQuantiles(all, breakpoints);
+					} else {
+						values[family] = ValueCollector.toDistinct(all);
 					}
+					times[family] = System.currentTimeMillis() - start;
+					notifier.stepEnds(getName(), Notifier.STEPS.PARAMETER_DISCRETIZATION);
 				}
+			};
+			t[i].start();
+		}
+		/* wait for each thread to finish */
+		try {
+			for (int i = 0; i < DiscretizedParameters.FAMILIES; i++) {
+				t[i].join();
 			}
+		} catch (InterruptedException e) {
+			e.printStackTrace();
 		}
 		
+		DiscretizedParameters d = new DiscretizedParameters(values, distinct, times);
+		dbg("parameters discretized (" + d + ")");
+		
 		dbgEnd();
+		return d;
 	}
 	
 	
 	/**
-	 * This method extracts information on the parameter instance, calculating
-	 * the direct successions matrix and the parallel events matrix
+	 * This method collects the candidate values of a single parameter family
 	 * 
-	 * @param atel the process instance's activities
+	 * @param family the family index
+	 * @return the collected values
 	 */
-	@SuppressWarnings("unchecked")
-	private void calculateEventsFrequencies(AuditTrailEntryList atel) {
-//		dbgStart();
-
-		/* All the activities finished just before the current one */
-		HashMap<String, Integer> finishedActivities = new HashMap<String, Integer>();
-		/* All the activities finished from ever */
-		HashMap<String, Integer> finishedActivitiesEver = new HashMap<String, Integer>();
-		/* All the activities started but not yet finished */
-		HashMap<String, Long[]> startedNotFinishedActivities = new HashMap<String, Long[]>();
-		/* This object contains all the events finished next to last */
-		HashMap<String, Integer> nextToLastFinishedActivities = null;
-		
-		/* Starting and ending elements for this process instance */
-		int startElement = -1;
-		int endElement = -1;
-		
-		/* We have to iterate throughout the process instance */
-		Iterator<AuditTrailEntry> i = atel.iterator();
-		/* We need to remember if the last activity was a finish so if we have
-		 * no other direct successors */
-		boolean previousEventWasComplete = false;
-
-		while (i.hasNext()) {	
-			AuditTrailEntry ate = i.next();
-			LogEvent le = new LogEvent(ate.getElement(), ate.getType());
-			String leName = ate.getName();
-			String leType = ate.getType();
-			
-			int indexOfAct = events.indexOf(le);
-			int indexOfTransition = transitions.indexOf(leName);
-			
-			if (leType.equals("start")) {
-				
-				/* If required, update the starting activity
-				 */
-				if (startElement == -1) {
-					startElement = indexOfAct;
-				}
-				
-				/* This is the start of a new activity, all the activities
-				 * started but not finished are overlapped with this one and all
-				 * the activities already finished are before this one.
-				 */
-				/* Set up the activity direct successors */
-				for (String act : finishedActivities.keySet()) {
-					int indexOfCurrAct = events.indexOf(new LogEvent(act, "complete"));
-					double old = directSuccessionCount.get(indexOfCurrAct, indexOfAct);
-					directSuccessionCount.set(indexOfCurrAct, indexOfAct, old + 1);
-//					System.out.println("   Added "+ act +" => "+ leName);
-				}
-				
-				/* Set up the activity successors */
-				// TODO: here i have to correctly populate the succession2Count
-				//       array, in order to mine correctly the length two loop
-//				if (nextToLastFinishedActivities != null) {
-//					for (String act : nextToLastFinishedActivities.keySet()) {
-//						int indexOfCurrAct = events.indexOf(new LogEvent(act, "complete"));
-//						double old = succession2Count.get(indexOfCurrAct, indexOfAct);
-//						succession2Count.set(transitions.indexOf(act), indexOfAct, old + 1);
-//						System.out.println("   Added "+ act +" ===> "+ leName);
-//					}
-//				}
-				
-				/* Overlapped activities */
-				for (String act : startedNotFinishedActivities.keySet()) {
-					double old = parallelCount.get(transitions.indexOf(act), indexOfTransition);
-					parallelCount.set(transitions.indexOf(act), indexOfTransition, old + 1);
-					parallelCount.set(indexOfTransition, transitions.indexOf(act), old + 1);
-//					System.out.println("   Added "+ act +" || "+ leName);
-				}
-				
-				/* Started not finished increment */
-				Long[] val_started_not_finished = {1L, ate.getTimestamp().getTime()};
-				if (startedNotFinishedActivities.containsKey(leName)) {
-					val_started_not_finished[0] += startedNotFinishedActivities.get(leName)[0];
-				}
-				startedNotFinishedActivities.put(leName, val_started_not_finished);
-				
-				previousEventWasComplete = false;
-				
-			} else if (leType.equals("complete")) {
-				
-				/* Update the current end activity  */
-				endElement = indexOfAct;
-				
-				/* Update the activity counter and the total activity time */
-				double oldOccur = totalActivityCounter.get(indexOfTransition);
-				totalActivityCounter.set(indexOfTransition, oldOccur+1);
-				oldOccur = totalActivityTime.get(indexOfTransition);
-
-				/* We have to clean this because we want to keep only the DIRECT
-				 * successors of the activity, just if there are no other
-				 * acrivity ended before */
-				if (!previousEventWasComplete) {
-					nextToLastFinishedActivities = (HashMap<String, Integer>)finishedActivities.clone();
-					finishedActivities.clear();
-				}
-				
-				/* This is the finish of an activity, I have just to terminate
-				 * the start.  
-				 */
-				/* Eventual started but not finished removal */
-				if (startedNotFinishedActivities.containsKey(leName))
-				{
-					Long[] val_started_not_finished = startedNotFinishedActivities.get(leName);
-					/* Update the total activity time */
-					double time = totalActivityTime.get(transitions.indexOf(leName));
-					time += ((ate.getTimestamp().getTime() - val_started_not_finished[1]) / 1000);
-					totalActivityTime.set(transitions.indexOf(leName), time);
-
-					/* Update the started not finished map */
-					long val = val_started_not_finished[0];
-					if (val == 1) {
-						startedNotFinishedActivities.remove(leName);
-					} else {
-						val_started_not_finished[0] = val - 1L;
-						startedNotFinishedActivities.put(leName, val_started_not_finished);
-					}
-					
-					/* Update the total overlapping time */
-					for (String act : startedNotFinishedActivities.keySet()) {
-						/* Update the overlapping time only for the activities
-						 * different from the current one */
-						if (!act.equals(leName)) {
-							int indexOfCurrAct = transitions.indexOf(act);
-							time = ate.getTimestamp().getTime() - startedNotFinishedActivities.get(act)[1];
-							time /= 1000;
-							time += totalOverlappingTime.get(indexOfTransition, indexOfCurrAct);
-							totalOverlappingTime.set(indexOfTransition, indexOfCurrAct, time);
-							totalOverlappingTime.set(indexOfCurrAct, indexOfTransition, time);
-						}
-					}
-				}
-				
-				/* Finished activities increment */
-				int val_finished = 1;
-				int val_finished_ever = 1;
-				if (finishedActivities.containsKey(leName)) {
-					val_finished += finishedActivities.get(leName);
-				}
-				finishedActivities.put(leName, val_finished);
-				
-				if (finishedActivitiesEver.containsKey(leName)) {
-					val_finished_ever += finishedActivitiesEver.get(leName);
+	private ValueCollector[] collect(int family) {
+		switch (family) {
+		case DiscretizedParameters.DEPENDENCY_THRESHOLD:
+			return collectDependencyThresholds();
+		case DiscretizedParameters.POSITIVE_OBSERVATIONS:
+			return collectPositiveObsThresholds();
+		case DiscretizedParameters.RELATIVE_TO_BEST:
+			return collectRelativeToBests();
+		case DiscretizedParameters.AND_THRESHOLD:
+			return collectANDThreshold();
+		case DiscretizedParameters.LENGTH_ONE_LOOP:
+			return collectLength1Loop();
+		case DiscretizedParameters.LENGTH_TWO_LOOP:
+			return collectLength2Loop();
+		case DiscretizedParameters.LONG_DISTANCE:
+			return collectLongDistanceThreshold();
+		}
+		throw new IllegalArgumentException("Unknown parameter family " + family);
+	}
+	
+	
+	/**
+	 * This method returns the measures of the log which do not depend on the
+	 * thresholds, for the dependency divisor and the intervals overlap
+	 * multiplier of the given parameters. The measures are computed only the
+	 * first time, then the same ones are returned until the counts (or the
+	 * divisor or the multiplier) change.
+	 * 
+	 * @param parameters the parameters
+	 * @return the measures of the log
+	 */
+	public HeuristicsMeasures getMeasures(HMPPParameters parameters) {
+		HeuristicsMeasures m = measures;
+		if (m == null || !m.isComputedWith(parameters)) {
+			synchronized (measuresLock) {
+				m = measures;
+				if (m == null || !m.isComputedWith(parameters)) {
+					m = new HeuristicsMeasures(statistics, parameters);
+					measures = m;
 				}
-				finishedActivitiesEver.put(leName, val_finished_ever);
-				
-				previousEventWasComplete = true;
-				
 			}
 		}
-		/* Update the start / finish process counter */
-		if (startElement >= 0) {
-			startCount.set(startElement, startCount.get(startElement) + 1);
-		}
-		if (endElement >= 0) {
-			endCount.set(endElement, endCount.get(endElement) + 1);
-		}
-		
-//		dbgEnd();
+		return m;
 	}
-
-
+	
+	
 	/**
 	 * This method uses the support data to build the heuristics relations.
 	 * These are the main steps of this procedure:
@@ -938,30 +1408,94 @@ public class AutoHMPP extends HMPP {
 	 * @return the heuristics net from the log
 	 */
 	public HMPPHeuristicsNet makeHeuristicsRelations(LogReader log, HMPPParameters parameters) {
+		return makeHeuristicsRelations(parameters);
+	}
+	
+	
+	/**
+	 * This method uses the support data (built from the current log) to build
+	 * the heuristics relations, in a new context.
+	 * 
+	 * @param parameters the parameter configuration
+	 * @return the heuristics net from the log
+	 */
+	public HMPPHeuristicsNet makeHeuristicsRelations(HMPPParameters parameters) {
+		return makeHeuristicsRelations(new MiningContext(getMeasures(parameters), parameters));
+	}
+	
+	
+	/**
+	 * This method uses the support data (built from the current log) to build
+	 * the heuristics relations. The measures of the context, which do not
+	 * depend on the thresholds, are only compared with the thresholds of the
+	 * context, and everything computed while the net is built is stored in
+	 * the context: evaluations with different contexts can run at the same
+	 * time.
+	 * 
+	 * @param context the context of this evaluation, with the parameter
+	 * configuration (it must be a new one)
+	 * @return the heuristics net from the log
+	 */
+	public HMPPHeuristicsNet makeHeuristicsRelations(MiningContext context) {
+		return makeHeuristicsRelations(context, null);
+	}
+	
+	
+	/**
+	 * This method builds the heuristics relations as
+	 * {@link #makeHeuristicsRelations(MiningContext)}, starting from the
+	 * context of a previous evaluation (usually the one of a close position
+	 * of the parameters search). The connections of each event are always
+	 * selected again, since this is cheap, but the OR-subsets of an event are
+	 * taken from the previous context if its connections are the same and no
+	 * AND measure among them is between the two AND thresholds. The events
+	 * whose input or output set differs from the net of the previous context
+	 * are then stored into the context (see
+	 * {@link MiningContext#getChangedEvents()}).
+	 * 
+	 * @param context the context of this evaluation, with the parameter
+	 * configuration (it must be a new one)
+	 * @param previous the context of a previous evaluation, with the same
+	 * measures (if null, or if its net is not built, the net is built from
+	 * scratch)
+	 * @return the heuristics net from the log
+	 */
+	public HMPPHeuristicsNet makeHeuristicsRelations(MiningContext context, MiningContext previous) {
 		dbgStart();
 		
 		/* Step 0 =========================================================== */
 		dbg("Step 0");
 		/* Data initialization */
-		dependencyMeasuresAccepted = DoubleFactory2D.sparse.make(eventsSize, eventsSize, 0.0);
+		HMPPParameters parameters = context.getParameters();
+		HeuristicsMeasures measures = context.getMeasures();
+		SparseDoubleMatrix dependencyMeasuresAccepted = context.getDependencyMeasuresAccepted();
+		SparseDoubleMatrix noiseCounters = context.getNoiseCounters();
+		boolean[] L1Lrelation = context.getL1Lrelation();
+		int[] L2Lrelation = context.getL2Lrelation();
+		boolean[] alwaysVisited = context.getAlwaysVisited();
 		
 		/* The net we are going to build... */
 //		DependencyHeuristicsNet result = new DependencyHeuristicsNet(eventsFiltered,
 //				dependencyMeasuresAccepted, directSuccessionCount);
-		HMPPHeuristicsNet result = new HMPPHeuristicsNet(events, dependencyMeasuresAccepted, directSuccessionCount);
+		HMPPHeuristicsNet result = new HMPPHeuristicsNet(events,
+				new ColtMatrixView(dependencyMeasuresAccepted), new ColtMatrixView(directSuccessionCount));
 //		HeuristicsNet result = new DependencyHeuristicsNet()
 
 //		L1Lrelation = new boolean[eventsSize];
 //		L2Lrelation = new int[eventsSize];
 		
-		HNSubSet[] inputSet = new HNSubSet[eventsSize];
-		HNSubSet[] outputSet = new HNSubSet[eventsSize];
+		HNSubSet[] inputSet = context.getInputSet();
+		HNSubSet[] outputSet = context.getOutputSet();
+		HNSet[] inputOrSets = context.getInputOrSets();
+		HNSet[] outputOrSets = context.getOutputOrSets();
 		
-		for (int i = 0; i < eventsSize; i++) {
-			inputSet[i] = new HNSubSet();
-			outputSet[i] = new HNSubSet();
+//		for (int i = 0; i < eventsSize; i++) {
 //			L1Lrelation[i] = false;
 //			L2Lrelation[i] = -10;
+//		}
+		
+		if (previous != null && (previous.getNet() == null || previous.getMeasures() != measures)) {
+			previous = null;
 		}
 		
 		/* Step 1 =========================================================== */
@@ -970,10 +1504,10 @@ public class AutoHMPP extends HMPP {
 		int bestStart = 0;
 		int bestEnd = 0;
 		for (int i = 0; i < eventsSize; i++) {
-			if (startCount.get(i) > startCount.get(bestStart)) {
+			if (startCount[i] > startCount[bestStart]) {
 				bestStart = i;
 			}
-			if (endCount.get(i) > endCount.get(bestEnd)) {
+			if (endCount[i] > endCount[bestEnd]) {
 				bestEnd = i;
 			}
 		}
@@ -986,8 +1520,8 @@ public class AutoHMPP extends HMPP {
 		endTask.add(bestEnd);
 		result.setEndTasks(endTask);
 		/* Update noiseCounters */
-		noiseCounters.set(bestStart, 0, log.getLogSummary().getNumberOfProcessInstances() - startCount.get(bestStart));
-		noiseCounters.set(0, bestEnd, log.getLogSummary().getNumberOfProcessInstances() - endCount.get(bestEnd));
+		noiseCounters.set(bestStart, 0, statistics.getNumberOfTraces() - startCount[bestStart]);
+		noiseCounters.set(0, bestEnd, statistics.getNumberOfTraces() - endCount[bestEnd]);
 		
 		/* Step 2 =========================================================== */
 		dbg("Step 2");
@@ -995,36 +1529,25 @@ public class AutoHMPP extends HMPP {
 		double measure = 0.0;
 		
 		/* Step 2.1 - L1L loops ............................................. */
-		for (int i = 0; i < eventsSize; i++) {
-			measure = calculateL1LDependencyMeasure(i);
-			L1LdependencyMeasuresAll.set(i, measure);
-			if (measure >= parameters.getL1lThreshold() &&
-					directSuccessionCount.get(i, i) >= parameters.getPositiveObservationsThreshold()) {
-				dependencyMeasuresAccepted.set(i, i, measure);
-				L1Lrelation[i] = true;
-				inputSet[i].add(i);
-				outputSet[i].add(i);
-			}
+		/* The selected loops (as all the selected edges below) are visited in
+		 * the same order of a scan of all the candidates */
+		BitSet selected = measures.selectL1L(parameters);
+		for (int i = selected.nextSetBit(0); i >= 0; i = selected.nextSetBit(i + 1)) {
+			dependencyMeasuresAccepted.set(i, i, measures.getL1LDependencyMeasure(i));
+			L1Lrelation[i] = true;
+			inputSet[i].add(i);
+			outputSet[i].add(i);
 		}
 		
 		/* Step 2.2 - L2L loops ............................................. */
-		for (int i = 0; i < eventsSize; i++) {
-			for (int j = 0; j < eventsSize; j++) {
-				measure = calculateL2LDependencyMeasure(i, j);
-				L2LdependencyMeasuresAll.set(i, j, measure);
-				L2LdependencyMeasuresAll.set(j, i, measure);
-				
-				if ((i != j) && (measure >= parameters.getL2lThreshold()) && 
-						((succession2Count.get(i, j) + succession2Count.get(j,i)) >= parameters.getPositiveObservationsThreshold())) {
-					dependencyMeasuresAccepted.set(i, j, measure);
-					dependencyMeasuresAccepted.set(j, i, measure);
-					L2Lrelation[i] = j;
-					L2Lrelation[j] = i;
-					inputSet[i].add(j);
-					outputSet[j].add(i);
-					inputSet[j].add(i);
-					outputSet[i].add(j);
-				}
+		/* Just the pairs observed in a A > B > A pattern can reach the
+		 * positive observations threshold, the measure of the selected ones
+		 * has to be checked again after the L1L loops */
+		selected = measures.selectL2L(parameters);
+		for (int p = selected.nextSetBit(0); p >= 0; p = selected.nextSetBit(p + 1)) {
+			measure = calculateL2LDependencyMeasure(context, p);
+			if (measure >= parameters.getL2lThreshold()) {
+				acceptL2L(context, p, measure);
 			}
 		}
 		
@@ -1059,28 +1582,25 @@ public class AutoHMPP extends HMPP {
 //				}
 //			}
 //		}
-		double[] bestInputMeasure = new double[eventsSize];
-		double[] bestOutputMeasure = new double[eventsSize];
-		int[] bestInputEvent = new int[eventsSize];
-		int[] bestOutputEvent = new int[eventsSize];
-		calculateBestRelations(bestInputMeasure, bestOutputMeasure, bestInputEvent, bestOutputEvent);
-		
-		/* Extra check for best compared with L2L-loops */
+		double[] bestInputMeasure = measures.getBestInputMeasure();
+		double[] bestOutputMeasure = measures.getBestOutputMeasure();
+		int[] bestInputEvent = measures.getBestInputEvent();
+		int[] bestOutputEvent = measures.getBestOutputEvent();
+		
+		/* Extra check for best compared with L2L-loops (the measure of the
+		 * pairs never observed in a A > B > A pattern is 0, which is never
+		 * better than the best input): a loop is accepted if it is better
+		 * than the best input of the start event of one of its activities,
+		 * which is neither the start nor the end of the net */
 		for (int i = 0; i < eventsSize; i++) {
-			if ((i!=bestStart) && (i!=bestEnd)) {
-				for (int j = 0; j < eventsSize; j++) {
-					measure = calculateL2LDependencyMeasure(i, j);
-					
-					if (measure > bestInputMeasure[i]) {
-						dependencyMeasuresAccepted.set(i, j, measure);
-						dependencyMeasuresAccepted.set(j, i, measure);
-						L2Lrelation[i] = j;
-						L2Lrelation[j] = i;
-						inputSet[i].add(j);
-						outputSet[j].add(i);
-						inputSet[j].add(i);
-						outputSet[i].add(j);
-					}
+			for (int p = measures.getL2LStart(i); p < measures.getL2LEnd(i); p++) {
+				int startA = measures.getL2LReturnTarget(p);
+				int startB = measures.getL2LNeighbour(p);
+				measure = calculateL2LDependencyMeasure(context, p);
+				
+				if ((startA != bestStart && i != bestEnd && measure > bestInputMeasure[startA]) ||
+					(startB != bestStart && measures.getL2LReturnSource(p) != bestEnd && measure > bestInputMeasure[startB])) {
+					acceptL2L(context, p, measure);
 				}
 			}
 		}
@@ -1116,51 +1636,48 @@ public class AutoHMPP extends HMPP {
 		} else {
 			/* Connect all starts with the relative finish */
 			for (int i = 0; i < eventsSize; i++) {
-				for (int j = 0; j < eventsSize; j++) {
-					LogEvent leI = events.get(i);
-					LogEvent leJ = events.get(j);
-					boolean sameEvent = leI.getModelElementName().equals(leJ.getModelElementName());
-					boolean isIStart = leI.getEventType().equals("start");
-					boolean isIFinish = leI.getEventType().equals("complete");
-					boolean isJStart = leJ.getEventType().equals("start");
-					boolean isJFinish = leJ.getEventType().equals("complete");
-					if (sameEvent /*&& isIStart && isJFinish*/) {
-						if (isIStart && isJFinish) {
-							outputSet[i].add(j);
-							inputSet[j].add(i);
-						} else if (isJStart && isIFinish) {
-							outputSet[j].add(i);
-							inputSet[i].add(j);
-						}
-					}
+				int j = completeOf[i];
+				if (isStart[i] && j >= 0) {
+					outputSet[i].add(j);
+					inputSet[j].add(i);
 				}
 			}
 		}
-		/* Search for other connections that fulfill all the thresholds */
-		for (int i = 0; i < eventsSize; i++) {
-			for (int j = 0; j < eventsSize; j++) {
-				if (dependencyMeasuresAccepted.get(i, j) <= 0.0001) {
-					measure = calculateDependencyMeasure(i, j);
-					if (((bestOutputMeasure[i] - measure) <= parameters.getRelativeToBestThreshold()) &&
-							(directSuccessionCount.get(i, j) >= parameters.getPositiveObservationsThreshold()) &&
-							(measure >= parameters.getDependencyThreshold())) {
-						dependencyMeasuresAccepted.set(i, j, measure);
-						inputSet[j].add(i);
-						outputSet[i].add(j);
-						noiseCounters.set(i, j, directSuccessionCount.get(j, i));
-					}
-				}
+		/* Search for other connections that fulfill all the thresholds (just
+		 * the observed successions can reach the positive observations
+		 * threshold) */
+		selected = measures.selectDependencies(parameters);
+		for (int p = selected.nextSetBit(0); p >= 0; p = selected.nextSetBit(p + 1)) {
+			int i = measures.getDependencySource(p);
+			int j = measures.getDependencyTarget(p);
+			if (dependencyMeasuresAccepted.get(i, j) <= 0.0001) {
+				dependencyMeasuresAccepted.set(i, j, measures.getDependencyMeasure(p));
+				inputSet[j].add(i);
+				outputSet[i].add(j);
+				noiseCounters.set(i, j, directSuccessionCount.get(j, i));
 			}
 		}
 		
 		/* Step 3 =========================================================== */
 		dbg("Step 3");
 		/* Given the InputSets and OutputSets build OR-subsets */
+		/* The OR-subsets of the previous context are kept if they would be
+		 * built again in the same way. The net gets a copy of them, since the
+		 * long distance dependencies are added to the sets of the net */
 		double score;
-		alwaysVisited = new boolean[eventsSize];
 		for (int i = 0; i < eventsSize; i++) {
-			result.setInputSet(i, buildOrInputSets(i, inputSet[i]));
-			result.setOutputSet(i, buildOrOutputSets(i, outputSet[i]));
+			if (previous != null && isOrSetReusable(context, previous, i, true)) {
+				inputOrSets[i] = previous.getInputOrSets()[i];
+			} else {
+				inputOrSets[i] = buildOrInputSets(context, i, inputSet[i]);
+			}
+			if (previous != null && isOrSetReusable(context, previous, i, false)) {
+				outputOrSets[i] = previous.getOutputOrSets()[i];
+			} else {
+				outputOrSets[i] = buildOrOutputSets(context, i, outputSet[i]);
+			}
+			result.setInputSet(i, copyOf(inputOrSets[i]));
+			result.setOutputSet(i, copyOf(outputOrSets[i]));
 		}
 //		System.out.println(andInMeasuresAll);
 //		System.out.println(andOutMeasuresAll);
@@ -1180,35 +1697,38 @@ public class AutoHMPP extends HMPP {
 //		}
 //		if (USE_LONG_DISTANCE_CONNECTIONS) {
 //		if (parameters.useLongDistanceDependency) {
+			/* just the pairs over the threshold are visited, in the order of
+			 * a scan of all the pairs from the last one */
+			selected = measures.selectLongDistance(parameters);
 			for (int i = (eventsSize - 1); i >= 0; i--) {
-				for (int j = (eventsSize - 1); j >= 0; j--) {
-					if ((i == j) || (alwaysVisited[j] && (j != bestEnd))) {
+				int[] targets = measures.getLongDistanceTargets(i, selected, parameters);
+				for (int t = targets.length - 1; t >= 0; t--) {
+					int j = targets[t];
+					if (alwaysVisited[j] && (j != bestEnd)) {
 						continue;
 					}
-					score = calculateLongDistanceDependencyMeasure(i, j);
-					if (score > parameters.getLDThreshold()) {
-						BitSet h = new BitSet();
-						if (escapeToEndPossibleF(i, j, h, result)) {
-							// HNlongRangeFollowingChance.set(i, j, hnc);
-							dependencyMeasuresAccepted.set(i, j, score);
-
-							// update heuristicsNet
-							HNSubSet helpSubSet = new HNSubSet();
-							HNSet helpSet = new HNSet();
-
-							helpSubSet.add(j);
-							helpSet = result.getOutputSet(i);
-							helpSet.add(helpSubSet);
-							result.setOutputSet(i, helpSet);
-
-							helpSubSet = new HNSubSet();
-							helpSet = new HNSet();
-
-							helpSubSet.add(i);
-							helpSet = result.getInputSet(j);
-							helpSet.add(helpSubSet);
-							result.setInputSet(j, helpSet);
-						}
+					score = measures.getLongDistanceMeasure(i, j);
+					BitSet h = new BitSet();
+					if (escapeToEndPossibleF(i, j, h, result)) {
+						// HNlongRangeFollowingChance.set(i, j, hnc);
+						dependencyMeasuresAccepted.set(i, j, score);
+						
+						// update heuristicsNet
+						HNSubSet helpSubSet = new HNSubSet();
+						HNSet helpSet = new HNSet();
+						
+						helpSubSet.add(j);
+						helpSet = result.getOutputSet(i);
+						helpSet.add(helpSubSet);
+						result.setOutputSet(i, helpSet);
+						
+						helpSubSet = new HNSubSet();
+						helpSet = new HNSet();
+						
+						helpSubSet.add(i);
+						helpSet = result.getInputSet(j);
+						helpSet.add(helpSubSet);
+						result.setInputSet(j, helpSet);
 					}
 				}
 			}
@@ -1222,26 +1742,41 @@ public class AutoHMPP extends HMPP {
 			}
 		}
 		result.setConnections(numberOfConnections);*/
+		/* The long distance dependencies can change with any set of the net,
+		 * so the changed events are found comparing the final sets */
+		if (previous != null) {
+			HMPPHeuristicsNet previousNet = previous.getNet();
+			BitSet changedEvents = new BitSet(eventsSize);
+			for (int i = 0; i < eventsSize; i++) {
+				if (!isSameSet(result.getInputSet(i), previousNet.getInputSet(i)) ||
+					!isSameSet(result.getOutputSet(i), previousNet.getOutputSet(i))) {
+					changedEvents.set(i);
+				}
+			}
+			context.setChangedEvents(changedEvents);
+		}
+		context.setNet(result);
+		
 		int noiseTotal = 0;
-		for (int i = 0; i < noiseCounters.rows(); i++) {
-			for (int j = 0; j < noiseCounters.columns(); j++) {
-				noiseTotal = noiseTotal + (int) noiseCounters.get(i, j);
+		for (int slot = 0; slot < noiseCounters.slots(); slot++) {
+			if (noiseCounters.isUsed(slot)) {
+				noiseTotal = noiseTotal + (int) noiseCounters.valueAt(slot);
 			}
 		}
-
+		
 		/* Step 4 =========================================================== */
 		dbg("Step 4");
 		/* Building the output */
 //		HMPPHeuristicsNet[] population = new HMPPHeuristicsNet[1];
 //		population[0] = result;
-		
+
 //		System.out.println("Input-output set, before disconnection:");
 //		for (int i = 0; i < eventsSize; i++) {
 //			System.out.println(events.get(i) +"  in = "+ result.getInputSet(i));
 //			System.out.println(events.get(i) +" out = "+ result.getOutputSet(i));
 //			System.out.println();
 //		}
-		
+
 //		DTContinuousSemanticsFitness fitness1 = new DTContinuousSemanticsFitness(log);
 //		fitness1.calculate(population);
 //		System.out.println("Continuous semantics fitness = " + population[0].getFitness());
@@ -1252,9 +1787,9 @@ public class AutoHMPP extends HMPP {
 //		System.out.println("=============================================================");
 //		DTImprovedContinuousSemanticsFitness fitness2 = new DTImprovedContinuousSemanticsFitness(log);
 //		fitness2.calculate(population);
-		
+
 //		population[0].disconnectUnusedElements();
-		
+
 //		for (int i = 0; i < dependencyMeasuresAccepted.rows(); i++) {
 //			for (int j = 0; j < dependencyMeasuresAccepted.columns(); j++) {
 //				System.out.print(dependencyMeasuresAccepted.get(i, j) + " ");
@@ -1266,98 +1801,169 @@ public class AutoHMPP extends HMPP {
 		return result;
 	}
 	
-
+	
+	
 	/**
-	 * This method calculates the long distance dependency measure between two
-	 * activities
-	 *  
-	 * @param i the first activity index
-	 * @param j the second activity index
+	 * This method returns the length two loop dependency measure between two
+	 * events (see {@link HeuristicsMeasures#getL2LStart(int)}), once the
+	 * length one loops of the context are accepted
+	 * 
+	 * @param context the context of the evaluation
+	 * @param p the position of the pair of events
 	 * @return the dependency measure
 	 */
-	private double calculateLongDistanceDependencyMeasure(int i, int j) {
-		return ((double) longRangeSuccessionCount.get(i, j) / (events.getEvent(i).getOccurrenceCount() + parameters.getDependencyDivisor())) -
-				(5.0 * (Math.abs(events.getEvent(i).getOccurrenceCount() - events.getEvent(j).getOccurrenceCount())) / events.getEvent(i).getOccurrenceCount());
-
+	private double calculateL2LDependencyMeasure(MiningContext context, int p) {
+		HMPPParameters parameters = context.getParameters();
+		HeuristicsMeasures measures = context.getMeasures();
+		boolean[] L1Lrelation = context.getL1Lrelation();
+		int i = measures.getL2LSource(p);
+		int j = measures.getL2LReturnSource(p);
+		/* Problem if, for instance, we have a A -> A loop in parallel with B
+		 * the |A > B > A|-value can be high without a L2L-loop
+		 */
+		if ((L1Lrelation[i] && measures.getL2LSuccessions(p) >= parameters.getPositiveObservationsThreshold()) ||
+			(L1Lrelation[j] && measures.getL2LPrecedences(p) >= parameters.getPositiveObservationsThreshold())) {
+			return 0.0;
+		} else {
+			return measures.getL2LDependencyMeasure(p);
+		}
 	}
 	
 	
 	/**
-	 * This method calculates the length one loop between two activities
-	 *  
-	 * @param i the activity index
-	 * @return the dependency measure
+	 * This method accepts a length two loop between the activities A and B:
+	 * the edge from the complete event of A to the start event of B and the
+	 * one from the complete event of B to the start event of A. Each event of
+	 * the loop is related with the same event of the other activity
+	 * 
+	 * @param context the context of the evaluation
+	 * @param p the position of the loop
+	 * @param measure the measure of the loop
 	 */
-	private double calculateL1LDependencyMeasure(int i) {
-		return ((double) directSuccessionCount.get(i, i)) /
-				(directSuccessionCount.get(i, i) + parameters.getDependencyDivisor());
+	private void acceptL2L(MiningContext context, int p, double measure) {
+		HeuristicsMeasures measures = context.getMeasures();
+		SparseDoubleMatrix dependencyMeasuresAccepted = context.getDependencyMeasuresAccepted();
+		int[] L2Lrelation = context.getL2Lrelation();
+		HNSubSet[] inputSet = context.getInputSet();
+		HNSubSet[] outputSet = context.getOutputSet();
+		int completeA = measures.getL2LSource(p);
+		int startB = measures.getL2LNeighbour(p);
+		int completeB = measures.getL2LReturnSource(p);
+		int startA = measures.getL2LReturnTarget(p);
+		
+		dependencyMeasuresAccepted.set(completeA, startB, measure);
+		outputSet[completeA].add(startB);
+		inputSet[startB].add(completeA);
+		dependencyMeasuresAccepted.set(completeB, startA, measure);
+		outputSet[completeB].add(startA);
+		inputSet[startA].add(completeB);
+		
+		L2Lrelation[completeA] = completeB;
+		L2Lrelation[completeB] = completeA;
+		L2Lrelation[startA] = startB;
+		L2Lrelation[startB] = startA;
 	}
 	
 	
-
 	/**
-	 * This method calculates the length two loop distance dependency measure
-	 * between two activities
-	 *  
-	 * @param i the first activity index
-	 * @param j the second activity index
-	 * @return the dependency measure
+	 * This method checks if the OR-subsets of the input (or output) set of an
+	 * event, built with the previous context, would be built again in the
+	 * same way with the current one: the connections of the event must be
+	 * the same, and no AND measure among them may be above one AND threshold
+	 * and not above the other one
+	 * 
+	 * @param context the context of the current evaluation
+	 * @param previous the context of the previous evaluation
+	 * @param ownerE the event index
+	 * @param input true for the input set, false for the output set
+	 * @return true if the OR-subsets of the previous context can be kept
 	 */
-	private double calculateL2LDependencyMeasure(int i, int j) {
-		/* Problem if, for instance, we have a A -> A loop in parallel with B
-		 * the |A > B > A|-value can be high without a L2L-loop
-		 */
-		if ((L1Lrelation[i] && succession2Count.get(i, j) >= parameters.getPositiveObservationsThreshold()) ||
-			(L1Lrelation[j] && succession2Count.get(j, i) >= parameters.getPositiveObservationsThreshold())) {
-			return 0.0;
-		} else {
-//			LogEvent leI = events.get(i);
-//			LogEvent leJ = events.get(j);
-//			int transitionIndexI = transitions.indexOf(leI.getModelElementName());
-//			int transitionIndexJ = transitions.indexOf(leJ.getModelElementName());
-			return ((double) succession2Count.get(i, j) + succession2Count.get(j, i)) /
-					(succession2Count.get(i, j) + 
-					 succession2Count.get(j, i) + 
-					 /*(parallelCount.get(transitionIndexI, transitionIndexJ) * parameters.getIntervalsOverlapMultiplier()) +*/ 
-					 parameters.getDependencyDivisor());
+	private boolean isOrSetReusable(MiningContext context, MiningContext previous, int ownerE, boolean input) {
+		HNSubSet set = (input)? context.getInputSet()[ownerE] : context.getOutputSet()[ownerE];
+		HNSubSet previousSet = (input)? previous.getInputSet()[ownerE] : previous.getOutputSet()[ownerE];
+		if (!isSameSubSet(set, previousSet)) {
+			return false;
 		}
+		double andThreshold = context.getAndThreshold();
+		double previousAndThreshold = previous.getAndThreshold();
+		if (andThreshold == previousAndThreshold) {
+			return true;
+		}
+		HeuristicsMeasures measures = context.getMeasures();
+		for (int a = 0; a < set.size(); a++) {
+			for (int b = 0; b < set.size(); b++) {
+				double andValue = (input)?
+						measures.getAndInMeasure(ownerE, set.get(a), set.get(b)) :
+						measures.getAndOutMeasure(ownerE, set.get(a), set.get(b));
+				if ((andValue > andThreshold) != (andValue > previousAndThreshold)) {
+					return false;
+				}
+			}
+		}
+		return true;
 	}
 	
-
+	
 	/**
-	 * This method calculates the dependency measure between two activities
-	 *  
-	 * @param i the first activity index
-	 * @param j the second activity index
-	 * @return the dependency measure
+	 * This method checks if two subsets have the same elements in the same
+	 * order
+	 * 
+	 * @param a the first subset
+	 * @param b the second subset
+	 * @return true if the subsets are the same
 	 */
-	private double calculateDependencyMeasure(int i, int j) {
-		LogEvent leI = events.get(i);
-		LogEvent leJ = events.get(j);
-		boolean sameEvent = leI.getModelElementName().equals(leJ.getModelElementName());
-		boolean isIStart = leI.getEventType().equals("start");
-		boolean isIFinish = leI.getEventType().equals("complete");
-		boolean isJStart = leJ.getEventType().equals("start");
-		boolean isJFinish = leJ.getEventType().equals("complete");
-		if (sameEvent && isIStart && isJFinish) {
-			return 1.0;
-		} else if ((!sameEvent) && isIFinish && isJStart) {
-			int transitionIndexI = transitions.indexOf(leI.getModelElementName());
-			int transitionIndexJ = transitions.indexOf(leJ.getModelElementName());
-			
-			double calc;
-			/* TODO Check the use of direct succession or simply succession */
-			calc = (directSuccessionCount.get(i, j) - directSuccessionCount.get(j, i)) / 
-				   (directSuccessionCount.get(i, j) + 
-					directSuccessionCount.get(j, i) + 
-					(parallelCount.get(transitionIndexI, transitionIndexJ) * parameters.getIntervalsOverlapMultiplier()) + 
-					parameters.getDependencyDivisor());
-			return calc;
-		} else {
-			return 0.0;
+	private static boolean isSameSubSet(HNSubSet a, HNSubSet b) {
+		if (a.size() != b.size()) {
+			return false;
+		}
+		for (int i = 0; i < a.size(); i++) {
+			if (a.get(i) != b.get(i)) {
+				return false;
+			}
 		}
+		return true;
 	}
-
+	
+	
+	/**
+	 * This method checks if two sets have the same subsets in the same order
+	 * 
+	 * @param a the first set
+	 * @param b the second set
+	 * @return true if the sets are the same
+	 */
+	private static boolean isSameSet(HNSet a, HNSet b) {
+		if (a.size() != b.size()) {
+			return false;
+		}
+		for (int i = 0; i < a.size(); i++) {
+			if (!isSameSubSet(a.get(i), b.get(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	
+	/**
+	 * This method returns a copy of a set, with copies of its subsets
+	 * 
+	 * @param set the set to copy
+	 * @return the copy
+	 */
+	private static HNSet copyOf(HNSet set) {
+		HNSet copy = new HNSet();
+		for (int i = 0; i < set.size(); i++) {
+			HNSubSet subSet = set.get(i);
+			HNSubSet subSetCopy = new HNSubSet();
+			for (int j = 0; j < subSet.size(); j++) {
+				subSetCopy.add(subSet.get(j));
+			}
+			copy.add(subSetCopy);
+		}
+		return copy;
+	}
+	
 	
 	/**
 	 * This method builds the or input set for the event
@@ -1366,7 +1972,7 @@ public class AutoHMPP extends HMPP {
 	 * @param inputSet the input events set
 	 * @return the corrent input set
 	 */
-	private HNSet buildOrInputSets(int ownerE, HNSubSet inputSet) {
+	private HNSet buildOrInputSets(MiningContext context, int ownerE, HNSubSet inputSet) {
 		HNSet h = new HNSet();
 		int currentE;
 		
@@ -1381,7 +1987,7 @@ public class AutoHMPP extends HMPP {
 			minimalOneOrWelcome = false;
 			for (int ihI = 0; ihI < h.size(); ihI++) {
 				helpTreeSet = h.get(ihI);
-				if (xorInWelcome(ownerE, currentE, helpTreeSet)) {
+				if (xorInWelcome(context, ownerE, currentE, helpTreeSet)) {
 					minimalOneOrWelcome = true;
 					helpTreeSet.add(currentE);
 				}
@@ -1392,24 +1998,24 @@ public class AutoHMPP extends HMPP {
 				h.add(helpTreeSet);
 			}
 		}
-
+		
 		// look to the (A v B) & (B v C) example with B A C in the inputSet;
 		// result is [AB] [C]
 		// repeat to get [AB] [BC]
-
+		
 		for (int isetE = 0; isetE < inputSet.size(); isetE++) {
 			currentE = inputSet.get(isetE);
 			for (int ihI = 0; ihI < h.size(); ihI++) {
 				helpTreeSet = h.get(ihI);
-				if (xorInWelcome(ownerE, currentE, helpTreeSet)) {
+				if (xorInWelcome(context, ownerE, currentE, helpTreeSet)) {
 					helpTreeSet.add(currentE);
 				}
 			}
 		}
 		return h;
 	}
-
-
+	
+	
 	/**
 	 * This method builds the or output set for the event
 	 * 
@@ -1417,10 +2023,10 @@ public class AutoHMPP extends HMPP {
 	 * @param outputSEt the output events set
 	 * @return the corrent output set
 	 */
-	private HNSet buildOrOutputSets(int ownerE, HNSubSet outputSet) {
+	private HNSet buildOrOutputSets(MiningContext context, int ownerE, HNSubSet outputSet) {
 		HNSet h = new HNSet();
 		int currentE;
-
+		
 		// using the welcome method,
 		// distribute elements of TreeSet inputSet over the elements of HashSet h
 		boolean minimalOneOrWelcome;
@@ -1431,7 +2037,7 @@ public class AutoHMPP extends HMPP {
 			minimalOneOrWelcome = false;
 			for (int ihI = 0; ihI < h.size(); ihI++) {
 				helpTreeSet = h.get(ihI);
-				if (xorOutWelcome(ownerE, currentE, helpTreeSet)) {
+				if (xorOutWelcome(context, ownerE, currentE, helpTreeSet)) {
 					minimalOneOrWelcome = true;
 					helpTreeSet.add(currentE);
 				}
@@ -1442,7 +2048,7 @@ public class AutoHMPP extends HMPP {
 				h.add(helpTreeSet);
 			}
 		}
-
+		
 		// look to the (A v B) & (B v C) example with B A C in the inputSet;
 		// result is [AB] [C]
 		// repeat to get [AB] [BC]
@@ -1450,16 +2056,16 @@ public class AutoHMPP extends HMPP {
 			currentE = outputSet.get(isetE);
 			for (int ihI = 0; ihI < h.size(); ihI++) {
 				helpTreeSet = h.get(ihI);
-				if (xorOutWelcome(ownerE, currentE, helpTreeSet)) {
+				if (xorOutWelcome(context, ownerE, currentE, helpTreeSet)) {
 					helpTreeSet.add(currentE);
 				}
 			}
 		}
-
+		
 		return h;
 	}
-
-
+	
+	
 	/**
 	 * This method determines if two elements are in a XOR split
 	 * 
@@ -1468,24 +2074,21 @@ public class AutoHMPP extends HMPP {
 	 * @param h the elements subset
 	 * @return true if the elements are in a XOR splir
 	 */
-	private boolean xorInWelcome(int ownerE, int newE, HNSubSet h) {
+	private boolean xorInWelcome(MiningContext context, int ownerE, int newE, HNSubSet h) {
 		boolean welcome = true;
 		int oldE;
 		double andValue;
-
+		
 		for (int ihI = 0; ihI < h.size(); ihI++) {
 			oldE = h.get(ihI);
-			andValue = andInMeasureF(ownerE, oldE, newE);
-			if (newE != oldE) {
-				andInMeasuresAll.set(newE, oldE, andValue);
-			}
-			if (andValue > parameters.getAndThreshold()) {
+			andValue = context.getMeasures().getAndInMeasure(ownerE, oldE, newE);
+			if (andValue > context.getParameters().getAndThreshold()) {
 				welcome = false;
 			}
 		}
 		return welcome;
 	}
-
+	
 	
 	/**
 	 * This method determines if two elements are in a XOR join
@@ -1495,18 +2098,15 @@ public class AutoHMPP extends HMPP {
 	 * @param h the elements subset
 	 * @return true if the elements are in a XOR splir
 	 */
-	private boolean xorOutWelcome(int ownerE, int newE, HNSubSet h) {
+	private boolean xorOutWelcome(MiningContext context, int ownerE, int newE, HNSubSet h) {
 		boolean welcome = true;
 		int oldE;
 		double andValue;
-
+		
 		for (int ihI = 0; ihI < h.size(); ihI++) {
 			oldE = h.get(ihI);
-			andValue = andOutMeasureF(ownerE, oldE, newE);
-			if (newE != oldE) {
-				andOutMeasuresAll.set(newE, oldE, andValue);
-			}
-			if (andValue > parameters.getAndThreshold()) {
+			andValue = context.getMeasures().getAndOutMeasure(ownerE, oldE, newE);
+			if (andValue > context.getParameters().getAndThreshold()) {
 				welcome = false;
 			}
 		}
@@ -1514,58 +2114,6 @@ public class AutoHMPP extends HMPP {
 	}
 	
 	
-	/**
-	 * This method determines if two elements are in a AND split
-	 * 
-	 */
-	private double andInMeasureF(int ownerE, int oldE, int newE) {
-		double toret = 0.0;
-		if (ownerE == newE) {
-			toret = 0.;
-		/* TODO: verify if it's correct to not consider this case */
-//		} else if ((directSuccessionCount.get(oldE, newE) < parameters.getPositiveObservationsThreshold()) ||
-//				(directSuccessionCount.get(newE, oldE) < parameters.getPositiveObservationsThreshold())) {
-//			toret = 0.;
-		} else {
-			int pcIndexNewE = transitions.indexOf(events.get(newE).getModelElementName());
-			int pcIndexOldE = transitions.indexOf(events.get(oldE).getModelElementName());
-			toret = ((double) directSuccessionCount.get(oldE, newE) + 
-					         directSuccessionCount.get(newE, oldE) + 
-					         (parallelCount.get(pcIndexNewE, pcIndexOldE) * parameters.getIntervalsOverlapMultiplier())) /
-					// relevantInObservations;
-					(directSuccessionCount.get(newE, ownerE) + 
-					 directSuccessionCount.get(oldE, ownerE) + 1);
-		}
-		return toret;
-	}
-
-	
-	/**
-	 * This method determines if two elements are in a AND join
-	 * 
-	 */
-	private double andOutMeasureF(int ownerE, int oldE, int newE) {
-		double toret = 0.0;
-		if (ownerE == newE) {
-			toret = 0.;
-		/* TODO: verify if it's correct to not consider this case */
-//		} else if ((directSuccessionCount.get(oldE, newE) < parameters.getPositiveObservationsThreshold()) ||
-//				(directSuccessionCount.get(newE, oldE) < parameters.getPositiveObservationsThreshold())) {
-//			toret = 0.;
-		} else {
-			int pcIndexNewE = transitions.indexOf(events.get(newE).getModelElementName());
-			int pcIndexOldE = transitions.indexOf(events.get(oldE).getModelElementName());
-			toret = ((double) directSuccessionCount.get(oldE, newE) + 
-					         directSuccessionCount.get(newE, oldE) + 
-					         (parallelCount.get(pcIndexNewE, pcIndexOldE) * parameters.getIntervalsOverlapMultiplier())) /
-					// relevantOutObservations;
-					(directSuccessionCount.get(ownerE, newE) + 
-					 directSuccessionCount.get(ownerE, oldE) + 1);
-		}
-		return toret;
-	}
-	
-	
 	/**
 	 * 
 	 * @param x
@@ -1580,17 +2128,17 @@ public class AutoHMPP extends HMPP {
 		//double max, min, minh;
 		boolean escapeToEndPossible;
 		int minNum;
-
+		
 		//          [A B]
 		// X        [C]     ---> Y
 		//          [D B F]
-
+		
 		// build subset h = [A B C D E F] of all elements of outputSetX
 		// search for minNum of elements of min subset with X=B as element: [A B] , minNum = 2
-
+		
 		outputSetX = result.getOutputSet(x);
 		outputSetY = result.getOutputSet(y);
-
+		
 		HNSubSet h = new HNSubSet();
 		minNum = 1000;
 		for (int i = 0; i < outputSetX.size(); i++) {
@@ -1603,7 +2151,7 @@ public class AutoHMPP extends HMPP {
 				h.add(outputSubSetX.get(j));
 			}
 		}
-
+		
 		if (alreadyVisit.get(x)) {
 			return false;
 		} else if (x == y) {
@@ -1617,7 +2165,7 @@ public class AutoHMPP extends HMPP {
 		} else if (h.contains(y) && (minNum == 1)) {
 			// x is unique connected with y
 			return false;
-		} else if (events.get(x).getEventType().equals(events.get(y).getEventType())) {
+		} else if (typeOf[x] == typeOf[y]) {
 			// even here the we are in the same event!
 			return false;
 		} else {
@@ -1633,7 +2181,7 @@ public class AutoHMPP extends HMPP {
 					if (escapeToEndPossibleF(element, y, hulpAV, result)) {
 						escapeToEndPossible = true;
 					}
-
+				
 				}
 				if (!escapeToEndPossible) {
 					return false;
@@ -1662,8 +2210,8 @@ public class AutoHMPP extends HMPP {
 	public void setBasicRelationsMade(boolean val) {
 		basicRelationsMade = val;
 	}
-	
-	
+
+
 //	/**
 //	 * This method mines and returns the cost of the hypothesis built with the
 //	 * given parameters.
@@ -1821,9 +2369,8 @@ public class AutoHMPP extends HMPP {
 	 * the biggest network (whose value will be used to normalize the value
 	 * between 0 and 1).
 	 * 
-	 * @param log
 	 */
-	private void calculateGreatestNetworkSize(LogReader log) {
+	private void calculateGreatestNetworkSize() {
 		dbgStart();
 		HMPPParameters p = new HMPPParameters();
 		p.setDependencyThreshold(0.);
@@ -1836,9 +2383,9 @@ public class AutoHMPP extends HMPP {
 		p.setUseAllConnectedHeuristics(true);
 		p.setUseLongDistanceDependency(true);
 		
-		HMPPHeuristicsNet greatestResult = makeHeuristicsRelations(log, p);
+		HMPPHeuristicsNet greatestResult = makeHeuristicsRelations(p);
 		greatestNetworkSize = Utils.calculateNetworkSize(greatestResult);
-		
+
 //		dbg(new Integer(log.getInstances().size()).toString());
 //		dbg(p.toString());
 		dbgEnd();
@@ -1931,8 +2478,8 @@ public class AutoHMPP extends HMPP {
 			CALLS_DEEP--;
 		}
 	}
-
-
+	
+	
 	/**
 	 * @param key
 	 * @param parametersCosts
@@ -1951,8 +2498,8 @@ public class AutoHMPP extends HMPP {
 	public HashMap<String, ArrayList<Double>> getParametersCosts() {
 		return parametersCosts;
 	}
-
-
+	
+	
 	/**
 	 * @param key
 	 * @return
@@ -1967,6 +2514,96 @@ public class AutoHMPP extends HMPP {
 	}
 	
 	
+	public EncodedLog getEncodedLog() {
+		return encodedLog;
+	}
+	
+	
+	public synchronized TraceVariants getTraceVariants() {
+		if (variants == null) {
+			variants = TraceVariants.fromLog(encodedLog);
+		}
+		return variants;
+	}
+	
+	
+	public TraceVariants getSearchVariants() {
+		return searchVariants;
+	}
+	
+	
+	public boolean isSampling() {
+		return sampling;
+	}
+	
+	
+	public void setSampling(boolean sampling) {
+		this.sampling = sampling;
+	}
+	
+	
+	public double getSamplingMargin() {
+		return samplingMargin;
+	}
+	
+	
+	public void setSamplingMargin(double samplingMargin) {
+		this.samplingMargin = samplingMargin;
+	}
+	
+	
+	public long getSamplingSeed() {
+		return samplingSeed;
+	}
+	
+	
+	public void setSamplingSeed(long samplingSeed) {
+		this.samplingSeed = samplingSeed;
+	}
+	
+	
+	public boolean isFitnessCheck() {
+		return fitnessCheck;
+	}
+	
+	
+	/**
+	 * This method enables the check of each fitness calculated by the search
+	 * threads: the fitness of a net built incrementally is compared with the
+	 * one of a full replay and, if the log has been read by ProM (see
+	 * {@link #mine(LogReader)}) and is not sampled, each fitness is compared
+	 * with the one of ProM's continuous semantics replay. The check replays
+	 * each net more than once, so it is meant for testing.
+	 * 
+	 * @param fitnessCheck true to check each fitness
+	 */
+	public void setFitnessCheck(boolean fitnessCheck) {
+		this.fitnessCheck = fitnessCheck;
+	}
+	
+	
+	public int getRescoredCandidates() {
+		return rescoredCandidates;
+	}
+	
+	
+	public void setRescoredCandidates(int rescoredCandidates) {
+		this.rescoredCandidates = rescoredCandidates;
+	}
+	
+	
+	public int getMaxBreakpoints() {
+		return maxBreakpoints;
+	}
+	
+	
+	public void setMaxBreakpoints(int maxBreakpoints) {
+		this.maxBreakpoints = maxBreakpoints;
+		/* the current discretization may have a different cap */
+		discretizedParameters = null;
+	}
+	
+	
 	public int getGreatestNetworkSize() {
 		return greatestNetworkSize;
 	}
@@ -1975,27 +2612,67 @@ public class AutoHMPP extends HMPP {
 	public HMPPParameters getLastUsedParameters() {
 		return parameters;
 	}
-
-
+	
+	
 	public void setMaxPlateauStep(int max) {
 		maxPlateauSteps = max;
 	}
-
-
+	
+	
 	public int getMaxPlateauStep() {
 		return maxPlateauSteps;
 	}
-
+	
 	
 	public int getNumberOfSearchThread() {
 		return numberOfSearchThread;
 	}
-
-
+	
+	
 	public void setNumberOfSearchThread(int numberOfSearchThread) {
 		this.numberOfSearchThread = numberOfSearchThread;
 	}
 	
+	
+	public int getNumberOfCountingThread() {
+		return numberOfCountingThread;
+	}
+	
+	
+	public void setNumberOfCountingThread(int numberOfCountingThread) {
+		this.numberOfCountingThread = numberOfCountingThread;
+	}
+	
+	
+	public double getDriftTolerance() {
+		return driftTolerance;
+	}
+	
+	
+	public void setDriftTolerance(double driftTolerance) {
+		this.driftTolerance = driftTolerance;
+	}
+	
+	
+	public int getWindowSize() {
+		return windowSize;
+	}
+	
+	
+	public void setWindowSize(int windowSize) {
+		this.windowSize = windowSize;
+	}
+	
+	
+	public long getWindowDuration() {
+		return windowDuration;
+	}
+	
+	
+	public void setWindowDuration(long windowDuration) {
+		this.windowDuration = windowDuration;
+	}
+	
 	public int getMaxExecutionSteps() {
 		return maxSearchSteps;
 	}
@@ -0,0 +1,140 @@
+package it.processmining.autohmpp.miner;
+
+/**
+ * This class is an immutable snapshot of the discretization of all the
+ * parameters: for each parameter family, the values for which the mined net
+ * changes, as a sorted array of distinct primitive values. The snapshot is
+ * built once, before the search threads start, and then shared by all of
+ * them without any locking; the arrays returned by {@link #get(int)} must
+ * not be modified.
+ *
+ * The snapshot also keeps the time spent to discretize each family and, when
+ * the number of values is capped, the number of distinct values the family
+ * had: each dropped value is a net merged into the one of the breakpoint
+ * below it.
+ *
+ * @author Andrea Burattin
+ * @version 0.1
+ */
+public class DiscretizedParameters {
+	
+	public static final int DEPENDENCY_THRESHOLD = 0;
+	public static final int POSITIVE_OBSERVATIONS = 1;
+	public static final int RELATIVE_TO_BEST = 2;
+	public static final int AND_THRESHOLD = 3;
+	public static final int LENGTH_ONE_LOOP = 4;
+	public static final int LENGTH_TWO_LOOP = 5;
+	public static final int LONG_DISTANCE = 6;
+	/** The number of parameter families */
+	public static final int FAMILIES = 7;
+	
+	private static final String[] NAMES = new String[] {
+		"dependency threshold",
+		"positive observations",
+		"relative to best",
+		"and threshold",
+		"length one loop",
+		"length two loop",
+		"long distance dep"
+	};
+	
+	private final double[][] values;
+	private final int[] distinct;
+	private final long[] times;
+	
+	
+	/**
+	 * Class constructor
+	 *
+	 * @param values the discretized values of each family
+	 * @param distinct the number of distinct values of each family, before
+	 * the cap
+	 * @param times the milliseconds spent to discretize each family
+	 */
+	DiscretizedParameters(double[][] values, int[] distinct, long[] times) {
+		this.values = values.clone();
+		this.distinct = distinct.clone();
+		this.times = times.clone();
+	}
+	
+	
+	/**
+	 * This method returns the discretized values of a parameter family
+	 *
+	 * @param family the family index (see the constants of this class)
+	 * @return the possible values of the parameter, in ascending order
+	 */
+	public double[] get(int family) {
+		return values[family];
+	}
+	
+	
+	/**
+	 * This method returns the number of parameter families
+	 *
+	 * @return the number of families
+	 */
+	public int size() {
+		return values.length;
+	}
+	
+	
+	/**
+	 * This method returns the number of distinct values of a parameter
+	 * family, before the cap on the number of breakpoints
+	 *
+	 * @param family the family index
+	 * @return the number of distinct values
+	 */
+	public int getDistinctSize(int family) {
+		return distinct[family];
+	}
+	
+	
+	/**
+	 * This method returns the number of distinct nets (along a single
+	 * parameter) merged by the cap on the number of breakpoints
+	 *
+	 * @param family the family index
+	 * @return the number of distinct values dropped by the cap
+	 */
+	public int getMergedSize(int family) {
+		return distinct[family] - values[family].length;
+	}
+	
+	
+	/**
+	 * This method returns the time spent to discretize a parameter family
+	 *
+	 * @param family the family index
+	 * @return the discretization time, in milliseconds
+	 */
+	public long getTime(int family) {
+		return times[family];
+	}
+	
+	
+	/**
+	 * This method returns the name of a parameter family
+	 *
+	 * @param family the family index
+	 * @return the name of the family
+	 */
+	public static String getName(int family) {
+		return NAMES[family];
+	}
+	
+	
+	@Override
+	public String toString() {
+		String s = "";
+		for (int i = 0; i < values.length; i++) {
+			s += ((i > 0)? ", " : "") + NAMES[i] + ": " + values[i].length + " values";
+			if (distinct[i] > values[i].length) {
+				s += " (" + getMergedSize(i) + " merged)";
+			}
+			s += " in " + times[i] + " ms";
+		}
+		return s;
+	}
+}
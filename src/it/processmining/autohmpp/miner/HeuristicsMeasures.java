@@ -0,0 +1,1017 @@
+package it.processmining.autohmpp.miner;
+
+import it.processmining.autohmpp.log.EventDictionary;
+import it.processmining.autohmpp.matrix.SparseIntMatrix;
+import it.processmining.autohmpp.matrix.SymmetricIntMatrix;
+import it.processmining.hmpp.models.HMPPParameters;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * This class holds all the measures of the heuristics relations which do not
+ * depend on the thresholds: the dependency measures (with the best input and
+ * output of each event), the loops measures, the long distance measures and
+ * the AND measures. They depend only on the counts of the log and on the
+ * dependency divisor and the intervals overlap multiplier, so they are
+ * computed once and then shared, without any locking, by all the evaluations
+ * of the heuristics relations, which only compare them with the thresholds.
+ *
+ * The candidate edges of the net are numbered: the dependencies (and the
+ * length two loops) of each event are in a range of positions, event after
+ * event. For each threshold, the edges are indexed by the value compared
+ * with it (see {@link ThresholdIndex}), so the edges passing all the
+ * thresholds of an evaluation are selected scanning only the shortest range
+ * of edges passing one of them.
+ *
+ * Just the pairs of events observed at any distance have their own long
+ * distance measure: the measure of the other pairs depends only on the
+ * occurrences of the two events, so it is computed for groups of events
+ * with the same number of occurrences. The AND measures are computed from
+ * the counts when asked, for the pairs of events together in a set. So no
+ * table covers all the pairs of events.
+ *
+ * @author Andrea Burattin
+ * @version 0.1
+ */
+public class HeuristicsMeasures {
+	
+	private int eventsSize;
+	private double dependencyDivisor;
+	private double intervalsOverlapMultiplier;
+	
+	/* The counts of the log (only read) */
+	private SparseIntMatrix directSuccessionCount;
+	
+	/* The candidate dependencies of each event (see getDependencyStart): the
+	 * events of the edge, its measure, its number of direct successions and
+	 * the distance of its measure from the best output of its source */
+	private int[] dependencyOffsets;
+	private int[] dependencySources;
+	private int[] dependencyTargets;
+	private double[] dependencyMeasures;
+	private int[] dependencyObservations;
+	private double[] dependencyDistances;
+	private ThresholdIndex dependenciesByMeasure;
+	private ThresholdIndex dependenciesByObservations;
+	private ThresholdIndex dependenciesByDistance;
+	private double[] bestInputMeasure;
+	private double[] bestOutputMeasure;
+	private int[] bestInputEvent;
+	private int[] bestOutputEvent;
+	
+	private double[] L1LdependencyMeasures;
+	private int[] L1Lobservations;
+	private ThresholdIndex L1LbyMeasure;
+	private ThresholdIndex L1LbyObservations;
+	/* The pairs of activities observed in a A > B > A pattern (see
+	 * getL2LStart), with the events of their two edges, their measure and the
+	 * number of observations in each direction */
+	private int[] L2Loffsets;
+	private int[] L2Lsources;
+	private int[] L2Lneighbours;
+	private int[] L2LreturnSources;
+	private int[] L2LreturnTargets;
+	private double[] L2LdependencyMeasures;
+	private int[] L2Lsuccessions;
+	private int[] L2Lprecedences;
+	private ThresholdIndex L2LbyMeasure;
+	private ThresholdIndex L2LbyObservations;
+	
+	/* The long distance measures of the pairs observed at any distance, row
+	 * after row as the cells of the counts (see getLongDistanceTargets), and
+	 * the events grouped by number of occurrences, the groups in ascending
+	 * order of occurrences (see getOccurrenceGroup) */
+	private SparseIntMatrix longRangeSuccessionCount;
+	private int[] eventOccurrences;
+	private int[] longDistanceOffsets;
+	private double[] longDistanceMeasures;
+	private ThresholdIndex longDistanceByMeasure;
+	private int[] groupOf;
+	private int[] groupOccurrences;
+	private int[] groupOffsets;
+	private int[] groupMembers;
+	/* The counts of the overlapping activities (only read), for the
+	 * numerator of the AND measures */
+	private SymmetricIntMatrix parallelCount;
+	private int[] transitionOf;
+	
+	
+	/**
+	 * Class constructor, which computes all the measures
+	 *
+	 * @param statistics the counts of the log (not modified)
+	 * @param parameters the parameters with the dependency divisor and the
+	 * intervals overlap multiplier (the thresholds are not used)
+	 */
+	public HeuristicsMeasures(LogStatistics statistics, HMPPParameters parameters) {
+		EventDictionary dictionary = statistics.getDictionary();
+		eventsSize = dictionary.getEventsSize();
+		dependencyDivisor = parameters.getDependencyDivisor();
+		intervalsOverlapMultiplier = parameters.getIntervalsOverlapMultiplier();
+		directSuccessionCount = statistics.getDirectSuccessionCount();
+		parallelCount = statistics.getParallelCount();
+		
+		transitionOf = new int[eventsSize];
+		boolean[] isStart = new boolean[eventsSize];
+		boolean[] isComplete = new boolean[eventsSize];
+		int[] partnerOf = new int[eventsSize];
+		for (int i = 0; i < eventsSize; i++) {
+			transitionOf[i] = dictionary.getTransitionOfEvent(i);
+			isStart[i] = dictionary.isStartEvent(i);
+			isComplete[i] = dictionary.isCompleteEvent(i);
+			partnerOf[i] = isStart[i]? dictionary.getCompleteEvent(transitionOf[i]) : -1;
+		}
+		
+		calculateDependencyMeasures(statistics.getParallelCount(), transitionOf, isStart, isComplete, partnerOf);
+		calculateBestRelations(partnerOf);
+		indexDependencies();
+		calculateLoopMeasures(statistics.getSuccession2Count(), dictionary);
+		groupEventsByOccurrences(statistics.getEventOccurrences());
+		calculateLongDistanceMeasures(statistics.getLongRangeSuccessionCount());
+	}
+	
+	
+	/**
+	 * This method checks if the measures are computed with the dependency
+	 * divisor and the intervals overlap multiplier of the given parameters
+	 *
+	 * @param parameters the parameters
+	 * @return true if the measures hold for the given parameters
+	 */
+	public boolean isComputedWith(HMPPParameters parameters) {
+		return dependencyDivisor == parameters.getDependencyDivisor() &&
+				intervalsOverlapMultiplier == parameters.getIntervalsOverlapMultiplier();
+	}
+	
+	
+	/**
+	 * This method calculates the dependency measure between each event and
+	 * each of its candidates
+	 */
+	private void calculateDependencyMeasures(SymmetricIntMatrix parallelCount, int[] transitionOf, boolean[] isStart, boolean[] isComplete, int[] partnerOf) {
+		int[][] candidates = new int[eventsSize][];
+		dependencyOffsets = new int[eventsSize + 1];
+		for (int i = 0; i < eventsSize; i++) {
+			candidates[i] = getCandidates(i, partnerOf[i]);
+			dependencyOffsets[i + 1] = dependencyOffsets[i] + candidates[i].length;
+		}
+		
+		int edges = dependencyOffsets[eventsSize];
+		dependencySources = new int[edges];
+		dependencyTargets = new int[edges];
+		dependencyMeasures = new double[edges];
+		dependencyObservations = new int[edges];
+		for (int i = 0; i < eventsSize; i++) {
+			for (int k = 0; k < candidates[i].length; k++) {
+				int p = dependencyOffsets[i] + k;
+				int j = candidates[i][k];
+				dependencySources[p] = i;
+				dependencyTargets[p] = j;
+				dependencyObservations[p] = directSuccessionCount.get(i, j);
+				boolean sameEvent = transitionOf[i] == transitionOf[j];
+				if (sameEvent && isStart[i] && isComplete[j]) {
+					dependencyMeasures[p] = 1.0;
+				} else if ((!sameEvent) && isComplete[i] && isStart[j]) {
+					/* TODO Check the use of direct succession or simply succession */
+					dependencyMeasures[p] = ((double) dependencyObservations[p] - directSuccessionCount.get(j, i)) /
+							(dependencyObservations[p] +
+							 directSuccessionCount.get(j, i) +
+							 (parallelCount.get(transitionOf[i], transitionOf[j]) * intervalsOverlapMultiplier) +
+							 dependencyDivisor);
+				} else {
+					dependencyMeasures[p] = 0.0;
+				}
+			}
+		}
+	}
+	
+	
+	/**
+	 * This method returns the candidates for a dependency starting from the
+	 * given event, the only events for which the dependency measure can be
+	 * different from 0: the events directly following it in the log and, for
+	 * a start event, the complete event of the same activity
+	 *
+	 * @param i the event index
+	 * @param partner the complete event of the activity of the event, if it
+	 * is a start one, or -1
+	 * @return the candidate events, in ascending order
+	 */
+	private int[] getCandidates(int i, int partner) {
+		int size = directSuccessionCount.rowSize(i);
+		int[] candidates = new int[size + ((partner >= 0)? 1 : 0)];
+		int c = 0;
+		for (int k = 0; k < size; k++) {
+			int j = directSuccessionCount.columnAt(i, k);
+			if (partner >= 0 && partner < j) {
+				candidates[c++] = partner;
+				partner = -1;
+			}
+			if (j == partner) {
+				partner = -1;
+			}
+			candidates[c++] = j;
+		}
+		if (partner >= 0) {
+			candidates[c++] = partner;
+		}
+		return (c == candidates.length)? candidates : Arrays.copyOf(candidates, c);
+	}
+	
+	
+	/**
+	 * This method searches the best input and output of each event
+	 */
+	private void calculateBestRelations(int[] partnerOf) {
+		bestInputMeasure = new double[eventsSize];
+		bestOutputMeasure = new double[eventsSize];
+		bestInputEvent = new int[eventsSize];
+		bestOutputEvent = new int[eventsSize];
+		double measure;
+		
+		for (int i = 0; i < eventsSize; i++) {
+			bestInputMeasure[i] = -10.0;
+			bestOutputMeasure[i] = -10.0;
+			bestInputEvent[i] = -1;
+			bestOutputEvent[i] = -1;
+		}
+		/* Search the beste ones among the candidates, the first best one is
+		 * kept (the rows are visited in order, so this holds for the inputs
+		 * too) */
+		for (int p = 0; p < dependencyTargets.length; p++) {
+			int i = dependencySources[p];
+			int j = dependencyTargets[p];
+			if (i != j) {
+				measure = dependencyMeasures[p];
+				
+				if (measure > bestOutputMeasure[i] ||
+						(measure == bestOutputMeasure[i] && j < bestOutputEvent[i])) {
+					bestOutputMeasure[i] = measure;
+					bestOutputEvent[i] = j;
+				}
+				if (measure > bestInputMeasure[j]) {
+					bestInputMeasure[j] = measure;
+					bestInputEvent[j] = i;
+				}
+			}
+		}
+		/* All the other pairs have measure 0, so the first of them is the best
+		 * one if no candidate is better */
+		for (int i = 0; i < eventsSize; i++) {
+			int first = 0;
+			while (first < eventsSize && (first == i || isCandidate(i, first, partnerOf))) {
+				first++;
+			}
+			if (first < eventsSize && (0.0 > bestOutputMeasure[i] ||
+					(0.0 == bestOutputMeasure[i] && first < bestOutputEvent[i]))) {
+				bestOutputMeasure[i] = 0.0;
+				bestOutputEvent[i] = first;
+			}
+			first = 0;
+			while (first < eventsSize && (first == i || isCandidate(first, i, partnerOf))) {
+				first++;
+			}
+			if (first < eventsSize && (0.0 > bestInputMeasure[i] ||
+					(0.0 == bestInputMeasure[i] && first < bestInputEvent[i]))) {
+				bestInputMeasure[i] = 0.0;
+				bestInputEvent[i] = first;
+			}
+		}
+	}
+	
+	
+	/**
+	 * This method checks if the event j is a candidate for a dependency
+	 * starting from the event i
+	 */
+	private boolean isCandidate(int i, int j, int[] partnerOf) {
+		return directSuccessionCount.get(i, j) != 0 || partnerOf[i] == j;
+	}
+	
+	
+	/**
+	 * This method indexes the candidate dependencies by the values compared
+	 * with the dependency, the positive observations and the relative to best
+	 * thresholds. Just the observed direct successions can be accepted by the
+	 * thresholds, so the other candidates are not indexed
+	 */
+	private void indexDependencies() {
+		int edges = dependencyTargets.length;
+		dependencyDistances = new double[edges];
+		double[] observations = new double[edges];
+		int[] observed = new int[edges];
+		int size = 0;
+		for (int p = 0; p < edges; p++) {
+			dependencyDistances[p] = bestOutputMeasure[dependencySources[p]] - dependencyMeasures[p];
+			observations[p] = dependencyObservations[p];
+			if (dependencyObservations[p] != 0) {
+				observed[size++] = p;
+			}
+		}
+		observed = Arrays.copyOf(observed, size);
+		dependenciesByMeasure = new ThresholdIndex(dependencyMeasures, observed);
+		dependenciesByObservations = new ThresholdIndex(observations, observed);
+		dependenciesByDistance = new ThresholdIndex(dependencyDistances, observed);
+	}
+	
+	
+	/**
+	 * This method calculates the measures of the loops of length one and of
+	 * length two (the latter before the length one loops are accepted), and
+	 * indexes them
+	 */
+	private void calculateLoopMeasures(SparseIntMatrix succession2Count, EventDictionary dictionary) {
+		L1LdependencyMeasures = new double[eventsSize];
+		L1Lobservations = new int[eventsSize];
+		double[] observations = new double[eventsSize];
+		int[] events = new int[eventsSize];
+		for (int i = 0; i < eventsSize; i++) {
+			L1Lobservations[i] = directSuccessionCount.get(i, i);
+			L1LdependencyMeasures[i] = ((double) L1Lobservations[i]) /
+					(L1Lobservations[i] + dependencyDivisor);
+			observations[i] = L1Lobservations[i];
+			events[i] = i;
+		}
+		L1LbyMeasure = new ThresholdIndex(L1LdependencyMeasures, events);
+		L1LbyObservations = new ThresholdIndex(observations, events);
+		
+		/* Just the pairs of activities observed in a A > B > A pattern have a
+		 * measure different from 0. The pattern is counted from the complete
+		 * event of A to the start event of B, the B > A > B pattern from the
+		 * complete event of B to the start event of A: each pair is stored
+		 * once, in the first of its two cells which is not 0 */
+		int[] startOf = new int[eventsSize];
+		int[] completeOf = new int[eventsSize];
+		for (int i = 0; i < eventsSize; i++) {
+			startOf[i] = dictionary.getStartEvent(dictionary.getTransitionOfEvent(i));
+			completeOf[i] = dictionary.getCompleteEvent(dictionary.getTransitionOfEvent(i));
+		}
+		L2Loffsets = new int[eventsSize + 1];
+		for (int i = 0; i < eventsSize; i++) {
+			L2Loffsets[i + 1] = L2Loffsets[i];
+			for (int k = 0; k < succession2Count.rowSize(i); k++) {
+				if (isL2LPair(succession2Count, i, succession2Count.columnAt(i, k), startOf, completeOf)) {
+					L2Loffsets[i + 1]++;
+				}
+			}
+		}
+		
+		int edges = L2Loffsets[eventsSize];
+		L2Lsources = new int[edges];
+		L2Lneighbours = new int[edges];
+		L2LreturnSources = new int[edges];
+		L2LreturnTargets = new int[edges];
+		L2LdependencyMeasures = new double[edges];
+		L2Lsuccessions = new int[edges];
+		L2Lprecedences = new int[edges];
+		observations = new double[edges];
+		int[] pairs = new int[edges];
+		int p = 0;
+		for (int i = 0; i < eventsSize; i++) {
+			for (int k = 0; k < succession2Count.rowSize(i); k++) {
+				int j = succession2Count.columnAt(i, k);
+				if (!isL2LPair(succession2Count, i, j, startOf, completeOf)) {
+					continue;
+				}
+				L2Lsources[p] = i;
+				L2Lneighbours[p] = j;
+				L2LreturnSources[p] = completeOf[j];
+				L2LreturnTargets[p] = startOf[i];
+				L2Lsuccessions[p] = succession2Count.get(i, j);
+				L2Lprecedences[p] = succession2Count.get(completeOf[j], startOf[i]);
+				L2LdependencyMeasures[p] = ((double) L2Lsuccessions[p] + L2Lprecedences[p]) /
+						(L2Lsuccessions[p] +
+						 L2Lprecedences[p] +
+						 /*(parallelCount.get(transitionIndexI, transitionIndexJ) * parameters.getIntervalsOverlapMultiplier()) +*/
+						 dependencyDivisor);
+				observations[p] = L2Lsuccessions[p] + L2Lprecedences[p];
+				pairs[p] = p;
+				p++;
+			}
+		}
+		L2LbyMeasure = new ThresholdIndex(L2LdependencyMeasures, pairs);
+		L2LbyObservations = new ThresholdIndex(observations, pairs);
+	}
+	
+	
+	/**
+	 * This method checks if a cell of the A &gt; B &gt; A patterns, from the
+	 * complete event of A to the start event of B, is the one storing the
+	 * pair of activities: the cell of the B &gt; A &gt; B patterns is used
+	 * instead if it is not 0 and its row comes first
+	 *
+	 * @param succession2Count the counts of the patterns
+	 * @param i the complete event of A
+	 * @param j the start event of B
+	 * @param startOf the start event of the activity of each event
+	 * @param completeOf the complete event of the activity of each event
+	 * @return true if the pair is stored in the cell (i, j)
+	 */
+	private static boolean isL2LPair(SparseIntMatrix succession2Count, int i, int j, int[] startOf, int[] completeOf) {
+		int returnSource = completeOf[j];
+		return returnSource > i || succession2Count.get(returnSource, startOf[i]) == 0;
+	}
+	
+	
+	/**
+	 * This method groups the events by number of occurrences: the groups are
+	 * in ascending order of occurrences, and the events of a group are in
+	 * ascending order
+	 */
+	private void groupEventsByOccurrences(int[] occurrences) {
+		eventOccurrences = occurrences.clone();
+		long[] keys = new long[eventsSize];
+		for (int i = 0; i < eventsSize; i++) {
+			keys[i] = ((long) eventOccurrences[i] << 32) | i;
+		}
+		Arrays.sort(keys);
+		
+		groupOf = new int[eventsSize];
+		groupMembers = new int[eventsSize];
+		groupOccurrences = new int[eventsSize];
+		groupOffsets = new int[eventsSize + 1];
+		int groups = 0;
+		for (int m = 0; m < eventsSize; m++) {
+			int i = (int) keys[m];
+			if (groups == 0 || groupOccurrences[groups - 1] != eventOccurrences[i]) {
+				groupOccurrences[groups] = eventOccurrences[i];
+				groupOffsets[groups] = m;
+				groups++;
+			}
+			groupMembers[m] = i;
+			groupOf[i] = groups - 1;
+		}
+		groupOffsets[groups] = eventsSize;
+		groupOccurrences = Arrays.copyOf(groupOccurrences, groups);
+		groupOffsets = Arrays.copyOf(groupOffsets, groups + 1);
+	}
+	
+	
+	/**
+	 * This method calculates the long distance dependency measure of the
+	 * pairs of events observed at any distance, and indexes the pairs of
+	 * different events. An event with no occurrences (such as one whose
+	 * traces all left the window) has no long distance dependency: its
+	 * measures are 0 and they are not indexed, so they are never selected
+	 */
+	private void calculateLongDistanceMeasures(SparseIntMatrix longRangeSuccessionCount) {
+		this.longRangeSuccessionCount = longRangeSuccessionCount;
+		longDistanceOffsets = new int[eventsSize + 1];
+		for (int i = 0; i < eventsSize; i++) {
+			longDistanceOffsets[i + 1] = longDistanceOffsets[i] + longRangeSuccessionCount.rowSize(i);
+		}
+		
+		longDistanceMeasures = new double[longDistanceOffsets[eventsSize]];
+		int[] pairs = new int[longDistanceMeasures.length];
+		int size = 0;
+		for (int i = 0; i < eventsSize; i++) {
+			if (eventOccurrences[i] == 0) {
+				continue;
+			}
+			for (int k = 0; k < longRangeSuccessionCount.rowSize(i); k++) {
+				int j = longRangeSuccessionCount.columnAt(i, k);
+				int p = longDistanceOffsets[i] + k;
+				longDistanceMeasures[p] = calculateLongDistanceMeasure(i,
+						longRangeSuccessionCount.valueAt(i, k), eventOccurrences[j]);
+				if (i != j) {
+					pairs[size++] = p;
+				}
+			}
+		}
+		longDistanceByMeasure = new ThresholdIndex(longDistanceMeasures, Arrays.copyOf(pairs, size));
+	}
+	
+	
+	/**
+	 * This method calculates the long distance dependency measure of an event
+	 * with occurrences
+	 *
+	 * @param i the first event index
+	 * @param successions the number of times the second event follows the
+	 * first one, at any distance
+	 * @param occurrences the occurrences of the second event
+	 * @return the dependency measure
+	 */
+	private double calculateLongDistanceMeasure(int i, int successions, int occurrences) {
+		return ((double) successions / (eventOccurrences[i] + dependencyDivisor)) -
+				(5.0 * (Math.abs(eventOccurrences[i] - occurrences)) / eventOccurrences[i]);
+	}
+	
+	
+	/**
+	 * This method selects the candidate dependencies accepted by the
+	 * dependency, the positive observations and the relative to best
+	 * thresholds of the given parameters
+	 *
+	 * @param parameters the parameters
+	 * @return the positions of the selected dependencies
+	 */
+	public BitSet selectDependencies(HMPPParameters parameters) {
+		double dependencyThreshold = parameters.getDependencyThreshold();
+		int positiveObservationsThreshold = parameters.getPositiveObservationsThreshold();
+		double relativeToBestThreshold = parameters.getRelativeToBestThreshold();
+		
+		/* scan the shortest range, checking all the thresholds */
+		ThresholdIndex index = dependenciesByMeasure;
+		int from = dependenciesByMeasure.atLeast(dependencyThreshold);
+		int to = dependenciesByMeasure.size();
+		int first = dependenciesByObservations.atLeast(positiveObservationsThreshold);
+		if (dependenciesByObservations.size() - first < to - from) {
+			index = dependenciesByObservations;
+			from = first;
+			to = dependenciesByObservations.size();
+		}
+		int last = dependenciesByDistance.atMost(relativeToBestThreshold);
+		if (last < to - from) {
+			index = dependenciesByDistance;
+			from = 0;
+			to = last;
+		}
+		
+		BitSet selected = new BitSet(dependencyTargets.length);
+		for (int r = from; r < to; r++) {
+			int p = index.positionAt(r);
+			if ((dependencyDistances[p] <= relativeToBestThreshold) &&
+					(dependencyObservations[p] >= positiveObservationsThreshold) &&
+					(dependencyMeasures[p] >= dependencyThreshold)) {
+				selected.set(p);
+			}
+		}
+		return selected;
+	}
+	
+	
+	/**
+	 * This method selects the events whose length one loop is accepted by the
+	 * length one loop and the positive observations thresholds of the given
+	 * parameters
+	 *
+	 * @param parameters the parameters
+	 * @return the selected events
+	 */
+	public BitSet selectL1L(HMPPParameters parameters) {
+		double L1lThreshold = parameters.getL1lThreshold();
+		int positiveObservationsThreshold = parameters.getPositiveObservationsThreshold();
+		
+		ThresholdIndex index = L1LbyMeasure;
+		int from = L1LbyMeasure.atLeast(L1lThreshold);
+		int first = L1LbyObservations.atLeast(positiveObservationsThreshold);
+		if (L1LbyObservations.size() - first < index.size() - from) {
+			index = L1LbyObservations;
+			from = first;
+		}
+		
+		BitSet selected = new BitSet(eventsSize);
+		for (int r = from; r < index.size(); r++) {
+			int i = index.positionAt(r);
+			if (L1LdependencyMeasures[i] >= L1lThreshold &&
+					L1Lobservations[i] >= positiveObservationsThreshold) {
+				selected.set(i);
+			}
+		}
+		return selected;
+	}
+	
+	
+	/**
+	 * This method selects the length two loops which can be accepted by the
+	 * length two loop and the positive observations thresholds of the given
+	 * parameters: the ones with enough observations and a measure passing the
+	 * threshold before the length one loops are accepted (an evaluation has
+	 * to check again the measure, which can be set to 0 by a length one loop,
+	 * see {@link #getL2LDependencyMeasure(int)})
+	 *
+	 * @param parameters the parameters
+	 * @return the positions of the selected pairs
+	 */
+	public BitSet selectL2L(HMPPParameters parameters) {
+		double L2lThreshold = parameters.getL2lThreshold();
+		int positiveObservationsThreshold = parameters.getPositiveObservationsThreshold();
+		
+		ThresholdIndex index = L2LbyMeasure;
+		int from = L2LbyMeasure.atLeast(L2lThreshold);
+		int first = L2LbyObservations.atLeast(positiveObservationsThreshold);
+		if (L2LbyObservations.size() - first < index.size() - from) {
+			index = L2LbyObservations;
+			from = first;
+		}
+		
+		BitSet selected = new BitSet(L2Lneighbours.length);
+		for (int r = from; r < index.size(); r++) {
+			int p = index.positionAt(r);
+			if ((L2LdependencyMeasures[p] >= L2lThreshold) &&
+					((L2Lsuccessions[p] + L2Lprecedences[p]) >= positiveObservationsThreshold)) {
+				selected.set(p);
+			}
+		}
+		return selected;
+	}
+	
+	
+	/**
+	 * This method selects the pairs of different events observed at any
+	 * distance whose long distance measure is greater than the long distance
+	 * threshold of the given parameters. The pairs never observed are
+	 * selected by {@link #getLongDistanceTargets(int, BitSet, HMPPParameters)}
+	 *
+	 * @param parameters the parameters
+	 * @return the positions of the selected pairs
+	 */
+	public BitSet selectLongDistance(HMPPParameters parameters) {
+		double LDThreshold = parameters.getLDThreshold();
+		BitSet selected = new BitSet(longDistanceMeasures.length);
+		for (int r = longDistanceByMeasure.greaterThan(LDThreshold); r < longDistanceByMeasure.size(); r++) {
+			selected.set(longDistanceByMeasure.positionAt(r));
+		}
+		return selected;
+	}
+	
+	
+	/**
+	 * This method returns the position of the first candidate dependency of
+	 * the given event. The candidates are the only events for which the
+	 * dependency measure can be different from 0: the events directly
+	 * following it in the log and, for a start event, the complete event of
+	 * the same activity
+	 *
+	 * @param i the event index
+	 * @return the position of the first candidate, the other ones follow it
+	 * in ascending order of event
+	 */
+	public int getDependencyStart(int i) {
+		return dependencyOffsets[i];
+	}
+	
+	
+	/**
+	 * This method returns the position following the last candidate dependency
+	 * of the given event
+	 *
+	 * @param i the event index
+	 * @return the position following the last candidate
+	 */
+	public int getDependencyEnd(int i) {
+		return dependencyOffsets[i + 1];
+	}
+	
+	
+	public int getDependencySource(int p) {
+		return dependencySources[p];
+	}
+	
+	
+	public int getDependencyTarget(int p) {
+		return dependencyTargets[p];
+	}
+	
+	
+	public double getDependencyMeasure(int p) {
+		return dependencyMeasures[p];
+	}
+	
+	
+	/**
+	 * This method returns the number of direct successions of a candidate
+	 * dependency
+	 *
+	 * @param p the position of the dependency
+	 * @return the count (0 for the complete event of a start event, if it
+	 * never follows it)
+	 */
+	public int getDependencyObservations(int p) {
+		return dependencyObservations[p];
+	}
+	
+	
+	public double[] getBestInputMeasure() {
+		return bestInputMeasure;
+	}
+	
+	
+	public double[] getBestOutputMeasure() {
+		return bestOutputMeasure;
+	}
+	
+	
+	public int[] getBestInputEvent() {
+		return bestInputEvent;
+	}
+	
+	
+	public int[] getBestOutputEvent() {
+		return bestOutputEvent;
+	}
+	
+	
+	/**
+	 * This method returns the length one loop measure of an event
+	 *
+	 * @param i the event index
+	 * @return the measure
+	 */
+	public double getL1LDependencyMeasure(int i) {
+		return L1LdependencyMeasures[i];
+	}
+	
+	
+	/**
+	 * This method returns the position of the first length two loop of the
+	 * given event. The loops are the pairs of activities observed in a
+	 * A &gt; B &gt; A (or B &gt; A &gt; B) pattern, the only ones with a
+	 * measure different from 0. A loop is made of the edge from the complete
+	 * event of A to the start event of B, and of the edge from the complete
+	 * event of B to the start event of A, and it is stored once, among the
+	 * loops of the complete event of A
+	 *
+	 * @param i the event index
+	 * @return the position of the first loop, the other ones follow it in
+	 * ascending order of event
+	 */
+	public int getL2LStart(int i) {
+		return L2Loffsets[i];
+	}
+	
+	
+	/**
+	 * This method returns the position following the last length two loop of
+	 * the given event
+	 *
+	 * @param i the event index
+	 * @return the position following the last loop
+	 */
+	public int getL2LEnd(int i) {
+		return L2Loffsets[i + 1];
+	}
+	
+	
+	/**
+	 * This method returns the complete event of the first activity (A) of a
+	 * length two loop
+	 *
+	 * @param p the position of the loop
+	 * @return the event index
+	 */
+	public int getL2LSource(int p) {
+		return L2Lsources[p];
+	}
+	
+	
+	/**
+	 * This method returns the start event of the second activity (B) of a
+	 * length two loop, the target of the edge from {@link #getL2LSource(int)}
+	 *
+	 * @param p the position of the loop
+	 * @return the event index
+	 */
+	public int getL2LNeighbour(int p) {
+		return L2Lneighbours[p];
+	}
+	
+	
+	/**
+	 * This method returns the complete event of the second activity (B) of a
+	 * length two loop, the source of the edge going back to the first one
+	 *
+	 * @param p the position of the loop
+	 * @return the event index
+	 */
+	public int getL2LReturnSource(int p) {
+		return L2LreturnSources[p];
+	}
+	
+	
+	/**
+	 * This method returns the start event of the first activity (A) of a
+	 * length two loop, the target of the edge from
+	 * {@link #getL2LReturnSource(int)}
+	 *
+	 * @param p the position of the loop
+	 * @return the event index
+	 */
+	public int getL2LReturnTarget(int p) {
+		return L2LreturnTargets[p];
+	}
+	
+	
+	/**
+	 * This method returns the measure of a length two loop, before the length
+	 * one loops are accepted (an evaluation sets to 0 the measure of a pair
+	 * with a length one loop and enough observations)
+	 *
+	 * @param p the position of the loop
+	 * @return the measure
+	 */
+	public double getL2LDependencyMeasure(int p) {
+		return L2LdependencyMeasures[p];
+	}
+	
+	
+	/**
+	 * This method returns the number of A &gt; B &gt; A patterns of a length
+	 * two loop
+	 *
+	 * @param p the position of the loop
+	 * @return the count
+	 */
+	public int getL2LSuccessions(int p) {
+		return L2Lsuccessions[p];
+	}
+	
+	
+	/**
+	 * This method returns the number of B &gt; A &gt; B patterns of a length
+	 * two loop
+	 *
+	 * @param p the position of the loop
+	 * @return the count
+	 */
+	public int getL2LPrecedences(int p) {
+		return L2Lprecedences[p];
+	}
+	
+	
+	/**
+	 * This method returns the events whose long distance dependency from the
+	 * given event passes the long distance threshold of the given parameters:
+	 * the ones observed at any distance after it, among the selected pairs,
+	 * and the other ones, whose measure depends only on their occurrences.
+	 * The latter are not 0 only for negative thresholds: the measure of a
+	 * group decreases with the difference between its occurrences and the
+	 * ones of the event, so the groups passing the threshold are the ones
+	 * around the group of the event
+	 *
+	 * @param i the event index
+	 * @param selected the pairs selected by
+	 * {@link #selectLongDistance(HMPPParameters)}
+	 * @param parameters the parameters
+	 * @return the events, in ascending order
+	 */
+	public int[] getLongDistanceTargets(int i, BitSet selected, HMPPParameters parameters) {
+		if (eventOccurrences[i] == 0) {
+			return new int[0];
+		}
+		double LDThreshold = parameters.getLDThreshold();
+		int low = groupOf[i];
+		int high = low;
+		if (getUnobservedLongDistanceMeasure(i, low) > LDThreshold) {
+			high++;
+			while (low > 0 && getUnobservedLongDistanceMeasure(i, low - 1) > LDThreshold) {
+				low--;
+			}
+			while (high < groupOccurrences.length && getUnobservedLongDistanceMeasure(i, high) > LDThreshold) {
+				high++;
+			}
+		}
+		
+		int from = longDistanceOffsets[i];
+		int to = longDistanceOffsets[i + 1];
+		int[] targets = new int[(to - from) + (groupOffsets[high] - groupOffsets[low])];
+		int size = 0;
+		for (int p = selected.nextSetBit(from); p >= 0 && p < to; p = selected.nextSetBit(p + 1)) {
+			targets[size++] = longRangeSuccessionCount.columnAt(i, p - from);
+		}
+		if (low == high) {
+			return Arrays.copyOf(targets, size);
+		}
+		for (int m = groupOffsets[low]; m < groupOffsets[high]; m++) {
+			int j = groupMembers[m];
+			if (j != i && longRangeSuccessionCount.get(i, j) == 0) {
+				targets[size++] = j;
+			}
+		}
+		targets = Arrays.copyOf(targets, size);
+		Arrays.sort(targets);
+		return targets;
+	}
+	
+	
+	/**
+	 * This method returns the long distance dependency measure between two
+	 * events
+	 *
+	 * @param i the first event index
+	 * @param j the second event index
+	 * @return the dependency measure (0 if the first event has no
+	 * occurrences)
+	 */
+	public double getLongDistanceMeasure(int i, int j) {
+		if (eventOccurrences[i] == 0) {
+			return 0.0;
+		}
+		return calculateLongDistanceMeasure(i, longRangeSuccessionCount.get(i, j), eventOccurrences[j]);
+	}
+	
+	
+	/**
+	 * This method returns the long distance dependency measure between an
+	 * event and the events of a group never observed after it
+	 *
+	 * @param i the event index
+	 * @param g the group index (see {@link #getOccurrenceGroup(int)})
+	 * @return the dependency measure (0 if the event has no occurrences)
+	 */
+	public double getUnobservedLongDistanceMeasure(int i, int g) {
+		if (eventOccurrences[i] == 0) {
+			return 0.0;
+		}
+		return calculateLongDistanceMeasure(i, 0, groupOccurrences[g]);
+	}
+	
+	
+	/**
+	 * This method returns the number of groups of events with the same number
+	 * of occurrences
+	 *
+	 * @return the number of groups
+	 */
+	public int getOccurrenceGroups() {
+		return groupOccurrences.length;
+	}
+	
+	
+	/**
+	 * This method returns the group of the events with the same number of
+	 * occurrences of the given one, the groups are in ascending order of
+	 * occurrences
+	 *
+	 * @param i the event index
+	 * @return the group index
+	 */
+	public int getOccurrenceGroup(int i) {
+		return groupOf[i];
+	}
+	
+	
+	/**
+	 * This method returns the number of events of a group
+	 *
+	 * @param g the group index
+	 * @return the number of events
+	 */
+	public int getOccurrenceGroupSize(int g) {
+		return groupOffsets[g + 1] - groupOffsets[g];
+	}
+	
+	
+	/**
+	 * This method returns the observations of two events together, the
+	 * numerator of their AND measures: in both the direct succession orders
+	 * or overlapping. It is computed from the counts each time, since just
+	 * the pairs of events together in an input (or output) set are asked
+	 */
+	private double getAndObservations(int oldE, int newE) {
+		return (double) directSuccessionCount.get(newE, oldE) +
+				directSuccessionCount.get(oldE, newE) +
+				(parallelCount.get(transitionOf[oldE], transitionOf[newE]) * intervalsOverlapMultiplier);
+	}
+	
+	
+	/**
+	 * This method returns the AND measure of two events in the input set of a
+	 * third one
+	 *
+	 * @param ownerE the owner event index
+	 * @param oldE the first event index
+	 * @param newE the second event index
+	 * @return the AND measure
+	 */
+	public double getAndInMeasure(int ownerE, int oldE, int newE) {
+		if (ownerE == newE) {
+			return 0.;
+		}
+		/* TODO: verify if it's correct to not consider the events not
+		 * observed in both the orders */
+		return getAndObservations(oldE, newE) /
+				// relevantInObservations;
+				(directSuccessionCount.get(newE, ownerE) +
+				 directSuccessionCount.get(oldE, ownerE) + 1);
+	}
+	
+	
+	/**
+	 * This method returns the AND measure of two events in the output set of
+	 * a third one
+	 *
+	 * @param ownerE the owner event index
+	 * @param oldE the first event index
+	 * @param newE the second event index
+	 * @return the AND measure
+	 */
+	public double getAndOutMeasure(int ownerE, int oldE, int newE) {
+		if (ownerE == newE) {
+			return 0.;
+		}
+		/* TODO: verify if it's correct to not consider the events not
+		 * observed in both the orders */
+		return getAndObservations(oldE, newE) /
+				// relevantOutObservations;
+				(directSuccessionCount.get(ownerE, newE) +
+				 directSuccessionCount.get(ownerE, oldE) + 1);
+	}
+	
+	
+	public int getEventsSize() {
+		return eventsSize;
+	}
+}
@@ -0,0 +1,82 @@
+package it.processmining.autohmpp.miner;
+
+import it.processmining.autohmpp.log.EncodedLog;
+import it.processmining.autohmpp.log.EventDictionary;
+import it.processmining.autohmpp.log.TraceVariants;
+
+/**
+ * This class represents a portion of a log (for example, one of the files of
+ * an archive) together with its counts. Shards can be counted independently
+ * and then merged: the merged shard contains all the traces and the sum of
+ * the counts.
+ * 
+ * @author Andrea Burattin
+ * @version 0.1
+ */
+public class LogShard {
+	
+	private EncodedLog log;
+	private LogStatistics statistics;
+	
+	
+	/**
+	 * Class constructor
+	 * 
+	 * @param log the traces of the shard
+	 * @param statistics the counts of the traces, with the same dictionary
+	 */
+	public LogShard(EncodedLog log, LogStatistics statistics) {
+		this.log = log;
+		this.statistics = statistics;
+	}
+	
+	
+	/**
+	 * This method builds a shard counting the given log
+	 * 
+	 * @param log the traces of the shard
+	 * @return the counted shard
+	 */
+	public static LogShard count(EncodedLog log) {
+		TraceVariants variants = TraceVariants.fromLog(log);
+		LogStatistics statistics = new LogStatistics(log.getDictionary());
+		statistics.countVariants(variants, 0, variants.getNumberOfVariants());
+		statistics.countTimes(log, 0, log.getNumberOfTraces());
+		return new LogShard(log, statistics);
+	}
+	
+	
+	/**
+	 * This method merges the given shards. The dictionary of the result is the
+	 * union of the dictionaries of the shards, the traces are concatenated and
+	 * the counts are summed
+	 * 
+	 * @param shards the shards to merge
+	 * @return the merged shard
+	 */
+	public static LogShard merge(LogShard... shards) {
+		EventDictionary[] dictionaries = new EventDictionary[shards.length];
+		EncodedLog[] logs = new EncodedLog[shards.length];
+		for (int i = 0; i < shards.length; i++) {
+			dictionaries[i] = shards[i].log.getDictionary();
+			logs[i] = shards[i].log;
+		}
+		EventDictionary dictionary = EventDictionary.union(dictionaries);
+		
+		LogStatistics statistics = new LogStatistics(dictionary);
+		for (int i = 0; i < shards.length; i++) {
+			statistics.add(shards[i].statistics.remap(dictionary));
+		}
+		return new LogShard(EncodedLog.concatenate(dictionary, logs), statistics);
+	}
+	
+	
+	public EncodedLog getLog() {
+		return log;
+	}
+	
+	
+	public LogStatistics getStatistics() {
+		return statistics;
+	}
+}
@@ -0,0 +1,708 @@
+package it.processmining.autohmpp.miner;
+
+import it.processmining.autohmpp.log.EncodedLog;
+import it.processmining.autohmpp.log.EventDictionary;
+import it.processmining.autohmpp.log.TraceVariants;
+import it.processmining.autohmpp.matrix.SparseIntMatrix;
+import it.processmining.autohmpp.matrix.SymmetricDoubleMatrix;
+import it.processmining.autohmpp.matrix.SymmetricIntMatrix;
+
+import java.nio.IntBuffer;
+
+/**
+ * This class contains all the counts extracted from a log, which are the only
+ * information required to build the heuristics relations. All the counts are
+ * additive: the statistics of a log are the sum of the statistics of any
+ * partition of its traces.
+ * 
+ * @author Andrea Burattin
+ * @version 0.1
+ */
+public class LogStatistics {
+	
+	/* The number of completed activities remembered to detect the A > B > A
+	 * patterns */
+	private static final int SUCCESSION2_RING = 2;
+	
+	private EventDictionary dictionary;
+	private int eventsSize;
+	private int transitionsSize;
+	
+	/* The number of traces counted */
+	private int numberOfTraces = 0;
+	/* The number of occurrences of each event */
+	private int[] eventOccurrences;
+	/* Support matrices for the start and finish event detection */
+	private int[] startCount;
+	private int[] endCount;
+	/* The succession counts are non zero only for the pairs of events
+	 * observed in the log, so just these ones are stored */
+	private SparseIntMatrix directSuccessionCount;
+	private SparseIntMatrix succession2Count;
+	private SparseIntMatrix longRangeSuccessionCount;
+	/* This matrix considers just the parallel relations between activity,
+	 * not between events (so between A and B instead of A-start, B-start,
+	 * A-finish, B-finish) */
+	private SymmetricIntMatrix parallelCount;
+	private int[] totalActivityCounter;
+	/* The activity times are in seconds */
+	private long[] totalActivityTime;
+	private SymmetricDoubleMatrix totalOverlappingTime;
+	
+	/* Support arrays for the long range succession sweep, indexed by event:
+	 * the last position of the event in the current trace (valid only if its
+	 * stamp is the current one) and the links of the list of the events
+	 * ordered by last position */
+	private int sweepStamp = 0;
+	private int[] lastPositionStamp;
+	private int[] lastPosition;
+	private int[] previousEvent;
+	private int[] nextEvent;
+	
+	/* Support arrays for the direct succession and parallel sweep, indexed
+	 * by transition: the activities finished just before the current event,
+	 * the activities started but not yet finished (with their number of
+	 * starts and their last start time) and the position of their last
+	 * start. The number of starts and the last start position are valid only
+	 * if the stamp of the transition is the current one */
+	private int frequencyStamp = 0;
+	private int[] transitionStamp;
+	private int[] finishedActivities;
+	private int[] startedNotFinishedActivities;
+	private int[] startedNotFinishedCount;
+	private long[] startedNotFinishedTime;
+	private int[] lastStartPosition;
+	/* Ring buffer with the last completed activities (transition index,
+	 * position of its start and of its completion), used to detect the
+	 * A > B > A patterns */
+	private int[] completedActivity = new int[SUCCESSION2_RING];
+	private int[] completedStart = new int[SUCCESSION2_RING];
+	private int[] completedEnd = new int[SUCCESSION2_RING];
+	
+	
+	/**
+	 * Class constructor, for empty statistics
+	 * 
+	 * @param dictionary the dictionary of the events to count
+	 */
+	public LogStatistics(EventDictionary dictionary) {
+		this(dictionary, 0,
+				new int[dictionary.getEventsSize()],
+				new int[dictionary.getEventsSize()],
+				new int[dictionary.getEventsSize()],
+				new SparseIntMatrix(dictionary.getEventsSize(), dictionary.getEventsSize()),
+				new SparseIntMatrix(dictionary.getEventsSize(), dictionary.getEventsSize()),
+				new SparseIntMatrix(dictionary.getEventsSize(), dictionary.getEventsSize()),
+				new SymmetricIntMatrix(dictionary.getTransitionsSize()),
+				new int[dictionary.getTransitionsSize()],
+				new long[dictionary.getTransitionsSize()],
+				new SymmetricDoubleMatrix(dictionary.getTransitionsSize()));
+	}
+	
+	
+	/**
+	 * Class constructor, for statistics made of the given counts (for
+	 * example, the ones loaded from a {@link LogStatisticsCache})
+	 * 
+	 * @param dictionary the dictionary of the counted events
+	 * @param numberOfTraces the number of traces counted
+	 * @param eventOccurrences the number of occurrences of each event
+	 * @param startCount the number of traces starting with each event
+	 * @param endCount the number of traces ending with each event
+	 * @param directSuccessionCount the direct successions between events
+	 * @param succession2Count the A > B > A patterns between events
+	 * @param longRangeSuccessionCount the long range successions between
+	 * events
+	 * @param parallelCount the overlaps between activities
+	 * @param totalActivityCounter the number of executions of each activity
+	 * @param totalActivityTime the duration of each activity (in seconds)
+	 * @param totalOverlappingTime the overlapping time between activities
+	 */
+	LogStatistics(EventDictionary dictionary, int numberOfTraces,
+			int[] eventOccurrences, int[] startCount, int[] endCount,
+			SparseIntMatrix directSuccessionCount, SparseIntMatrix succession2Count,
+			SparseIntMatrix longRangeSuccessionCount, SymmetricIntMatrix parallelCount,
+			int[] totalActivityCounter, long[] totalActivityTime,
+			SymmetricDoubleMatrix totalOverlappingTime) {
+		this.dictionary = dictionary;
+		this.eventsSize = dictionary.getEventsSize();
+		this.transitionsSize = dictionary.getTransitionsSize();
+		
+		this.numberOfTraces = numberOfTraces;
+		this.eventOccurrences = eventOccurrences;
+		this.startCount = startCount;
+		this.endCount = endCount;
+		this.directSuccessionCount = directSuccessionCount;
+		this.succession2Count = succession2Count;
+		this.longRangeSuccessionCount = longRangeSuccessionCount;
+		this.parallelCount = parallelCount;
+		this.totalActivityCounter = totalActivityCounter;
+		this.totalActivityTime = totalActivityTime;
+		this.totalOverlappingTime = totalOverlappingTime;
+		
+		lastPositionStamp = new int[eventsSize];
+		lastPosition = new int[eventsSize];
+		previousEvent = new int[eventsSize];
+		nextEvent = new int[eventsSize];
+		
+		transitionStamp = new int[transitionsSize];
+		finishedActivities = new int[transitionsSize];
+		startedNotFinishedActivities = new int[transitionsSize];
+		startedNotFinishedCount = new int[transitionsSize];
+		startedNotFinishedTime = new long[transitionsSize];
+		lastStartPosition = new int[transitionsSize];
+	}
+	
+	
+	/**
+	 * This method counts the given log, partitioning its variants and its
+	 * traces among the given number of threads. Each thread counts its
+	 * partition into its own statistics, which are finally merged
+	 * 
+	 * @param log the log to count
+	 * @param variants the variants of the log
+	 * @param threads the number of threads to use
+	 * @return the statistics of the whole log
+	 */
+	public static LogStatistics count(final EncodedLog log, final TraceVariants variants, int threads) {
+		final LogStatistics[] partials = new LogStatistics[threads];
+		Thread[] t = new Thread[threads];
+		
+		/* partitions with (almost) the same number of events */
+		final int[] variantBounds = getPartitions(variants.getVariants(), threads);
+		final int[] traceBounds = getPartitions(log, threads);
+		
+		for (int i = 0; i < threads; i++) {
+			final int index = i;
+			partials[i] = new LogStatistics(log.getDictionary());
+			t[i] = new Thread("Counting " + i) {
+				@Override
+				public void run() {
+					partials[index].countVariants(variants, variantBounds[index], variantBounds[index + 1]);
+					partials[index].countTimes(log, traceBounds[index], traceBounds[index + 1]);
+				}
+			};
+			t[i].start();
+		}
+		/* wait for each thread to finish */
+		try {
+			for (int i = 0; i < threads; i++) {
+				t[i].join();
+			}
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+		
+		for (int i = 1; i < threads; i++) {
+			partials[0].add(partials[i]);
+		}
+		return partials[0];
+	}
+	
+	
+	/**
+	 * This method splits the traces of the log into partitions with (almost)
+	 * the same number of events
+	 * 
+	 * @param log the log to split
+	 * @param partitions the number of partitions
+	 * @return the bounds of the partitions: the partition <tt>i</tt> spans the
+	 * traces from <tt>bounds[i]</tt> (included) to <tt>bounds[i+1]</tt>
+	 * (excluded)
+	 */
+	private static int[] getPartitions(EncodedLog log, int partitions) {
+		int[] bounds = new int[partitions + 1];
+		int trace = 0;
+		for (int i = 1; i < partitions; i++) {
+			long target = (long) log.getNumberOfEvents() * i / partitions;
+			while (trace < log.getNumberOfTraces() && log.getTraceEnd(trace) <= target) {
+				trace++;
+			}
+			bounds[i] = trace;
+		}
+		bounds[partitions] = log.getNumberOfTraces();
+		return bounds;
+	}
+	
+	
+	/**
+	 * This method counts the given variants, each one weighted by its
+	 * multiplicity. The activity and overlapping times depend on the
+	 * timestamps of each trace, so they are not counted here (see
+	 * {@link #countTimes(EncodedLog, int, int)})
+	 * 
+	 * @param variants the variants of the log
+	 * @param fromVariant the first variant to count
+	 * @param toVariant the variant after the last one to count
+	 */
+	public void countVariants(TraceVariants variants, int fromVariant, int toVariant) {
+		EncodedLog log = variants.getVariants();
+		IntBuffer traceEvents = log.getEvents();
+		for (int v = fromVariant; v < toVariant; v++) {
+			int from = log.getTraceStart(v);
+			int to = log.getTraceEnd(v);
+			int weight = variants.getMultiplicity(v);
+			
+			for (int i = from; i < to; i++) {
+				eventOccurrences[traceEvents.get(i)] += weight;
+			}
+			calculateEventsFrequencies(log, from, to, weight, 0);
+			calculateLongRangeSuccessions(traceEvents, from, to, weight);
+			
+			numberOfTraces += weight;
+		}
+	}
+	
+	
+	/**
+	 * This method counts the activity and the overlapping times of the given
+	 * traces of the log, and nothing else
+	 * 
+	 * @param log the encoded log
+	 * @param fromTrace the first trace to count
+	 * @param toTrace the trace after the last one to count
+	 */
+	public void countTimes(EncodedLog log, int fromTrace, int toTrace) {
+		for (int t = fromTrace; t < toTrace; t++) {
+			calculateEventsFrequencies(log, log.getTraceStart(t), log.getTraceEnd(t), 0, 1);
+		}
+	}
+	
+	
+	/**
+	 * This method counts the given traces of the log. Each trace is traversed
+	 * just once: while the direct successions, the parallel counts and the
+	 * activity times are updated, the long range succession count is populated
+	 * too.
+	 * 
+	 * @param log the encoded log
+	 * @param fromTrace the first trace to count
+	 * @param toTrace the trace after the last one to count
+	 */
+	public void countTraces(EncodedLog log, int fromTrace, int toTrace) {
+		countTraces(log, fromTrace, toTrace, 1);
+	}
+	
+	
+	/**
+	 * This method removes the counts of the given traces of the log, which
+	 * must have been counted before (for example, when the traces leave a
+	 * window)
+	 * 
+	 * @param log the encoded log
+	 * @param fromTrace the first trace to remove
+	 * @param toTrace the trace after the last one to remove
+	 */
+	public void removeTraces(EncodedLog log, int fromTrace, int toTrace) {
+		countTraces(log, fromTrace, toTrace, -1);
+	}
+	
+	
+	/**
+	 * This method counts the given traces of the log, each one with the given
+	 * weight
+	 * 
+	 * @param log the encoded log
+	 * @param fromTrace the first trace to count
+	 * @param toTrace the trace after the last one to count
+	 * @param weight the number of times each trace is counted (negative to
+	 * remove the traces)
+	 */
+	private void countTraces(EncodedLog log, int fromTrace, int toTrace, int weight) {
+		IntBuffer traceEvents = log.getEvents();
+		for (int t = fromTrace; t < toTrace; t++) {
+			int from = log.getTraceStart(t);
+			int to = log.getTraceEnd(t);
+			
+			/* Count the occurrences of each event */
+			for (int i = from; i < to; i++) {
+				eventOccurrences[traceEvents.get(i)] += weight;
+			}
+			
+			/* Update the successors and parallels matrices */
+			calculateEventsFrequencies(log, from, to, weight, weight);
+			
+			/* Update the long range matrix */
+			calculateLongRangeSuccessions(traceEvents, from, to, weight);
+			
+			numberOfTraces += weight;
+		}
+	}
+	
+	
+	/**
+	 * This method adds all the counts of the given statistics to this one
+	 * 
+	 * @param other the statistics to add, with the same dictionary
+	 */
+	public void add(LogStatistics other) {
+		numberOfTraces += other.numberOfTraces;
+		for (int i = 0; i < eventsSize; i++) {
+			eventOccurrences[i] += other.eventOccurrences[i];
+			startCount[i] += other.startCount[i];
+			endCount[i] += other.endCount[i];
+		}
+		directSuccessionCount.add(other.directSuccessionCount);
+		succession2Count.add(other.succession2Count);
+		longRangeSuccessionCount.add(other.longRangeSuccessionCount);
+		parallelCount.add(other.parallelCount);
+		for (int i = 0; i < transitionsSize; i++) {
+			totalActivityCounter[i] += other.totalActivityCounter[i];
+			totalActivityTime[i] += other.totalActivityTime[i];
+		}
+		totalOverlappingTime.add(other.totalOverlappingTime);
+	}
+	
+	
+	/**
+	 * This method populates the long range succession count with the given
+	 * trace: for each event, all the following events are counted once, until
+	 * the same event is found again.
+	 * 
+	 * The trace is swept once. An event <tt>b</tt> in position <tt>j</tt> is
+	 * a long range successor of the event <tt>a</tt> in position <tt>i</tt>
+	 * if <tt>i</tt> is the last occurrence of <tt>a</tt> before <tt>j</tt>
+	 * and <tt>b</tt> does not occur between <tt>i</tt> and <tt>j</tt>. So,
+	 * keeping the events ordered by their last occurrence, the rows to update
+	 * for <tt>b</tt> are the events occurred after the last occurrence of
+	 * <tt>b</tt> (plus <tt>b</tt> itself, if already occurred): each step
+	 * costs just the number of counts it updates.
+	 * 
+	 * @param trace the event indexes
+	 * @param from the position of the first event of the trace
+	 * @param to the position after the last event of the trace
+	 * @param weight the weight of the trace
+	 */
+	private void calculateLongRangeSuccessions(IntBuffer trace, int from, int to, int weight) {
+		/* a new stamp invalidates the positions of the previous traces */
+		sweepStamp++;
+		/* the event with the most recent occurrence, the list continues with
+		 * the previousEvent links */
+		int last = -1;
+		for (int j = from; j < to; j++) {
+			/* The ending element, the correct column of the matrices */
+			int column = trace.get(j);
+			boolean seen = (lastPositionStamp[column] == sweepStamp);
+			
+			/* Update long range matrix, for all the events occurred after the
+			 * last occurrence of the current one */
+			for (int row = last; row != -1 && (!seen || lastPosition[row] > lastPosition[column]); row = previousEvent[row]) {
+				longRangeSuccessionCount.add(row, column, weight);
+			}
+			
+			if (seen) {
+				/* the current event closes its previous occurrence */
+				longRangeSuccessionCount.add(column, column, weight);
+				/* unlink the current event */
+				if (column == last) {
+					last = previousEvent[column];
+				} else {
+					previousEvent[nextEvent[column]] = previousEvent[column];
+				}
+				if (previousEvent[column] != -1) {
+					nextEvent[previousEvent[column]] = nextEvent[column];
+				}
+			}
+			/* the current event becomes the most recent one */
+			previousEvent[column] = last;
+			nextEvent[column] = -1;
+			if (last != -1) {
+				nextEvent[last] = column;
+			}
+			last = column;
+			lastPosition[column] = j;
+			lastPositionStamp[column] = sweepStamp;
+		}
+	}
+	
+	
+	/**
+	 * This method extracts information on the parameter instance, calculating
+	 * the direct successions matrix and the parallel events matrix
+	 * 
+	 * @param encodedLog the encoded log
+	 * @param from the position of the first event of the trace
+	 * @param to the position after the last event of the trace
+	 * @param weight the weight of the trace for the counts which depend only on
+	 * the sequence of events
+	 * @param timeWeight the weight of the trace for the activity and the
+	 * overlapping times
+	 */
+	private void calculateEventsFrequencies(EncodedLog encodedLog, int from, int to, int weight, int timeWeight) {
+		/* a new stamp resets the starts of the previous traces */
+		frequencyStamp++;
+		/* All the activities finished just before the current one and all the
+		 * activities started but not yet finished */
+		int finishedActivitiesSize = 0;
+		int startedNotFinishedActivitiesSize = 0;
+		
+		/* Starting and ending elements for this process instance */
+		int startElement = -1;
+		int endElement = -1;
+		
+		/* We need to remember if the last activity was a finish so if we have
+		 * no other direct successors */
+		boolean previousEventWasComplete = false;
+		
+		/* The number of completed activities, in the ring buffer */
+		int completedSize = 0;
+		
+		/* We have to iterate throughout the process instance */
+		for (int pos = from; pos < to; pos++) {
+			int indexOfAct = encodedLog.getEvent(pos);
+			long timestamp = encodedLog.getTimestamp(pos);
+			int indexOfTransition = dictionary.getTransitionOfEvent(indexOfAct);
+			if (transitionStamp[indexOfTransition] != frequencyStamp) {
+				/* first event of the activity in this trace */
+				transitionStamp[indexOfTransition] = frequencyStamp;
+				startedNotFinishedCount[indexOfTransition] = 0;
+				lastStartPosition[indexOfTransition] = -1;
+			}
+			
+			if (dictionary.isStartEvent(indexOfAct)) {
+				
+				/* If required, update the starting activity
+				 */
+				if (startElement == -1) {
+					startElement = indexOfAct;
+				}
+				
+				/* This is the start of a new activity, all the activities
+				 * started but not finished are overlapped with this one and all
+				 * the activities already finished are before this one.
+				 */
+				/* Set up the activity direct successors */
+				for (int k = 0; k < finishedActivitiesSize && weight != 0; k++) {
+					int indexOfCurrAct = dictionary.getCompleteEvent(finishedActivities[k]);
+					directSuccessionCount.add(indexOfCurrAct, indexOfAct, weight);
+				}
+				
+				/* Set up the activity successors: if the last two completed
+				 * activities are the current one and another one started after
+				 * that completion, this is a A > B > A pattern */
+				if (completedSize >= 2 && weight != 0) {
+					int a = (completedSize - 2) % SUCCESSION2_RING;
+					int b = (completedSize - 1) % SUCCESSION2_RING;
+					if (completedActivity[a] == indexOfTransition &&
+							completedActivity[b] != indexOfTransition &&
+							completedStart[b] > completedEnd[a]) {
+						int indexOfA = dictionary.getCompleteEvent(indexOfTransition);
+						int indexOfB = dictionary.getStartEvent(completedActivity[b]);
+						succession2Count.add(indexOfA, indexOfB, weight);
+					}
+				}
+				
+				/* Overlapped activities (the matrix is symmetric, so a single
+				 * update counts both directions) */
+				for (int k = 0; k < startedNotFinishedActivitiesSize && weight != 0; k++) {
+					parallelCount.add(startedNotFinishedActivities[k], indexOfTransition, weight);
+				}
+				
+				/* Started not finished increment */
+				if (startedNotFinishedCount[indexOfTransition] == 0) {
+					startedNotFinishedActivities[startedNotFinishedActivitiesSize++] = indexOfTransition;
+				}
+				startedNotFinishedCount[indexOfTransition]++;
+				startedNotFinishedTime[indexOfTransition] = timestamp;
+				lastStartPosition[indexOfTransition] = pos;
+				
+				previousEventWasComplete = false;
+			
+			} else if (dictionary.isCompleteEvent(indexOfAct)) {
+				
+				/* Update the current end activity  */
+				endElement = indexOfAct;
+				
+				/* Update the activity counter and the total activity time */
+				totalActivityCounter[indexOfTransition] += weight;
+				
+				/* We have to clean this because we want to keep only the DIRECT
+				 * successors of the activity, just if there are no other
+				 * acrivity ended before */
+				if (!previousEventWasComplete) {
+					finishedActivitiesSize = 0;
+				}
+				
+				/* This is the finish of an activity, I have just to terminate
+				 * the start.  
+				 */
+				/* Eventual started but not finished removal */
+				if (startedNotFinishedCount[indexOfTransition] > 0)
+				{
+					/* Update the total activity time */
+					totalActivityTime[indexOfTransition] += timeWeight * ((timestamp - startedNotFinishedTime[indexOfTransition]) / 1000);
+					
+					/* Update the started not finished set */
+					startedNotFinishedCount[indexOfTransition]--;
+					if (startedNotFinishedCount[indexOfTransition] == 0) {
+						for (int k = 0; k < startedNotFinishedActivitiesSize; k++) {
+							if (startedNotFinishedActivities[k] == indexOfTransition) {
+								startedNotFinishedActivities[k] = startedNotFinishedActivities[--startedNotFinishedActivitiesSize];
+								break;
+							}
+						}
+					}
+					
+					/* Update the total overlapping time */
+					for (int k = 0; k < startedNotFinishedActivitiesSize && timeWeight != 0; k++) {
+						/* Update the overlapping time only for the activities
+						 * different from the current one */
+						int indexOfCurrAct = startedNotFinishedActivities[k];
+						if (indexOfCurrAct != indexOfTransition) {
+							double time = timestamp - startedNotFinishedTime[indexOfCurrAct];
+							time /= 1000;
+							time *= timeWeight;
+							totalOverlappingTime.add(indexOfTransition, indexOfCurrAct, time);
+						}
+					}
+				}
+				
+				/* Finished activities increment */
+				boolean alreadyFinished = false;
+				for (int k = 0; k < finishedActivitiesSize && !alreadyFinished; k++) {
+					alreadyFinished = (finishedActivities[k] == indexOfTransition);
+				}
+				if (!alreadyFinished) {
+					finishedActivities[finishedActivitiesSize++] = indexOfTransition;
+				}
+				
+				/* Completed activities ring buffer update */
+				int slot = completedSize % SUCCESSION2_RING;
+				completedActivity[slot] = indexOfTransition;
+				completedStart[slot] = lastStartPosition[indexOfTransition];
+				completedEnd[slot] = pos;
+				completedSize++;
+				
+				previousEventWasComplete = true;
+			
+			}
+		}
+		/* Update the start / finish process counter */
+		if (startElement >= 0) {
+			startCount[startElement] += weight;
+		}
+		if (endElement >= 0) {
+			endCount[endElement] += weight;
+		}
+	}
+	
+	
+	/**
+	 * This method returns a copy of these statistics, expressed with the
+	 * given dictionary, which must contain all the events and the activities
+	 * of the current one
+	 * 
+	 * @param target the dictionary of the new statistics
+	 * @return the statistics with the new dictionary
+	 */
+	public LogStatistics remap(EventDictionary target) {
+		int[] e = dictionary.getEventsMapping(target);
+		int[] t = dictionary.getTransitionsMapping(target);
+		LogStatistics remapped = new LogStatistics(target);
+		
+		remapped.numberOfTraces = numberOfTraces;
+		for (int i = 0; i < eventsSize; i++) {
+			remapped.eventOccurrences[e[i]] = eventOccurrences[i];
+			remapped.startCount[e[i]] = startCount[i];
+			remapped.endCount[e[i]] = endCount[i];
+			remap(directSuccessionCount, remapped.directSuccessionCount, i, e);
+			remap(succession2Count, remapped.succession2Count, i, e);
+			remap(longRangeSuccessionCount, remapped.longRangeSuccessionCount, i, e);
+		}
+		for (int i = 0; i < transitionsSize; i++) {
+			remapped.totalActivityCounter[t[i]] = totalActivityCounter[i];
+			remapped.totalActivityTime[t[i]] = totalActivityTime[i];
+			/* symmetric matrices, the lower triangle is enough */
+			for (int j = 0; j <= i; j++) {
+				remapped.parallelCount.set(t[i], t[j], parallelCount.get(i, j));
+				remapped.totalOverlappingTime.set(t[i], t[j], totalOverlappingTime.get(i, j));
+			}
+		}
+		return remapped;
+	}
+	
+	
+	/**
+	 * This method copies the non zero cells of a row of a matrix into another
+	 * matrix, moving each event to its new index
+	 */
+	private static void remap(SparseIntMatrix source, SparseIntMatrix target, int row, int[] mapping) {
+		for (int k = 0; k < source.rowSize(row); k++) {
+			target.set(mapping[row], mapping[source.columnAt(row, k)], source.valueAt(row, k));
+		}
+	}
+	
+	
+	/**
+	 * This method compresses the succession counts, once the counting is
+	 * over. The compressed counts are read without any further allocation
+	 * (and, if {@link it.processmining.autohmpp.matrix.MatrixBuffers} is set
+	 * to do so, they are stored off heap); counting more traces moves them
+	 * back to the heap
+	 */
+	public void compress() {
+		directSuccessionCount.compress();
+		succession2Count.compress();
+		longRangeSuccessionCount.compress();
+	}
+	
+	
+	public EventDictionary getDictionary() {
+		return dictionary;
+	}
+	
+	
+	public int getNumberOfTraces() {
+		return numberOfTraces;
+	}
+	
+	
+	public int[] getEventOccurrences() {
+		return eventOccurrences;
+	}
+	
+	
+	public int[] getStartCount() {
+		return startCount;
+	}
+	
+	
+	public int[] getEndCount() {
+		return endCount;
+	}
+	
+	
+	public SparseIntMatrix getDirectSuccessionCount() {
+		return directSuccessionCount;
+	}
+	
+	
+	public SparseIntMatrix getSuccession2Count() {
+		return succession2Count;
+	}
+	
+	
+	public SparseIntMatrix getLongRangeSuccessionCount() {
+		return longRangeSuccessionCount;
+	}
+	
+	
+	public SymmetricIntMatrix getParallelCount() {
+		return parallelCount;
+	}
+	
+	
+	public int[] getActivityCounter() {
+		return totalActivityCounter;
+	}
+	
+	
+	public long[] getActivityTime() {
+		return totalActivityTime;
+	}
+	
+	
+	public SymmetricDoubleMatrix getOverlappingTime() {
+		return totalOverlappingTime;
+	}
+}
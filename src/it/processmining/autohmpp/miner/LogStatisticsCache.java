@@ -0,0 +1,315 @@
+package it.processmining.autohmpp.miner;
+
+import it.processmining.autohmpp.log.CacheFiles;
+import it.processmining.autohmpp.log.CacheOutputStream;
+import it.processmining.autohmpp.log.EventDictionary;
+import it.processmining.autohmpp.matrix.SparseIntMatrix;
+import it.processmining.autohmpp.matrix.SymmetricDoubleMatrix;
+import it.processmining.autohmpp.matrix.SymmetricIntMatrix;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * This class manages a binary cache of the counts of a log, stored next to
+ * the log file as the {@link it.processmining.autohmpp.log.EncodedLogCache}.
+ * The per event and per activity counts are read into the heap, while the
+ * matrices (the succession counts, in their compressed form, and the packed
+ * triangles of the parallel counts and of the overlapping times) are memory
+ * mapped read only: they are read directly from the page cache, without any
+ * copy, and all the processes mining the same log share the same pages. A
+ * mapped matrix is copied into the heap only if it is updated (for example,
+ * when new traces are appended).
+ *
+ * The file layout is:
+ * <pre>
+ *   ...     header and dictionary (see {@link CacheFiles})
+ *   int     number of traces
+ *   int[]   occurrences, start counts and end counts of each event
+ *   int[]   number of executions of each activity
+ *   long[]  duration of each activity
+ *   int[3]  non zero cells of the direct, length two and long range
+ *           succession counts
+ *   ...     padding to a multiple of 8 bytes
+ * </pre>
+ * followed, for each succession count, by the row offsets (number of events
+ * + 1 entries), the columns and the values of the non zero cells, and then by
+ * the packed parallel counts and the packed overlapping times. Each region
+ * starts at a multiple of 8 bytes.
+ *
+ * @author Andrea Burattin
+ * @version 0.1
+ */
+public class LogStatisticsCache {
+	
+	private static final int MAGIC = 0x41484d53;
+	private static final int VERSION = 1;
+	private static final String CACHE_EXTENSION = ".stats";
+	
+	
+	/**
+	 * This method returns the cache file associated to the given log file
+	 *
+	 * @param source the log file
+	 * @return the cache file
+	 */
+	public static File getCacheFile(File source) {
+		return new File(source.getPath() + CACHE_EXTENSION);
+	}
+	
+	
+	/**
+	 * This method loads the cached counts of the given log file, if a valid
+	 * cache exists
+	 *
+	 * @param source the log file
+	 * @param dictionary the dictionary of the log, the cache is used only if
+	 * its events and activities are the same ones, with the same indexes
+	 * @return the statistics, with the given dictionary and the matrices
+	 * memory mapped, or null if there is no valid cache for the source file
+	 * @throws IOException
+	 */
+	public static LogStatistics load(File source, EventDictionary dictionary) throws IOException {
+		File cache = getCacheFile(source);
+		if (!cache.exists()) {
+			return null;
+		}
+		
+		RandomAccessFile file = new RandomAccessFile(cache, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			long headerSize = Math.min(channel.size(), Integer.MAX_VALUE);
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, headerSize);
+			
+			if (!CacheFiles.checkHeader(header, MAGIC, VERSION, source)) {
+				return null;
+			}
+			if (!isSameDictionary(CacheFiles.readDictionary(header), dictionary)) {
+				return null;
+			}
+			return readCounts(channel, header, dictionary);
+		} finally {
+			/* the mappings stay valid after the channel is closed */
+			file.close();
+		}
+	}
+	
+	
+	/**
+	 * This method reads the counts written with
+	 * {@link #writeCounts(CacheOutputStream, LogStatistics)}, mapping the
+	 * matrices read only
+	 *
+	 * @param channel the channel of the file
+	 * @param header the buffer with the beginning of the file, positioned at
+	 * the first byte of the counts
+	 * @param dictionary the dictionary of the counts
+	 * @return the statistics
+	 * @throws IOException
+	 */
+	static LogStatistics readCounts(FileChannel channel, ByteBuffer header, EventDictionary dictionary) throws IOException {
+		int eventsSize = dictionary.getEventsSize();
+		int transitionsSize = dictionary.getTransitionsSize();
+		
+		int numberOfTraces = header.getInt();
+		int[] eventOccurrences = readInts(header, eventsSize);
+		int[] startCount = readInts(header, eventsSize);
+		int[] endCount = readInts(header, eventsSize);
+		int[] totalActivityCounter = readInts(header, transitionsSize);
+		long[] totalActivityTime = new long[transitionsSize];
+		for (int i = 0; i < transitionsSize; i++) {
+			totalActivityTime[i] = header.getLong();
+		}
+		int[] cells = readInts(header, 3);
+		
+		long position = CacheFiles.align(header.position());
+		SparseIntMatrix[] successions = new SparseIntMatrix[3];
+		for (int m = 0; m < 3; m++) {
+			IntBuffer offsets = CacheFiles.map(channel, position, 4L * (eventsSize + 1)).asIntBuffer();
+			position = CacheFiles.align(position + 4L * (eventsSize + 1));
+			IntBuffer columns = CacheFiles.map(channel, position, 4L * cells[m]).asIntBuffer();
+			position = CacheFiles.align(position + 4L * cells[m]);
+			IntBuffer values = CacheFiles.map(channel, position, 4L * cells[m]).asIntBuffer();
+			position = CacheFiles.align(position + 4L * cells[m]);
+			successions[m] = new SparseIntMatrix(eventsSize, eventsSize, offsets, columns, values);
+		}
+		long packed = (long) transitionsSize * (transitionsSize + 1) / 2;
+		IntBuffer parallel = CacheFiles.map(channel, position, 4L * packed).asIntBuffer();
+		position = CacheFiles.align(position + 4L * packed);
+		SymmetricDoubleMatrix overlapping = new SymmetricDoubleMatrix(transitionsSize,
+				CacheFiles.map(channel, position, 8L * packed).asDoubleBuffer());
+		
+		return new LogStatistics(dictionary, numberOfTraces, eventOccurrences, startCount, endCount,
+				successions[0], successions[1], successions[2],
+				new SymmetricIntMatrix(transitionsSize, parallel),
+				totalActivityCounter, totalActivityTime, overlapping);
+	}
+	
+	
+	/**
+	 * This method writes the cache of the counts of the given log file. The
+	 * cache is written into a temporary file which is then renamed, so that
+	 * concurrent processes never see a partial cache.
+	 *
+	 * @param source the log file
+	 * @param statistics the counts of the log file
+	 * @throws IOException
+	 */
+	public static void store(File source, LogStatistics statistics) throws IOException {
+		checkCounts(statistics);
+		File cache = getCacheFile(source);
+		File temp = CacheFiles.createTempFile(cache);
+		
+		CacheOutputStream out = null;
+		boolean written = false;
+		try {
+			out = new CacheOutputStream(temp);
+			CacheFiles.writeHeader(out, MAGIC, VERSION, source);
+			CacheFiles.writeDictionary(out, statistics.getDictionary());
+			writeCounts(out, statistics);
+			out.close();
+			written = true;
+		} finally {
+			if (!written) {
+				CacheFiles.discard(out, temp);
+			}
+		}
+		
+		CacheFiles.replace(temp, cache);
+	}
+	
+	
+	/**
+	 * This method checks that the matrices of the given statistics can be
+	 * mapped once they are written (see {@link CacheFiles#checkRegion(long)})
+	 *
+	 * @param statistics the counts to write
+	 * @throws IOException if a matrix is too large
+	 */
+	static void checkCounts(LogStatistics statistics) throws IOException {
+		int transitionsSize = statistics.getDictionary().getTransitionsSize();
+		long packed = (long) transitionsSize * (transitionsSize + 1) / 2;
+		CacheFiles.checkRegion(4L * statistics.getDirectSuccessionCount().size());
+		CacheFiles.checkRegion(4L * statistics.getSuccession2Count().size());
+		CacheFiles.checkRegion(4L * statistics.getLongRangeSuccessionCount().size());
+		CacheFiles.checkRegion(8L * packed);
+	}
+	
+	
+	/**
+	 * This method writes the counts (everything but the dictionary) of the
+	 * given statistics, with the layout described in the class comment
+	 *
+	 * @param out the stream, the offsets of its regions are computed from its
+	 * position, so it must start at the beginning of the file
+	 * @param statistics the counts to write
+	 * @throws IOException
+	 */
+	static void writeCounts(CacheOutputStream out, LogStatistics statistics) throws IOException {
+		int transitionsSize = statistics.getDictionary().getTransitionsSize();
+		SparseIntMatrix[] successions = new SparseIntMatrix[] {
+				statistics.getDirectSuccessionCount(),
+				statistics.getSuccession2Count(),
+				statistics.getLongRangeSuccessionCount()
+		};
+		
+		out.writeInt(statistics.getNumberOfTraces());
+		writeInts(out, statistics.getEventOccurrences());
+		writeInts(out, statistics.getStartCount());
+		writeInts(out, statistics.getEndCount());
+		writeInts(out, statistics.getActivityCounter());
+		long[] totalActivityTime = statistics.getActivityTime();
+		for (int i = 0; i < transitionsSize; i++) {
+			out.writeLong(totalActivityTime[i]);
+		}
+		for (int m = 0; m < 3; m++) {
+			out.writeInt(successions[m].size());
+		}
+		CacheFiles.pad(out);
+		
+		for (int m = 0; m < 3; m++) {
+			SparseIntMatrix matrix = successions[m];
+			int offset = 0;
+			for (int i = 0; i < matrix.rows(); i++) {
+				out.writeInt(offset);
+				offset += matrix.rowSize(i);
+			}
+			out.writeInt(offset);
+			CacheFiles.pad(out);
+			for (int i = 0; i < matrix.rows(); i++) {
+				for (int k = 0; k < matrix.rowSize(i); k++) {
+					out.writeInt(matrix.columnAt(i, k));
+				}
+			}
+			CacheFiles.pad(out);
+			for (int i = 0; i < matrix.rows(); i++) {
+				for (int k = 0; k < matrix.rowSize(i); k++) {
+					out.writeInt(matrix.valueAt(i, k));
+				}
+			}
+			CacheFiles.pad(out);
+		}
+		
+		/* the packed triangles, row by row */
+		SymmetricIntMatrix parallelCount = statistics.getParallelCount();
+		for (int i = 0; i < transitionsSize; i++) {
+			for (int j = 0; j <= i; j++) {
+				out.writeInt(parallelCount.get(i, j));
+			}
+		}
+		CacheFiles.pad(out);
+		SymmetricDoubleMatrix totalOverlappingTime = statistics.getOverlappingTime();
+		for (int i = 0; i < transitionsSize; i++) {
+			for (int j = 0; j <= i; j++) {
+				out.writeDouble(totalOverlappingTime.get(i, j));
+			}
+		}
+	}
+	
+	
+	/**
+	 * This method tells whether two dictionaries have the same activities and
+	 * the same events, with the same indexes
+	 */
+	private static boolean isSameDictionary(EventDictionary cached, EventDictionary dictionary) {
+		if (cached.getEventsSize() != dictionary.getEventsSize() ||
+				cached.getTransitionsSize() != dictionary.getTransitionsSize()) {
+			return false;
+		}
+		int[] events = cached.getEventsMapping(dictionary);
+		for (int i = 0; i < events.length; i++) {
+			if (events[i] != i) {
+				return false;
+			}
+		}
+		int[] transitions = cached.getTransitionsMapping(dictionary);
+		for (int i = 0; i < transitions.length; i++) {
+			if (transitions[i] != i) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	
+	static int[] readInts(ByteBuffer in, int size) {
+		int[] values = new int[size];
+		for (int i = 0; i < size; i++) {
+			values[i] = in.getInt();
+		}
+		return values;
+	}
+	
+	
+	static void writeInts(DataOutputStream out, int[] values) throws IOException {
+		for (int i = 0; i < values.length; i++) {
+			out.writeInt(values[i]);
+		}
+	}
+}
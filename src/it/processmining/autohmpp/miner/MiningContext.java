@@ -0,0 +1,190 @@
+package it.processmining.autohmpp.miner;
+
+import it.processmining.autohmpp.matrix.SparseDoubleMatrix;
+import it.processmining.hmpp.models.HMPPHeuristicsNet;
+import it.processmining.hmpp.models.HMPPParameters;
+
+import java.util.BitSet;
+
+import org.processmining.framework.models.heuristics.HNSet;
+import org.processmining.framework.models.heuristics.HNSubSet;
+
+/**
+ * This class holds the state of a single evaluation of the heuristics
+ * relations (see {@link AutoHMPP#makeHeuristicsRelations(MiningContext)}):
+ * the parameters of the evaluation, the measures it compares with the
+ * thresholds and everything computed while the net is built. The measures,
+ * as the counts of the log kept by the miner, are never modified while nets
+ * are built, so they are shared by all the contexts, and evaluations with
+ * different contexts can run at the same time. A context must not be shared
+ * by concurrent evaluations, and the net built with a context refers to its
+ * accepted dependency measures.
+ *
+ * Once the net is built, the context keeps the input and output sets of each
+ * event, so that the evaluation of a close parameter configuration can start
+ * from it (see
+ * {@link AutoHMPP#makeHeuristicsRelations(MiningContext, MiningContext)}).
+ *
+ * @author Andrea Burattin
+ * @version 0.1
+ */
+public class MiningContext {
+	
+	private HMPPParameters parameters;
+	private HeuristicsMeasures measures;
+	
+	/* The dependency measures of the connections of the net */
+	private SparseDoubleMatrix dependencyMeasuresAccepted;
+	/* Counts the total wrong dependency observations in the log */
+	private SparseDoubleMatrix noiseCounters;
+	
+	private boolean[] L1Lrelation;
+	private int[] L2Lrelation;
+	private boolean[] alwaysVisited;
+	
+	/* The AND threshold, copied since the parameters can be reused by the
+	 * caller once the net is built */
+	private double andThreshold;
+	/* The connections of each event, and their OR-subsets before the long
+	 * distance dependencies are added */
+	private HNSubSet[] inputSet;
+	private HNSubSet[] outputSet;
+	private HNSet[] inputOrSets;
+	private HNSet[] outputOrSets;
+	private HMPPHeuristicsNet net = null;
+	private BitSet changedEvents = null;
+	
+	
+	/**
+	 * Class constructor
+	 *
+	 * @param measures the measures of the log (see
+	 * {@link AutoHMPP#getMeasures(HMPPParameters)})
+	 * @param parameters the parameters of the evaluation (not modified)
+	 * @throws IllegalArgumentException if the measures are computed with
+	 * another dependency divisor or intervals overlap multiplier
+	 */
+	public MiningContext(HeuristicsMeasures measures, HMPPParameters parameters) {
+		if (!measures.isComputedWith(parameters)) {
+			throw new IllegalArgumentException("The measures are computed with other parameters");
+		}
+		this.parameters = parameters;
+		this.measures = measures;
+		int eventsSize = measures.getEventsSize();
+		
+		dependencyMeasuresAccepted = new SparseDoubleMatrix(eventsSize, eventsSize);
+		noiseCounters = new SparseDoubleMatrix(eventsSize, eventsSize);
+		
+		/* loop relations matrix */
+		L1Lrelation = new boolean[eventsSize];
+		L2Lrelation = new int[eventsSize];
+		for (int i = 0; i < eventsSize; i++) {
+			L1Lrelation[i] = false;
+			L2Lrelation[i] = -10;
+		}
+		alwaysVisited = new boolean[eventsSize];
+		
+		andThreshold = parameters.getAndThreshold();
+		inputSet = new HNSubSet[eventsSize];
+		outputSet = new HNSubSet[eventsSize];
+		for (int i = 0; i < eventsSize; i++) {
+			inputSet[i] = new HNSubSet();
+			outputSet[i] = new HNSubSet();
+		}
+		inputOrSets = new HNSet[eventsSize];
+		outputOrSets = new HNSet[eventsSize];
+	}
+	
+	
+	public HMPPParameters getParameters() {
+		return parameters;
+	}
+	
+	
+	public HeuristicsMeasures getMeasures() {
+		return measures;
+	}
+	
+	
+	public SparseDoubleMatrix getDependencyMeasuresAccepted() {
+		return dependencyMeasuresAccepted;
+	}
+	
+	
+	public SparseDoubleMatrix getNoiseCounters() {
+		return noiseCounters;
+	}
+	
+	
+	public boolean[] getL1Lrelation() {
+		return L1Lrelation;
+	}
+	
+	
+	public int[] getL2Lrelation() {
+		return L2Lrelation;
+	}
+	
+	
+	public boolean[] getAlwaysVisited() {
+		return alwaysVisited;
+	}
+	
+	
+	public double getAndThreshold() {
+		return andThreshold;
+	}
+	
+	
+	public HNSubSet[] getInputSet() {
+		return inputSet;
+	}
+	
+	
+	public HNSubSet[] getOutputSet() {
+		return outputSet;
+	}
+	
+	
+	public HNSet[] getInputOrSets() {
+		return inputOrSets;
+	}
+	
+	
+	public HNSet[] getOutputOrSets() {
+		return outputOrSets;
+	}
+	
+	
+	/**
+	 * This method returns the net built with this context
+	 *
+	 * @return the net, or null if it is not built yet
+	 */
+	public HMPPHeuristicsNet getNet() {
+		return net;
+	}
+	
+	
+	public void setNet(HMPPHeuristicsNet net) {
+		this.net = net;
+	}
+	
+	
+	/**
+	 * This method returns the events whose input or output set differs from
+	 * the one in the net of the previous context, if the net has been built
+	 * starting from a previous context
+	 *
+	 * @return the changed events, or null if the net has been built from
+	 * scratch
+	 */
+	public BitSet getChangedEvents() {
+		return changedEvents;
+	}
+	
+	
+	public void setChangedEvents(BitSet changedEvents) {
+		this.changedEvents = changedEvents;
+	}
+}
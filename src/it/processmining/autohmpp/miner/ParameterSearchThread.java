@@ -1,5 +1,7 @@
 package it.processmining.autohmpp.miner;
 
+import it.processmining.autohmpp.fitness.ContinuousSemanticsFitness;
+import it.processmining.autohmpp.log.TraceVariants;
 import it.processmining.autohmpp.miner.notifier.Notifier;
 import it.processmining.autohmpp.utils.Utils;
 import it.processmining.hmpp.models.HMPPHeuristicsNet;
@@ -7,6 +9,7 @@ import it.processmining.hmpp.models.HMPPParameters;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Random;
 
 import org.processmining.framework.log.LogReader;
@@ -21,14 +24,22 @@ import org.processmining.mining.geneticmining.fitness.duplicates.DTContinuousSem
  */
 public class ParameterSearchThread extends Thread {
 	
+	/* Maximum difference between two replays of the same net (see
+	 * AutoHMPP#setFitnessCheck(boolean)) */
+	private static final double FITNESS_TOLERANCE = 1e-9;
+	
 	private AutoHMPP algorithm = null;
 	private Notifier notifier = null;
 	private HMPPParameters parameters = null;
-	private LogReader log = null;
+	private ContinuousSemanticsFitness fitnessContinuousSemantics = null;
 	private int greatestNetworkSize;
 	private double finalSolutionCost = Double.MAX_VALUE;
-	private ArrayList<Double[]> discretizedParameters;
+	private DiscretizedParameters discretizedParameters;
 	private int steps = 0;
+	/* the context of the last net mined from scratch (the one of the current
+	 * position), the nets of the close positions are built starting from it */
+	private MiningContext currentContext = null;
+	private int currentNetworkSize;
 	
 	/**
 	 * Default thread serach constructor
@@ -39,7 +50,7 @@ public class ParameterSearchThread extends Thread {
 	public ParameterSearchThread(String name, AutoHMPP algorithm) {
 		super(name);
 		this.algorithm = algorithm;
-		this.log = algorithm.getLogReader();
+		this.fitnessContinuousSemantics = new ContinuousSemanticsFitness(algorithm.getSearchVariants());
 		this.greatestNetworkSize = algorithm.getGreatestNetworkSize();
 		this.notifier = algorithm.getNotifier();
 		this.parameters = new HMPPParameters();
@@ -53,8 +64,8 @@ public class ParameterSearchThread extends Thread {
 		ArrayList<Double> costs = new ArrayList<Double>();
 		discretizedParameters = algorithm.getDiscretizedParameters();
 		/*
-		 * ArrayList with all the discretized values for each parameters. Each
-		 * element is an array of Double containing the possible values for the
+		 * Snapshot with all the discretized values for each parameters. Each
+		 * element is a sorted array of doubles containing the possible values for the
 		 * parameter. This is the map from the index to the parameter
 		 * discretization:
 		 *  0 - dependency threshold
@@ -257,9 +268,10 @@ public class ParameterSearchThread extends Thread {
 		double bestCostBeforeLoop = currentCost;
 		HMPPParameters parametersBeforeLoop = new HMPPParameters();
 		parametersBeforeLoop.setDependencyThreshold(discretizedParameters.get(0)[indexes[0]]);
-		parametersBeforeLoop.setPositiveObservationsThreshold(discretizedParameters.get(1)[indexes[1]].intValue());
+		parametersBeforeLoop.setPositiveObservationsThreshold((int) discretizedParameters.get(1)[indexes[1]]);
 		parametersBeforeLoop.setRelativeToBestThreshold(discretizedParameters.get(2)[indexes[2]]);
 		parametersBeforeLoop.setAndThreshold(discretizedParameters.get(3)[indexes[3]]);
+		/* all the loops with enough observations, as in the first cluster */
 		parametersBeforeLoop.setL1lThreshold(0.0);
 		parametersBeforeLoop.setL2lThreshold(0.0);
 		parametersBeforeLoop.setLDThreshold(0.0);
@@ -409,7 +421,7 @@ public class ParameterSearchThread extends Thread {
 		double bestCostAfterLoop = currentCost;
 		HMPPParameters parametersAfterLoop = new HMPPParameters();
 		parametersAfterLoop.setDependencyThreshold(discretizedParameters.get(0)[indexes[0]]);
-		parametersAfterLoop.setPositiveObservationsThreshold(discretizedParameters.get(1)[indexes[1]].intValue());
+		parametersAfterLoop.setPositiveObservationsThreshold((int) discretizedParameters.get(1)[indexes[1]]);
 		parametersAfterLoop.setRelativeToBestThreshold(discretizedParameters.get(2)[indexes[2]]);
 		parametersAfterLoop.setAndThreshold(discretizedParameters.get(3)[indexes[3]]);
 		parametersAfterLoop.setL1lThreshold(discretizedParameters.get(4)[indexes[4]]);
@@ -422,7 +434,8 @@ public class ParameterSearchThread extends Thread {
 		/*
 		 * ============================ CONCLUSIONS ============================
 		 */
-		/* is better the network with or without loops and long distance? */
+		/* is better the network with tuned loops and long distance, or the
+		 * one of the first cluster (with all the observed loops)? */
 		if (bestCostAfterLoop < bestCostBeforeLoop) {
 			/* network with loop */
 			parameters = parametersAfterLoop;
@@ -430,14 +443,14 @@ public class ParameterSearchThread extends Thread {
 			steps = stepsFirstCluster + stepsSecondCluster;
 			dbg("best network is with loops and long distance");
 		} else {
-			/* network without loop */
+			/* network without tuned loops */
 			parameters = parametersBeforeLoop;
 			finalSolutionCost = bestCostBeforeLoop;
 			steps = stepsFirstCluster;
-			dbg("best network without loops");
+			dbg("best network without tuned loops and long distance");
 		}
 		
-		HMPPHeuristicsNet n = algorithm.makeHeuristicsRelations(log, parameters);
+		HMPPHeuristicsNet n = algorithm.makeHeuristicsRelations(parameters);
 		dbg("tested miner size: " + Utils.calculateNetworkSize(n) + " ; hash: " + n.hashCode());
 
 		dbg("");
@@ -459,7 +472,7 @@ public class ParameterSearchThread extends Thread {
 	 * @return true if, for all the items, the indexes are correct, false
 	 * otherwise
 	 */
-	private boolean validateArrayIndexes(int indexes[], int variations[], ArrayList<Double[]> items) {
+	private boolean validateArrayIndexes(int indexes[], int variations[], DiscretizedParameters items) {
 		boolean toReturn = true;
 		int max = indexes.length;
 		if (max < variations.length) {
@@ -486,7 +499,7 @@ public class ParameterSearchThread extends Thread {
 	 * @return true if, for all the items, the indexes are correct, false
 	 * otherwise
 	 */
-	private boolean validateArrayIndexes(int indexes[], ArrayList<Double[]> items) {
+	private boolean validateArrayIndexes(int indexes[], DiscretizedParameters items) {
 		int variations[] = new int[indexes.length];
 		Arrays.fill(variations, 0);
 		return validateArrayIndexes(indexes, variations, items);
@@ -509,19 +522,46 @@ public class ParameterSearchThread extends Thread {
 	 * @return the hypothesis cost
 	 */
 	private Double getMinedNetworkCost(HMPPParameters p) {
+		return getMinedNetworkCost(p, false);
+	}
+	
+	
+	/**
+	 * This method mines and returns the cost of the hypothesis built with the
+	 * given parameters (see {@link #getMinedNetworkCost(HMPPParameters)}).
+	 * 
+	 * The net of a close position can be built starting from the net of the
+	 * current position: just the sets of the events with different
+	 * connections are built again, and the size and the fitness are updated
+	 * just for the changed events. Otherwise, the net is mined from scratch
+	 * and becomes the net of the current position.
+	 * 
+	 * @param p the parameters object instance
+	 * @param fromCurrent true to start from the net of the current position
+	 * @return the hypothesis cost
+	 */
+	private Double getMinedNetworkCost(HMPPParameters p, boolean fromCurrent) {
 		dbg("getMinedNetworkCost {");
 		Double[] data = {0., 0.};
 		Double networkHypCost = 0.;
 		
-		HMPPHeuristicsNet result = algorithm.makeHeuristicsRelations(log, p);
-		data[0] = new Double(Utils.calculateNetworkSize(result));
-		
-		HMPPHeuristicsNet[] population = new HMPPHeuristicsNet[1];
-		population[0] = result;
-		
-		DTContinuousSemanticsFitness fitnessContinuousSemantics = new DTContinuousSemanticsFitness(log);
-		fitnessContinuousSemantics.calculate(population);
-		Double fitness = population[0].getFitness();
+		MiningContext context = new MiningContext(algorithm.getMeasures(p), p);
+		HMPPHeuristicsNet result = algorithm.makeHeuristicsRelations(context, (fromCurrent)? currentContext : null);
+		BitSet changed = context.getChangedEvents();
+		Double fitness;
+		if (changed != null) {
+			data[0] = new Double(Utils.calculateNetworkSize(result, currentContext.getNet(), currentNetworkSize, changed));
+			fitness = fitnessContinuousSemantics.calculate(result, changed);
+			dbg("changed events: " + changed.cardinality());
+		} else {
+			currentContext = context;
+			currentNetworkSize = Utils.calculateNetworkSize(result);
+			data[0] = new Double(currentNetworkSize);
+			fitness = fitnessContinuousSemantics.calculate(result);
+		}
+		if (algorithm.isFitnessCheck()) {
+			checkFitness(result, fitness, changed != null);
+		}
 		
 		data[1] = fitness;
 		networkHypCost = (data[0] / greatestNetworkSize) + (1 - data[1]);
@@ -531,6 +571,40 @@ public class ParameterSearchThread extends Thread {
 	}
 	
 	
+	/**
+	 * This method checks the fitness of a net: an incremental fitness is
+	 * compared with the one of a full replay and, if the replayed variants
+	 * are the ones of the log read by ProM, the fitness is compared with the
+	 * one of the replay of ProM ({@link DTContinuousSemanticsFitness}), which
+	 * is the reference
+	 * 
+	 * @param net the replayed net
+	 * @param fitness the fitness to check
+	 * @param incremental true if the fitness comes from an incremental replay
+	 * @throws IllegalStateException if the fitness differs from the checked
+	 * one
+	 */
+	private void checkFitness(HMPPHeuristicsNet net, double fitness, boolean incremental) {
+		TraceVariants variants = fitnessContinuousSemantics.getVariants();
+		if (incremental) {
+			double full = new ContinuousSemanticsFitness(variants).calculate(net);
+			if (Math.abs(full - fitness) > FITNESS_TOLERANCE) {
+				throw new IllegalStateException("Incremental fitness " + fitness + " differs from the full replay one " + full);
+			}
+		}
+		LogReader log = algorithm.getLogReader();
+		if (log != null && log.numberOfInstances() == variants.getNumberOfTraces()) {
+			HMPPHeuristicsNet[] population = { net };
+			new DTContinuousSemanticsFitness(log).calculate(population);
+			double reference = population[0].getFitness();
+			if (Math.abs(reference - fitness) > FITNESS_TOLERANCE) {
+				throw new IllegalStateException("Fitness " + fitness + " differs from the ProM one " + reference);
+			}
+		}
+		net.setFitness(fitness);
+	}
+	
+	
 	/**
 	 * Shortcut for the same method, with the parameters as array
 	 * 
@@ -545,7 +619,7 @@ public class ParameterSearchThread extends Thread {
 	private Double getMinedNetworkCost(
 			int[] indexes, 
 			int[] variations, 
-			ArrayList<Double[]> discretizedParameters, 
+			DiscretizedParameters discretizedParameters, 
 			boolean useLongDistanceDependency,
 			boolean useAllConnectedHeuristics,
 			boolean useLoops) {
@@ -562,13 +636,20 @@ public class ParameterSearchThread extends Thread {
 		 * long distance dep		| 6				| 6			| 6
 		 */
 		
-		Double l1loopThreshold = (useLoops)? discretizedParameters.get(4)[indexes[4] + variations[4]] : 0.0;
-		Double l2loopThreshold = (useLoops)? discretizedParameters.get(5)[indexes[5] + variations[5]] : 0.0;
-		Double ldThreshold = (useLongDistanceDependency)? discretizedParameters.get(6)[indexes[6] + variations[6]] : 0.0;
+		/* Without useLoops the loop thresholds are not searched, and they are
+		 * set to 0.0: this is not a net without loops, but the net with all
+		 * the length one and length two loops reaching the positive
+		 * observations threshold (the measure of a loop is never negative).
+		 * The dependency thresholds of the first cluster are then searched
+		 * with the loops of the log already closed, and the second cluster
+		 * only raises the loop thresholds to drop the weak ones */
+		double l1loopThreshold = (useLoops)? discretizedParameters.get(4)[indexes[4] + variations[4]] : 0.0;
+		double l2loopThreshold = (useLoops)? discretizedParameters.get(5)[indexes[5] + variations[5]] : 0.0;
+		double ldThreshold = (useLongDistanceDependency)? discretizedParameters.get(6)[indexes[6] + variations[6]] : 0.0;
 		
 		HMPPParameters p = getParameters();
 		p.setDependencyThreshold(discretizedParameters.get(0)[indexes[0] + variations[0]]);
-		p.setPositiveObservationsThreshold(discretizedParameters.get(1)[indexes[1] + variations[1]].intValue());
+		p.setPositiveObservationsThreshold((int) discretizedParameters.get(1)[indexes[1] + variations[1]]);
 		p.setRelativeToBestThreshold(discretizedParameters.get(2)[indexes[2] + variations[2]]);
 		p.setAndThreshold(discretizedParameters.get(3)[indexes[3] + variations[3]]);
 		p.setL1lThreshold(l1loopThreshold);
@@ -577,7 +658,13 @@ public class ParameterSearchThread extends Thread {
 		p.setUseLongDistanceDependency(useLongDistanceDependency);
 		p.setUseAllConnectedHeuristics(useAllConnectedHeuristics);
 		
-		return getMinedNetworkCost(p);
+		/* the current position is mined from scratch, its neighbours start
+		 * from it */
+		boolean fromCurrent = false;
+		for (int i = 0; i < variations.length; i++) {
+			fromCurrent = fromCurrent || variations[i] != 0;
+		}
+		return getMinedNetworkCost(p, fromCurrent);
 	}
 	
 	
@@ -593,7 +680,7 @@ public class ParameterSearchThread extends Thread {
 	 */
 	private Double getMinedNetworkCost(
 			int[] indexes,  
-			ArrayList<Double[]> discretizedParameters, 
+			DiscretizedParameters discretizedParameters, 
 			boolean useLongDistanceDependency,
 			boolean useAllConnectedHeuristics,
 			boolean useLoops) {
@@ -605,6 +692,21 @@ public class ParameterSearchThread extends Thread {
 	}
 	
 	
+	/**
+	 * This method calculates again the cost of the final solution, replaying
+	 * the given variants (for example, the whole log when the search has been
+	 * performed on a sample)
+	 * 
+	 * @param variants the variants to replay
+	 * @return the new cost of the final solution
+	 */
+	public Double rescore(TraceVariants variants) {
+		fitnessContinuousSemantics = new ContinuousSemanticsFitness(variants);
+		finalSolutionCost = getMinedNetworkCost(parameters);
+		return finalSolutionCost;
+	}
+	
+	
 	/**
 	 * This method to get the set of found parameters
 	 * 
@@ -0,0 +1,201 @@
+package it.processmining.autohmpp.miner;
+
+import it.processmining.autohmpp.log.CacheFiles;
+import it.processmining.autohmpp.log.CacheOutputStream;
+import it.processmining.autohmpp.log.EncodedLog;
+import it.processmining.autohmpp.log.EventDictionary;
+import it.processmining.autohmpp.log.TraceVariants;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * This class is a snapshot of everything the parameters search needs to know
+ * about a log: its counts and its variants (the distinct sequences of events,
+ * with their multiplicity, replayed to measure the fitness of the nets). The
+ * traces themselves are not needed, so a snapshot is much smaller than the
+ * log it comes from.
+ *
+ * Snapshots can be stored into a file and merged: the logs of several sites
+ * can be counted where they are, and their snapshots summed into the one of
+ * the whole log, without reading the logs again.
+ *
+ * The file layout is:
+ * <pre>
+ *   int     magic number and format version
+ *   ...     dictionary (see {@link CacheFiles})
+ *   int     number of variants
+ *   int     number of events of the variants
+ *   int[]   multiplicity of each variant
+ *   int[]   offset of each variant (number of variants + 1 entries)
+ *   int[]   events of the variants
+ *   ...     padding to a multiple of 8 bytes
+ * </pre>
+ * followed by the counts, with the layout of the {@link LogStatisticsCache}.
+ *
+ * @author Andrea Burattin
+ * @version 0.1
+ */
+public class StatisticsSnapshot {
+	
+	private static final int MAGIC = 0x41485353;
+	private static final int VERSION = 1;
+	/** The extension of the snapshot files */
+	public static final String EXTENSION = ".snapshot";
+	
+	private LogStatistics statistics;
+	private TraceVariants variants;
+	
+	
+	/**
+	 * Class constructor
+	 *
+	 * @param statistics the counts of the log
+	 * @param variants the variants of the log, with the same dictionary
+	 */
+	public StatisticsSnapshot(LogStatistics statistics, TraceVariants variants) {
+		this.statistics = statistics;
+		this.variants = variants;
+	}
+	
+	
+	/**
+	 * This method builds the snapshot of a counted log shard
+	 *
+	 * @param shard the log shard
+	 * @return the snapshot of the shard
+	 */
+	public static StatisticsSnapshot fromShard(LogShard shard) {
+		return new StatisticsSnapshot(shard.getStatistics(), TraceVariants.fromLog(shard.getLog()));
+	}
+	
+	
+	/**
+	 * This method merges the given snapshots. The dictionary of the result is
+	 * the union of the dictionaries of the snapshots, and the counts and the
+	 * multiplicities of the variants are summed
+	 *
+	 * @param snapshots the snapshots to merge
+	 * @return the merged snapshot
+	 */
+	public static StatisticsSnapshot merge(StatisticsSnapshot... snapshots) {
+		EventDictionary[] dictionaries = new EventDictionary[snapshots.length];
+		TraceVariants[] variants = new TraceVariants[snapshots.length];
+		for (int i = 0; i < snapshots.length; i++) {
+			dictionaries[i] = snapshots[i].statistics.getDictionary();
+			variants[i] = snapshots[i].variants;
+		}
+		EventDictionary dictionary = EventDictionary.union(dictionaries);
+		
+		LogStatistics statistics = new LogStatistics(dictionary);
+		for (int i = 0; i < snapshots.length; i++) {
+			statistics.add(snapshots[i].statistics.remap(dictionary));
+		}
+		return new StatisticsSnapshot(statistics, TraceVariants.merge(dictionary, variants));
+	}
+	
+	
+	/**
+	 * This method loads a snapshot from a file. The matrices are memory
+	 * mapped read only, and copied into the heap only if they are updated
+	 *
+	 * @param file the snapshot file
+	 * @return the snapshot
+	 * @throws IOException if the file cannot be read or it is not a snapshot
+	 */
+	public static StatisticsSnapshot load(File file) throws IOException {
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = in.getChannel();
+			long headerSize = Math.min(channel.size(), Integer.MAX_VALUE);
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, headerSize);
+			
+			if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+				throw new IOException("Not a statistics snapshot: " + file);
+			}
+			EventDictionary dictionary = CacheFiles.readDictionary(header);
+			
+			int numberOfVariants = header.getInt();
+			int numberOfEvents = header.getInt();
+			int[] multiplicity = LogStatisticsCache.readInts(header, numberOfVariants);
+			int[] offsets = LogStatisticsCache.readInts(header, numberOfVariants + 1);
+			int[] events = LogStatisticsCache.readInts(header, numberOfEvents);
+			header.position((int) CacheFiles.align(header.position()));
+			/* the timestamps of the variants are meaningless */
+			EncodedLog log = new EncodedLog(dictionary, IntBuffer.wrap(offsets), IntBuffer.wrap(events),
+					LongBuffer.wrap(new long[numberOfEvents]));
+			
+			LogStatistics statistics = LogStatisticsCache.readCounts(channel, header, dictionary);
+			return new StatisticsSnapshot(statistics, new TraceVariants(log, multiplicity));
+		} finally {
+			/* the mappings stay valid after the channel is closed */
+			in.close();
+		}
+	}
+	
+	
+	/**
+	 * This method writes the snapshot into a file. The snapshot is written
+	 * into a temporary file which is then renamed, so that concurrent
+	 * processes never see a partial snapshot.
+	 *
+	 * @param file the snapshot file
+	 * @throws IOException
+	 */
+	public void store(File file) throws IOException {
+		EncodedLog log = variants.getVariants();
+		LogStatisticsCache.checkCounts(statistics);
+		File temp = CacheFiles.createTempFile(file);
+		
+		CacheOutputStream out = null;
+		boolean written = false;
+		try {
+			out = new CacheOutputStream(temp);
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			CacheFiles.writeDictionary(out, statistics.getDictionary());
+			
+			out.writeInt(variants.getNumberOfVariants());
+			out.writeInt(log.getNumberOfEvents());
+			for (int v = 0; v < variants.getNumberOfVariants(); v++) {
+				out.writeInt(variants.getMultiplicity(v));
+			}
+			for (int v = 0; v < variants.getNumberOfVariants(); v++) {
+				out.writeInt(log.getTraceStart(v));
+			}
+			out.writeInt(log.getNumberOfEvents());
+			for (int i = 0; i < log.getNumberOfEvents(); i++) {
+				out.writeInt(log.getEvent(i));
+			}
+			CacheFiles.pad(out);
+			/* the variants are read from the mapping of the beginning of
+			 * the file */
+			CacheFiles.checkRegion(out.position());
+			
+			LogStatisticsCache.writeCounts(out, statistics);
+			out.close();
+			written = true;
+		} finally {
+			if (!written) {
+				CacheFiles.discard(out, temp);
+			}
+		}
+		
+		CacheFiles.replace(temp, file);
+	}
+	
+	
+	public LogStatistics getStatistics() {
+		return statistics;
+	}
+	
+	
+	public TraceVariants getVariants() {
+		return variants;
+	}
+}
@@ -0,0 +1,148 @@
+package it.processmining.autohmpp.miner;
+
+/**
+ * This class sorts a set of positions (such as the candidate edges of the
+ * net) by a key compared with a threshold (such as their dependency measure):
+ * the positions whose key passes the threshold are then a range of the sorted
+ * order, found with a binary search, and they are visited without looking at
+ * the others. Positions with a NaN key are left out, since they never pass
+ * any threshold.
+ *
+ * @author Andrea Burattin
+ * @version 0.1
+ */
+public class ThresholdIndex {
+	
+	private double[] keys;
+	private int[] order;
+	
+	
+	/**
+	 * Class constructor
+	 *
+	 * @param keys the key of each position (not copied, it must not be
+	 * modified)
+	 * @param positions the positions to index, the other ones are never
+	 * visited
+	 */
+	public ThresholdIndex(double[] keys, int[] positions) {
+		this.keys = keys;
+		int size = 0;
+		int[] order = new int[positions.length];
+		for (int i = 0; i < positions.length; i++) {
+			if (!Double.isNaN(keys[positions[i]])) {
+				order[size++] = positions[i];
+			}
+		}
+		this.order = new int[size];
+		System.arraycopy(order, 0, this.order, 0, size);
+		sort(this.order, order, 0, size);
+	}
+	
+	
+	/**
+	 * This method sorts a range of positions by ascending key, with a merge
+	 * sort (stable, so positions with the same key keep their order)
+	 */
+	private void sort(int[] a, int[] temp, int from, int to) {
+		if (to - from < 2) {
+			return;
+		}
+		int middle = (from + to) >>> 1;
+		sort(a, temp, from, middle);
+		sort(a, temp, middle, to);
+		if (keys[a[middle - 1]] <= keys[a[middle]]) {
+			return;
+		}
+		System.arraycopy(a, from, temp, from, to - from);
+		int left = from;
+		int right = middle;
+		for (int i = from; i < to; i++) {
+			if (right >= to || (left < middle && keys[temp[left]] <= keys[temp[right]])) {
+				a[i] = temp[left++];
+			} else {
+				a[i] = temp[right++];
+			}
+		}
+	}
+	
+	
+	/**
+	 * This method returns the first rank of the positions with a key greater
+	 * than or equal to the threshold: all the positions from this rank to
+	 * {@link #size()} have such a key
+	 *
+	 * @param threshold the threshold
+	 * @return the first rank
+	 */
+	public int atLeast(double threshold) {
+		int low = 0;
+		int high = order.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (keys[order[middle]] < threshold) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+	
+	
+	/**
+	 * This method returns the first rank of the positions with a key greater
+	 * than the threshold: all the positions from this rank to {@link #size()}
+	 * have such a key
+	 *
+	 * @param threshold the threshold
+	 * @return the first rank
+	 */
+	public int greaterThan(double threshold) {
+		int low = 0;
+		int high = order.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (keys[order[middle]] <= threshold) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+	
+	
+	/**
+	 * This method returns the number of positions with a key lower than or
+	 * equal to the threshold: they are the ones from rank 0 to the returned
+	 * one (excluded)
+	 *
+	 * @param threshold the threshold
+	 * @return the last rank (excluded)
+	 */
+	public int atMost(double threshold) {
+		return greaterThan(threshold);
+	}
+	
+	
+	/**
+	 * This method returns the position with the given rank
+	 *
+	 * @param rank the rank, in ascending order of key
+	 * @return the position
+	 */
+	public int positionAt(int rank) {
+		return order[rank];
+	}
+	
+	
+	/**
+	 * This method returns the number of indexed positions
+	 *
+	 * @return the number of positions
+	 */
+	public int size() {
+		return order.length;
+	}
+}
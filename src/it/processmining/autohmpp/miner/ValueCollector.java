@@ -0,0 +1,161 @@
+package it.processmining.autohmpp.miner;
+
+import java.util.Arrays;
+
+/**
+ * This class collects the candidate values of a parameter into a growing
+ * primitive array, without boxing them. Each thread of a discretization has
+ * its own collector, and all the collectors are finally merged into the
+ * sorted set of distinct values (or into its quantiles, when the number of
+ * values is capped).
+ * 
+ * @author Andrea Burattin
+ * @version 0.1
+ */
+public class ValueCollector {
+	
+	private double[] values = new double[64];
+	private int size = 0;
+	
+	
+	/**
+	 * This method adds a value to the collection
+	 * 
+	 * @param value the value to add
+	 */
+	public void add(double value) {
+		if (size == values.length) {
+			values = Arrays.copyOf(values, size * 2);
+		}
+		values[size++] = value;
+	}
+	
+	
+	/**
+	 * This method adds a value to the collection, only if it is not greater
+	 * than the given bound (so NaN values are never added)
+	 * 
+	 * @param value the value to add
+	 * @param bound the greatest value accepted
+	 */
+	public void addIfNotGreater(double value, double bound) {
+		if (value <= bound) {
+			add(value);
+		}
+	}
+	
+	
+	/**
+	 * This method returns the number of values collected (duplicates
+	 * included)
+	 * 
+	 * @return the number of values
+	 */
+	public int size() {
+		return size;
+	}
+	
+	
+	/**
+	 * This method merges the given collections into the sorted array of their
+	 * distinct values. The values are sorted and de-duplicated in place, in
+	 * the merged array, so no value is ever boxed
+	 * 
+	 * @param collectors the collections to merge
+	 * @return the distinct values, in ascending order
+	 */
+	public static double[] toSortedDistinct(ValueCollector... collectors) {
+		return toDistinct(toSorted(collectors));
+	}
+	
+	
+	/**
+	 * This method merges the given collections into a sorted array, keeping
+	 * the duplicates
+	 * 
+	 * @param collectors the collections to merge
+	 * @return all the values, in ascending order
+	 */
+	public static double[] toSorted(ValueCollector... collectors) {
+		int total = 0;
+		for (ValueCollector c : collectors) {
+			total += c.size;
+		}
+		double[] all = new double[total];
+		int position = 0;
+		for (ValueCollector c : collectors) {
+			System.arraycopy(c.values, 0, all, position, c.size);
+			position += c.size;
+		}
+		Arrays.sort(all);
+		return all;
+	}
+	
+	
+	/**
+	 * This method counts the distinct values of a sorted array
+	 * 
+	 * @param sorted the values, in ascending order
+	 * @return the number of distinct values
+	 */
+	public static int countDistinct(double[] sorted) {
+		int distinct = 0;
+		for (int i = 0; i < sorted.length; i++) {
+			if (i == 0 || Double.compare(sorted[i - 1], sorted[i]) != 0) {
+				distinct++;
+			}
+		}
+		return distinct;
+	}
+	
+	
+	/**
+	 * This method picks the given number of quantiles of a sorted array,
+	 * duplicates included. When a value is collected once for each edge which
+	 * enters (or leaves) the net as the parameter crosses it, the position in
+	 * the sorted array is the cumulative change in the number of edges, so the
+	 * quantiles split the range of the parameter into intervals with the same
+	 * edge count change. The smallest and the greatest values are always
+	 * picked.
+	 * 
+	 * @param sorted all the values, in ascending order
+	 * @param quantiles the number of quantiles to pick (at least 1)
+	 * @return the distinct quantiles, in ascending order (they can be less
+	 * than requested, when a value spans more than one quantile)
+	 */
+	public static double[] toQuantiles(double[] sorted, int quantiles) {
+		int n = sorted.length;
+		if (n == 0) {
+			return sorted;
+		}
+		double[] picked = new double[quantiles];
+		int distinct = 0;
+		for (int q = 0; q < quantiles; q++) {
+			int position = (quantiles == 1)? n - 1 : (int) ((long) q * (n - 1) / (quantiles - 1));
+			if (distinct == 0 || Double.compare(picked[distinct - 1], sorted[position]) != 0) {
+				picked[distinct++] = sorted[position];
+			}
+		}
+		return (distinct == quantiles)? picked : Arrays.copyOf(picked, distinct);
+	}
+	
+	
+	/**
+	 * This method de-duplicates a sorted array. The distinct values are moved
+	 * in place to the beginning of the array, so its content is lost
+	 * 
+	 * @param sorted the values, in ascending order
+	 * @return the distinct values, in ascending order
+	 */
+	public static double[] toDistinct(double[] sorted) {
+		/* the values are compared as Double.equals() does, as a HashSet of
+		 * the boxed values would */
+		int distinct = 0;
+		for (int i = 0; i < sorted.length; i++) {
+			if (distinct == 0 || Double.compare(sorted[distinct - 1], sorted[i]) != 0) {
+				sorted[distinct++] = sorted[i];
+			}
+		}
+		return (distinct == sorted.length)? sorted : Arrays.copyOf(sorted, distinct);
+	}
+}
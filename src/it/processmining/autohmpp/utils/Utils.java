@@ -1,6 +1,20 @@
 package it.processmining.autohmpp.utils;
 
+import it.processmining.autohmpp.log.EncodedLog;
+import it.processmining.autohmpp.log.EncodedLogCache;
+import it.processmining.autohmpp.miner.LogShard;
+import it.processmining.autohmpp.miner.LogStatistics;
+import it.processmining.autohmpp.miner.LogStatisticsCache;
+import it.processmining.autohmpp.miner.StatisticsSnapshot;
+
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Enumeration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import org.processmining.framework.log.LogFile;
 import org.processmining.framework.log.LogFilter;
@@ -11,7 +25,7 @@ import org.processmining.framework.models.heuristics.HNSubSet;
 import org.processmining.framework.models.heuristics.HeuristicsNet;
 
 public class Utils {
-
+	
 	/**
 	 * This method returns the size of the current network, expressed as the
 	 * number of edges in the Heuristics Net (so, not distinguishing between AND
@@ -31,6 +45,28 @@ public class Utils {
 	}
 	
 	
+	/**
+	 * This method calculates the network size of a model built starting from
+	 * another one, whose size is known: just the connections of the changed
+	 * elements are counted again
+	 * 
+	 * @param model the model
+	 * @param previous the model it has been built from
+	 * @param previousSize the size of the previous model
+	 * @param changed the elements whose input or output set differs in the
+	 * two models
+	 * @return the size of the model
+	 */
+	public static int calculateNetworkSize(HeuristicsNet model, HeuristicsNet previous, int previousSize, BitSet changed) {
+		int connections = previousSize;
+		for (int from = changed.nextSetBit(0); from >= 0; from = changed.nextSetBit(from + 1)) {
+			connections -= previous.getAllElementsOutputSet(from).size();
+			connections += model.getAllElementsOutputSet(from).size();
+		}
+		return connections;
+	}
+	
+	
 	/**
 	 * This method loads a log file into a logfile object 
 	 * 
@@ -38,13 +74,27 @@ public class Utils {
 	 * @return
 	 */
 	public static LogReader loadLog(String inputFile) {
+		return loadLog(inputFile, "TestProcess.mxml");
+	}
+	
+	
+	/**
+	 * This method loads a log file into a logfile object. If the log file is
+	 * a zip archive, the given entry is loaded
+	 * 
+	 * @param inputFile
+	 * @param zipEntry the name of the entry to load, if the file is a zip
+	 * archive
+	 * @return
+	 */
+	public static LogReader loadLog(String inputFile, String zipEntry) {
 		LogFile file;
 		LogFilter filter = null;
-
+		
 		try {
 			if (inputFile.endsWith(".zip")) {
 				file = LogFile.getInstance("zip://" + inputFile
-						+ "#TestProcess.mxml");
+						+ "#" + zipEntry);
 			} else {
 				file = LogFile.getInstance(inputFile);
 			}
@@ -63,7 +113,7 @@ public class Utils {
 				filter = null;
 			}
 		}
-
+		
 		LogReader log = null;
 		try {
 			if (file != null) {
@@ -74,4 +124,173 @@ public class Utils {
 		}
 		return log;
 	}
+	
+	
+	/**
+	 * This method loads a log file into an encoded log. The first time a file
+	 * is loaded, its encoded version is stored in a cache file next to it;
+	 * the following times, if the file has not changed, the cache is memory
+	 * mapped and the log file is not parsed at all.
+	 * 
+	 * @param inputFile
+	 * @return the encoded log, or null if the file cannot be loaded
+	 */
+	public static EncodedLog loadEncodedLog(String inputFile) {
+		File source = new File(inputFile);
+		
+		try {
+			EncodedLog cached = EncodedLogCache.load(source);
+			if (cached != null) {
+				return cached;
+			}
+		} catch (IOException e) {
+			System.out.println("Cannot read the cache of the log file: " + inputFile);
+		}
+		
+		LogReader log = loadLog(inputFile);
+		if (log == null) {
+			return null;
+		}
+		EncodedLog encoded = EncodedLog.fromLogReader(log);
+		
+		try {
+			EncodedLogCache.store(source, encoded);
+		} catch (IOException e) {
+			System.out.println("Cannot write the cache of the log file: " + inputFile);
+		}
+		return encoded;
+	}
+	
+	
+	/**
+	 * This method loads a log file together with its counts. As for the
+	 * encoded log (see {@link #loadEncodedLog(String)}), the counts are
+	 * stored in a cache file next to the log the first time the file is
+	 * loaded; the following times the counts matrices are memory mapped, so
+	 * the log is not counted again and all the processes mining the same log
+	 * share the same counts.
+	 * 
+	 * @param inputFile
+	 * @return the counted log, or null if the file cannot be loaded
+	 */
+	public static LogShard loadLogShard(String inputFile) {
+		EncodedLog log = loadEncodedLog(inputFile);
+		if (log == null) {
+			return null;
+		}
+		File source = new File(inputFile);
+		
+		try {
+			LogStatistics cached = LogStatisticsCache.load(source, log.getDictionary());
+			if (cached != null) {
+				return new LogShard(log, cached);
+			}
+		} catch (IOException e) {
+			System.out.println("Cannot read the counts cache of the log file: " + inputFile);
+		}
+		
+		LogShard shard = LogShard.count(log);
+		
+		try {
+			LogStatisticsCache.store(source, shard.getStatistics());
+		} catch (IOException e) {
+			System.out.println("Cannot write the counts cache of the log file: " + inputFile);
+		}
+		return shard;
+	}
+	
+	
+	/**
+	 * This method loads all the entries of a zip archive. The entries are
+	 * decompressed, parsed and counted concurrently, each one as a separate
+	 * shard, and the shards are finally merged. Entries that cannot be loaded
+	 * are skipped.
+	 * 
+	 * @param inputFile the zip archive
+	 * @param threads the number of entries processed at the same time
+	 * @return the merged shard, or null if no entry can be loaded
+	 */
+	public static LogShard loadLogShards(final String inputFile, int threads) {
+		final ArrayList<String> entries = new ArrayList<String>();
+		try {
+			ZipFile zip = new ZipFile(inputFile);
+			try {
+				Enumeration<? extends ZipEntry> e = zip.entries();
+				while (e.hasMoreElements()) {
+					ZipEntry entry = e.nextElement();
+					if (!entry.isDirectory()) {
+						entries.add(entry.getName());
+					}
+				}
+			} finally {
+				zip.close();
+			}
+		} catch (IOException e) {
+			System.out.println("Cannot read the zip archive: " + inputFile);
+			return null;
+		}
+		
+		final LogShard[] shards = new LogShard[entries.size()];
+		final AtomicInteger next = new AtomicInteger(0);
+		Thread[] workers = new Thread[Math.max(1, Math.min(threads, entries.size()))];
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = new Thread() {
+				public void run() {
+					int entry;
+					while ((entry = next.getAndIncrement()) < shards.length) {
+						LogReader log = loadLog(inputFile, entries.get(entry));
+						if (log == null) {
+							System.out.println("Cannot load the entry " + entries.get(entry) + " of " + inputFile);
+							continue;
+						}
+						/* the parsed log is dropped as soon as it is encoded */
+						shards[entry] = LogShard.count(EncodedLog.fromLogReader(log));
+					}
+				}
+			};
+			workers[i].start();
+		}
+		try {
+			for (int i = 0; i < workers.length; i++) {
+				workers[i].join();
+			}
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+			return null;
+		}
+		
+		ArrayList<LogShard> loaded = new ArrayList<LogShard>();
+		for (int i = 0; i < shards.length; i++) {
+			if (shards[i] != null) {
+				loaded.add(shards[i]);
+			}
+		}
+		if (loaded.isEmpty()) {
+			return null;
+		}
+		return LogShard.merge(loaded.toArray(new LogShard[loaded.size()]));
+	}
+	
+	
+	/**
+	 * This method loads the given snapshot files and merges them into the
+	 * snapshot of the whole log. Files that cannot be loaded are skipped.
+	 * 
+	 * @param inputFiles the snapshot files
+	 * @return the merged snapshot, or null if no file can be loaded
+	 */
+	public static StatisticsSnapshot loadSnapshots(String... inputFiles) {
+		ArrayList<StatisticsSnapshot> loaded = new ArrayList<StatisticsSnapshot>();
+		for (String inputFile : inputFiles) {
+			try {
+				loaded.add(StatisticsSnapshot.load(new File(inputFile)));
+			} catch (IOException e) {
+				System.out.println("Cannot read the snapshot file: " + inputFile);
+			}
+		}
+		if (loaded.isEmpty()) {
+			return null;
+		}
+		return StatisticsSnapshot.merge(loaded.toArray(new StatisticsSnapshot[loaded.size()]));
+	}
 }